@@ -2,20 +2,37 @@ package API;
 
 import Utils.BadPathsException;
 import Utils.ListenersTypes;
+import Utils.MetricsWriter;
 import Utils.SimplePair;
+import Utils.ThrottleSettings;
 
 import java.beans.PropertyChangeListener;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 
 public interface BackupStrategy {
     // Running backup, even with joinAndDispose() call:
     void execute();
     // Stopping backup (interrupting work):
     void stop();
+    // Pausing backup, workers park at the nearest safe point (within a second), and resuming it:
+    void pause();
+    void resume();
     // Setting backup paths:
     void setPaths(List<SimplePair<String>> paths) throws BadPathsException;
     // Setting is proceed with hidden elements:
     void setIsCopyHiddenElements(boolean copyHiddenElements);
+    // Setting is copy through temporary files with atomic renames and grouped synchronization:
+    void setIsDurableCopy(boolean durableCopy);
+    // Setting is sum content while copying and verify copies by reading them back:
+    void setIsVerifiedCopy(boolean verifiedCopy);
+    // Setting options of the backup type from attributes of a profile, missing options get default values,
+    // options are set before paths, which are validated with them:
+    default void setOptions(Map<String, String> options) { }
+    // Setting bandwidth and operations limits of devices, may be changed while backup is running:
+    void setThrottle(ThrottleSettings throttleSettings);
     // Property strategies for JTextArea, JProgressBar, Finish Backup strategy(buttons):
     void addPropertyListener(ListenersTypes type, PropertyChangeListener listener);
     void removePropertyListener(ListenersTypes type, PropertyChangeListener listener);
@@ -23,4 +40,12 @@ public interface BackupStrategy {
     void joinAndDispose() throws InterruptedException;
     // Getting backup name:
     String getBackupType();
+    // Writing state and counters of backups, called from other threads than backups:
+    default void writeMetrics(MetricsWriter writer) { }
+    // Checking if backups of this type can be restored by restore():
+    default boolean isRestorable() { return false; }
+    // Restoring the last backup of every path set into target directory, under the name of its source:
+    default void restore(List<SimplePair<String>> paths, Path targetPath) throws IOException, InterruptedException {
+        throw new UnsupportedOperationException("Backup cannot be restored: " + getBackupType());
+    }
 }
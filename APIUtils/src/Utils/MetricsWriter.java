@@ -0,0 +1,88 @@
+package Utils;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+// Collector of samples written in the Prometheus text format, samples of one metric are grouped together:
+public class MetricsWriter {
+    private final Map<String, Family> families;
+    private final List<String> commonLabels;
+
+    private static class Family {
+        private final String help;
+        private final String type;
+        private final List<String> samples = new ArrayList<>();
+
+        private Family(String familyHelp, String familyType) {
+            help = familyHelp;
+            type = familyType;
+        }
+    }
+
+    public MetricsWriter() { this(new LinkedHashMap<>(), List.of()); }
+
+    private MetricsWriter(Map<String, Family> sharedFamilies, List<String> labels) {
+        // Global variables:
+        families = sharedFamilies;
+        commonLabels = labels;
+    }
+
+    public MetricsWriter withLabel(String name, String value) {
+        // Writer of the same metrics, every sample gets one more label:
+        List<String> labels = new ArrayList<>(commonLabels);
+        labels.add(name);
+        labels.add(value);
+        return new MetricsWriter(families, List.copyOf(labels));
+    }
+
+    // Labels are given as names followed by their values:
+    public void gauge(String name, String help, double value, String... labels) {
+        write(name, help, "gauge", value, labels);
+    }
+
+    public void counter(String name, String help, double value, String... labels) {
+        write(name, help, "counter", value, labels);
+    }
+
+    private synchronized void write(String name, String help, String type, double value, String... labels) {
+        if (labels.length % 2 != 0) { throw new IllegalArgumentException("Label without value: " + name); }
+        Family family = families.computeIfAbsent(name, _ -> new Family(help, type));
+        if (!family.type.equals(type)) { throw new IllegalArgumentException("Metric has other type: " + name); }
+        // Common labels first, then labels of the sample:
+        List<String> allLabels = new ArrayList<>(commonLabels);
+        allLabels.addAll(Arrays.asList(labels));
+        StringBuilder sample = new StringBuilder(name);
+        for (int i = 0; i < allLabels.size(); i += 2) {
+            sample.append(i == 0 ? "{" : ",").append(allLabels.get(i)).append("=\"").append(
+                    escape(allLabels.get(i + 1))).append('"');
+        }
+        if (!allLabels.isEmpty()) { sample.append('}'); }
+        family.samples.add(sample.append(' ').append(formatValue(value)).toString());
+    }
+
+    private static String escape(String labelValue) {
+        // Backslashes, quotes and new lines are the only escaped characters of label values:
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String formatValue(double value) {
+        if (Double.isNaN(value)) { return "NaN"; }
+        if (Double.isInfinite(value)) { return value > 0 ? "+Inf" : "-Inf"; }
+        // Counters of bytes and files are written without a fraction, timestamps without an exponent:
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value)
+                : BigDecimal.valueOf(value).toPlainString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        // Description and type of a metric once, before all its samples:
+        StringBuilder text = new StringBuilder();
+        families.forEach((name, family) -> {
+            text.append("# HELP ").append(name).append(' ').append(family.help.replace("\\", "\\\\")
+                    .replace("\n", "\\n")).append('\n');
+            text.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            family.samples.forEach(sample -> text.append(sample).append('\n'));
+        });
+        return text.toString();
+    }
+}
@@ -0,0 +1,19 @@
+package Utils;
+
+import java.time.LocalTime;
+
+// Limits applied to every device separately, zero means no limit:
+public record ThrottleSettings(long readBytesPerSecond, long writeBytesPerSecond, int operationsPerSecond,
+                               int unthrottledFromHour, int unthrottledToHour) {
+    public static ThrottleSettings unlimited() { return new ThrottleSettings(0, 0, 0, 0, 0); }
+
+    public boolean isThrottled(LocalTime time) {
+        // Equal hours mean that limits are applied all day:
+        if (unthrottledFromHour == unthrottledToHour) { return true; }
+        int hour = time.getHour();
+        // Unthrottled period may cross midnight (e.g. from 22 to 6):
+        if (unthrottledFromHour < unthrottledToHour) {
+            return hour < unthrottledFromHour || hour >= unthrottledToHour;
+        } return hour < unthrottledFromHour && hour >= unthrottledToHour;
+    }
+}
@@ -0,0 +1,94 @@
+package Archive;
+
+import Mirror.MirrorBackup;
+import Mirror.MirrorTask;
+import Mirror.SnapshotMirrorTask;
+import Utils.SimplePair;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+public class ArchiveBackup extends MirrorBackup {
+    private final static int parallelism = Runtime.getRuntime().availableProcessors();
+    private ExecutorService compressionExecutor;
+
+    // Overriding backup task:
+    @Override
+    protected synchronized MirrorTask createTask(Path sourcePath, Path destinationPath,
+                                                 BiFunction<Path, Path, Boolean> comparisonStrategy) {
+        // Pool shared by all path sets, blocks are compressed on all processors:
+        if (compressionExecutor == null) { compressionExecutor = Executors.newFixedThreadPool(parallelism); }
+        // Streaming source into a block-compressed archive:
+        return new ArchiveTask(this, sourcePath, destinationPath, comparisonStrategy, compressionExecutor,
+                parallelism);
+    }
+
+    @Override
+    public boolean isRestorable() { return true; }
+
+    @Override
+    public void restore(List<SimplePair<String>> paths, Path targetPath) throws IOException {
+        // Sources may not exist anymore, so paths are not validated like backup paths:
+        for (SimplePair<String> pathSet : paths) {
+            Path sourceName = Path.of(pathSet.key()).toAbsolutePath().normalize().getFileName();
+            if (sourceName == null) { throw new NoSuchFileException(pathSet.key()); }
+            // The newest archive of the source, only its entries are read back:
+            Path archiveFile = findLastArchive(Path.of(pathSet.val()), sourceName.toString()).orElseThrow(
+                    () -> new NoSuchFileException(Path.of(pathSet.val()).resolve(sourceName + "_*"
+                            + ArchiveFormat.archiveSuffix).toString()));
+            logger.log(Level.INFO, "Restoring archive %s into %s".formatted(archiveFile, targetPath));
+            try (ArchiveReader archiveReader = ArchiveReader.open(archiveFile)) {
+                archiveReader.extractAll(targetPath.resolve(sourceName));
+            }
+        }
+    }
+
+    private static Optional<Path> findLastArchive(Path destinationPath, String sourceName) throws IOException {
+        // Archives are named by the source and the time of the backup, partial archives are never restored:
+        String prefix = sourceName + "_";
+        try (Stream<Path> archives = Files.list(destinationPath)) {
+            return archives.filter(path -> {
+                String name = path.getFileName().toString();
+                if (!name.startsWith(prefix) || !name.endsWith(ArchiveFormat.archiveSuffix)
+                        || !Files.isRegularFile(path)) { return false; }
+                try {
+                    LocalDateTime.parse(name.substring(prefix.length(), name.length()
+                            - ArchiveFormat.archiveSuffix.length()), SnapshotMirrorTask.snapshotFormatter);
+                    return true;
+                } catch (DateTimeParseException | IndexOutOfBoundsException exc) { return false; }
+            }).max(Comparator.comparing(path -> path.getFileName().toString()));
+        }
+    }
+
+    @Override
+    public void joinAndDispose() throws InterruptedException {
+        // Joining backup and releasing compression threads:
+        super.joinAndDispose();
+        synchronized (this) {
+            if (compressionExecutor != null) {
+                compressionExecutor.shutdown();
+                compressionExecutor = null;
+            }
+        }
+    }
+
+    // Every destination gets its own archive:
+    @Override
+    protected boolean isFanOutCopy() { return false; }
+
+    // Backup name:
+    @Override
+    public String getBackupType() { return resourceBundle.getString("archiveBackup"); }
+}
@@ -0,0 +1,128 @@
+package Archive;
+
+import Mirror.MirrorState;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Layout: header, independently compressed blocks, index of blocks and entries, trailer with index offset.
+public final class ArchiveFormat {
+    public final static String archiveSuffix = ".tkza";
+    public final static int headerMagic = 0x544B5A41;
+    public final static int trailerMagic = 0x544B5A49;
+    public final static int formatVersion = 1;
+    public final static int headerSize = 2 * Integer.BYTES;
+    public final static int trailerSize = Long.BYTES + Integer.BYTES;
+    public final static int blockSize = 1024 * 1024;
+    public final static byte storedBlock = 0;
+    public final static byte deflatedBlock = 1;
+
+    public enum EntryType { DIRECTORY, REGULAR_FILE, SYMBOLIC_LINK }
+
+    // Entry of archive, content of files is placed at dataOffset of the uncompressed stream:
+    public record Entry(String path, EntryType type, long modificationTime, long size, String linkTarget,
+                        long dataOffset) { }
+
+    // Block of archive, covering uncompressed stream from uncompressedOffset:
+    public record Block(long archiveOffset, int compressedLength, int uncompressedLength, long uncompressedOffset,
+                        byte method) { }
+
+    // Compressed block content, before its place in archive is known:
+    public record CompressedBlock(byte[] data, int length, int uncompressedLength, byte method) { }
+
+    private ArchiveFormat() { }
+
+    public static CompressedBlock compress(byte[] data, int length) {
+        // Blocks are compressed without shared dictionary, so each of them can be inflated alone:
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            byte[] output = new byte[length];
+            int outputLength = 0;
+            while (!deflater.finished() && outputLength < output.length) {
+                outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+            }
+            // Storing incompressible data (e.g. photos or already compressed files) as it is:
+            if (!deflater.finished()) { return new CompressedBlock(data, length, length, storedBlock); }
+            return new CompressedBlock(output, outputLength, length, deflatedBlock);
+        } finally { deflater.end(); }
+    }
+
+    public static byte[] decompress(byte[] data, Block block) throws IOException {
+        if (block.method() == storedBlock) { return data; }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, 0, block.compressedLength());
+            byte[] output = new byte[block.uncompressedLength()];
+            int outputLength = 0;
+            while (outputLength < output.length) {
+                int inflated = inflater.inflate(output, outputLength, output.length - outputLength);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) { break; }
+                outputLength += inflated;
+            }
+            if (outputLength != output.length) { throw new EOFException("Block is truncated!"); }
+            return output;
+        } catch (DataFormatException exc) { throw new IOException(exc); }
+        finally { inflater.end(); }
+    }
+
+    public static void writeIndex(DataOutputStream outputStream, List<Block> blocks, List<Entry> entries)
+            throws IOException {
+        // Blocks:
+        outputStream.writeInt(blocks.size());
+        for (Block block : blocks) {
+            outputStream.writeLong(block.archiveOffset());
+            outputStream.writeInt(block.compressedLength());
+            outputStream.writeInt(block.uncompressedLength());
+            outputStream.writeByte(block.method());
+        }
+        // Entries:
+        outputStream.writeInt(entries.size());
+        for (Entry entry : entries) {
+            MirrorState.writeString(outputStream, entry.path());
+            outputStream.writeByte(entry.type().ordinal());
+            outputStream.writeLong(entry.modificationTime());
+            outputStream.writeLong(entry.size());
+            MirrorState.writeString(outputStream, Objects.requireNonNullElse(entry.linkTarget(), ""));
+            outputStream.writeLong(entry.dataOffset());
+        }
+    }
+
+    public static List<Block> readBlocks(DataInputStream inputStream) throws IOException {
+        int count = inputStream.readInt();
+        List<Block> blocks = new ArrayList<>(count);
+        long uncompressedOffset = 0;
+        for (int iter = 0; iter < count; ++iter) {
+            Block block = new Block(inputStream.readLong(), inputStream.readInt(), inputStream.readInt(),
+                    uncompressedOffset, inputStream.readByte());
+            uncompressedOffset += block.uncompressedLength();
+            blocks.add(block);
+        } return blocks;
+    }
+
+    public static List<Entry> readEntries(DataInputStream inputStream) throws IOException {
+        int count = inputStream.readInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int iter = 0; iter < count; ++iter) {
+            entries.add(new Entry(MirrorState.readString(inputStream),
+                    EntryType.values()[inputStream.readByte()], inputStream.readLong(), inputStream.readLong(),
+                    MirrorState.readString(inputStream), inputStream.readLong()));
+        } return entries;
+    }
+
+    public static int findBlock(List<Block> blocks, long uncompressedOffset) {
+        // Binary search of the block containing specified offset of uncompressed stream:
+        int low = 0, high = blocks.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (blocks.get(middle).uncompressedOffset() <= uncompressedOffset) { low = middle; }
+            else { high = middle - 1; }
+        } return low;
+    }
+}
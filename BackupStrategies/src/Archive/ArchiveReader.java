@@ -0,0 +1,131 @@
+package Archive;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+public class ArchiveReader implements Closeable {
+    private final FileChannel archiveChannel;
+    private final List<ArchiveFormat.Block> blocks;
+    private final Map<String, ArchiveFormat.Entry> entries;
+    // The last inflated block, consecutive small files usually share it:
+    private int cachedBlockIndex;
+    private byte[] cachedBlock;
+
+    private ArchiveReader(FileChannel channel, List<ArchiveFormat.Block> archiveBlocks,
+                          List<ArchiveFormat.Entry> archiveEntries) {
+        // Global variables:
+        archiveChannel = channel;
+        blocks = archiveBlocks;
+        entries = new LinkedHashMap<>();
+        for (ArchiveFormat.Entry entry : archiveEntries) { entries.put(entry.path(), entry); }
+        cachedBlockIndex = -1;
+    }
+
+    public static ArchiveReader open(Path archiveFile) throws IOException {
+        FileChannel channel = FileChannel.open(archiveFile, StandardOpenOption.READ);
+        try {
+            // Reading header:
+            ByteBuffer header = readFully(channel, 0, ArchiveFormat.headerSize);
+            if (header.getInt() != ArchiveFormat.headerMagic || header.getInt() != ArchiveFormat.formatVersion) {
+                throw new IOException("%s is not a supported archive!".formatted(archiveFile));
+            }
+            // Reading trailer, which points at the index:
+            long trailerOffset = channel.size() - ArchiveFormat.trailerSize;
+            if (trailerOffset < ArchiveFormat.headerSize) { throw new EOFException("Archive is truncated!"); }
+            ByteBuffer trailer = readFully(channel, trailerOffset, ArchiveFormat.trailerSize);
+            long indexOffset = trailer.getLong();
+            if (trailer.getInt() != ArchiveFormat.trailerMagic || indexOffset > trailerOffset) {
+                throw new IOException("Archive %s is incomplete!".formatted(archiveFile));
+            }
+            // Reading index only, blocks are read when needed:
+            ByteBuffer index = readFully(channel, indexOffset, (int) (trailerOffset - indexOffset));
+            try (DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(index.array()))) {
+                List<ArchiveFormat.Block> blocks = ArchiveFormat.readBlocks(inputStream);
+                return new ArchiveReader(channel, blocks, ArchiveFormat.readEntries(inputStream));
+            }
+        } catch (IOException | RuntimeException exc) {
+            channel.close();
+            throw exc;
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Archive is truncated!");
+            }
+        } return buffer.flip();
+    }
+
+    private byte[] readBlock(int blockIndex) throws IOException {
+        if (blockIndex == cachedBlockIndex) { return cachedBlock; }
+        // Reading and inflating only the requested block:
+        ArchiveFormat.Block block = blocks.get(blockIndex);
+        cachedBlock = ArchiveFormat.decompress(readFully(archiveChannel, block.archiveOffset(),
+                block.compressedLength()).array(), block);
+        cachedBlockIndex = blockIndex;
+        return cachedBlock;
+    }
+
+    public void extract(String path, Path target) throws IOException {
+        ArchiveFormat.Entry entry = entries.get(path);
+        if (entry == null) { throw new FileNotFoundException("%s is not in archive!".formatted(path)); }
+        extract(entry, target);
+    }
+
+    public void extract(ArchiveFormat.Entry entry, Path target) throws IOException {
+        switch (entry.type()) {
+            case DIRECTORY -> Files.createDirectories(target);
+            case SYMBOLIC_LINK -> {
+                Files.deleteIfExists(target);
+                Files.createSymbolicLink(target, Path.of(entry.linkTarget()));
+                return;
+            }
+            case REGULAR_FILE -> {
+                try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(target))) {
+                    // Copying data from the blocks which cover the file:
+                    long offset = entry.dataOffset();
+                    long end = entry.dataOffset() + entry.size();
+                    while (offset < end) {
+                        int blockIndex = ArchiveFormat.findBlock(blocks, offset);
+                        ArchiveFormat.Block block = blocks.get(blockIndex);
+                        byte[] data = readBlock(blockIndex);
+                        int start = (int) (offset - block.uncompressedOffset());
+                        int length = (int) Math.min(end - offset, block.uncompressedLength() - start);
+                        outputStream.write(data, start, length);
+                        offset += length;
+                    }
+                }
+            }
+        }
+        Files.setLastModifiedTime(target, FileTime.from(entry.modificationTime(), TimeUnit.NANOSECONDS));
+    }
+
+    public void extractAll(Path targetDirectory) throws IOException {
+        // Entries are stored in walking order, so parents are extracted before their children:
+        Files.createDirectories(targetDirectory);
+        for (ArchiveFormat.Entry entry : entries.values()) { extract(entry, targetDirectory.resolve(entry.path())); }
+        // Restoring modification times of directories, after all their entries have been created:
+        for (ArchiveFormat.Entry entry : entries.values()) {
+            if (entry.type() == ArchiveFormat.EntryType.DIRECTORY) {
+                Files.setLastModifiedTime(targetDirectory.resolve(entry.path()),
+                        FileTime.from(entry.modificationTime(), TimeUnit.NANOSECONDS));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException { archiveChannel.close(); }
+
+    // Getters:
+    public Collection<ArchiveFormat.Entry> getEntries() { return Collections.unmodifiableCollection(entries.values()); }
+    public int getBlocksCount() { return blocks.size(); }
+}
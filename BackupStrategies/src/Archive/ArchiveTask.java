@@ -0,0 +1,139 @@
+package Archive;
+
+import Mirror.MirrorTask;
+import Mirror.SnapshotMirrorTask;
+import Mirror.Statistics;
+import Mirror.StatisticsEnum;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+
+public class ArchiveTask extends MirrorTask {
+    private final static String partialArchiveSuffix = ".partial";
+    private final Path partialArchivePath;
+    private final ExecutorService compressionExecutor;
+    private final int parallelism;
+    private ArchiveWriter archiveWriter;
+    private ArchiveWriter.WriteException writeException;
+
+    public ArchiveTask(ArchiveBackup archiveBackup, Path srcPath, Path dstPath,
+                       BiFunction<Path, Path, Boolean> comparison, ExecutorService executor, int threads) {
+        // Every backup creates a new dated archive:
+        super(archiveBackup, srcPath, dstPath, dstPath.resolve(srcPath.getFileName() + "_"
+                + LocalDateTime.now().format(SnapshotMirrorTask.snapshotFormatter) + ArchiveFormat.archiveSuffix),
+                comparison);
+        // Global variables:
+        partialArchivePath = resolvedDestinationPath.resolveSibling(resolvedDestinationPath.getFileName()
+                + partialArchiveSuffix);
+        compressionExecutor = executor;
+        parallelism = threads;
+    }
+
+    @Override
+    public Statistics run() {
+        boolean isComplete = false;
+        try {
+            // Archive with the same name already exists (more than one backup in a second):
+            if (Files.exists(resolvedDestinationPath, LinkOption.NOFOLLOW_LINKS)) {
+                throw new FileAlreadyExistsException(resolvedDestinationPath.toString());
+            }
+            // Streaming source tree into the archive:
+            try (ArchiveWriter writer = new ArchiveWriter(partialArchivePath, compressionExecutor, parallelism)) {
+                archiveWriter = writer;
+                Files.walkFileTree(sourcePath, fileCopyVisitor);
+                // Archive which couldn't be written is never published:
+                if (writeException != null) { throw writeException; }
+                if (!isInterrupted()) {
+                    writer.finish();
+                    isComplete = true;
+                }
+            }
+            // Publishing the archive if it is complete:
+            if (isComplete) {
+                Files.move(partialArchivePath, resolvedDestinationPath, StandardCopyOption.ATOMIC_MOVE);
+                setConsole("archiveCreated", resolvedDestinationPath, archiveWriter.getBlocksCount(),
+                        archiveWriter.getUncompressedSize(), archiveWriter.getArchiveSize());
+            }
+        } catch (IOException exc) {
+            // Any backup error catch:
+            statistics.increment(StatisticsEnum.NOT_CREATED_DIRECTORIES);
+            setConsole("cannotFinishBackup", sourcePath, destinationPath);
+            getLogger().log(Level.SEVERE, "Creating archive of: %s, %s".formatted(
+                    sourcePath, destinationPath), exc);
+        } finally {
+            // Removing incomplete archive:
+            try {
+                Files.deleteIfExists(partialArchivePath);
+            } catch (IOException exc) {
+                getLogger().log(Level.WARNING, "Removing partial archive: %s".formatted(partialArchivePath), exc);
+            }
+        } return statistics;
+    }
+
+    @Override
+    public FileVisitResult createDirectory(Path dir) {
+        // Interrupt backup check:
+        if (isInterrupted()) { return FileVisitResult.TERMINATE; }
+        try {
+            // Directories are only recorded in the index:
+            archiveWriter.addDirectory(toEntryPath(dir), getModificationTime(Files.readAttributes(dir,
+                    BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS)));
+        } catch (IOException exc) {
+            // Skipping subtree with information:
+            getLogger().log(Level.SEVERE, "Archiving directory: %s".formatted(dir), exc);
+            statistics.increment(StatisticsEnum.NOT_VISITED_DIRS);
+            setConsole("errorVisitDir", dir);
+            return FileVisitResult.SKIP_SUBTREE;
+        } return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult mirrorFile(Path file) {
+        // Interrupt backup check:
+        if (isInterrupted()) { return FileVisitResult.TERMINATE; }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            if (attributes.isSymbolicLink()) {
+                // Symbolic links are stored as their targets:
+                archiveWriter.addSymbolicLink(toEntryPath(file), getModificationTime(attributes),
+                        Files.readSymbolicLink(file).toString());
+            } else {
+                // Appending file content to the compressed stream, within limits of the source device:
+                srcDevice.read(attributes.size());
+                try (InputStream inputStream = Files.newInputStream(file)) {
+                    archiveWriter.addFile(toEntryPath(file), getModificationTime(attributes), inputStream);
+                }
+                statistics.increment(StatisticsEnum.COPIED_FILES);
+                setConsole("fileArchived", file);
+            }
+            // Adding file size to a global files size sum:
+            addProcessedSize(attributes.size());
+        } catch (ArchiveWriter.WriteException exc) {
+            // Archive is broken, walking is stopped and the whole archive fails:
+            writeException = exc;
+            return FileVisitResult.TERMINATE;
+        } catch (IOException exc) {
+            // Sending proper communicate if error:
+            getLogger().log(Level.SEVERE, "Archiving file %s to %s".formatted(file, resolvedDestinationPath), exc);
+            statistics.increment(StatisticsEnum.NOT_COPIED_FILE);
+            setConsole("errorFileCopy", file, resolvedDestinationPath);
+        } return FileVisitResult.CONTINUE;
+    }
+
+    private String toEntryPath(Path entry) {
+        // Paths in archive are relative to the source, with '/' as separator:
+        return sourcePath.relativize(entry).toString().replace(entry.getFileSystem().getSeparator(), "/");
+    }
+
+    private static long getModificationTime(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,135 @@
+package Archive;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+public class ArchiveWriter implements Closeable {
+    private final FileChannel archiveChannel;
+    private final OutputStream outputStream;
+    private final ExecutorService compressionExecutor;
+    private final int maximumPendingBlocks;
+    private final Deque<Future<ArchiveFormat.CompressedBlock>> pendingBlocks;
+    private final List<ArchiveFormat.Block> blocks;
+    private final List<ArchiveFormat.Entry> entries;
+    private final byte[] block;
+    private int blockLength;
+    private long uncompressedOffset;
+    private long archiveOffset;
+
+    // Failure of compressing or writing the archive, unlike failures of reading sources it breaks the archive:
+    public static class WriteException extends IOException {
+        private WriteException(Throwable cause) { super(cause); }
+    }
+
+    public ArchiveWriter(Path archiveFile, ExecutorService executor, int parallelism) throws IOException {
+        // Global variables:
+        archiveChannel = FileChannel.open(archiveFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        outputStream = new BufferedOutputStream(Channels.newOutputStream(archiveChannel), ArchiveFormat.blockSize);
+        compressionExecutor = executor;
+        // Blocks compressed ahead of writing, more than threads to keep all of them busy:
+        maximumPendingBlocks = 2 * parallelism;
+        pendingBlocks = new ArrayDeque<>();
+        blocks = new ArrayList<>();
+        entries = new ArrayList<>();
+        block = new byte[ArchiveFormat.blockSize];
+        // Header:
+        DataOutputStream headerStream = new DataOutputStream(outputStream);
+        headerStream.writeInt(ArchiveFormat.headerMagic);
+        headerStream.writeInt(ArchiveFormat.formatVersion);
+        archiveOffset = ArchiveFormat.headerSize;
+    }
+
+    public void addDirectory(String path, long modificationTime) {
+        entries.add(new ArchiveFormat.Entry(path, ArchiveFormat.EntryType.DIRECTORY, modificationTime, 0,
+                null, uncompressedOffset));
+    }
+
+    public void addSymbolicLink(String path, long modificationTime, String linkTarget) {
+        entries.add(new ArchiveFormat.Entry(path, ArchiveFormat.EntryType.SYMBOLIC_LINK, modificationTime, 0,
+                linkTarget, uncompressedOffset));
+    }
+
+    public long addFile(String path, long modificationTime, InputStream inputStream) throws IOException {
+        // Files are appended to the uncompressed stream, so many small files share one block:
+        long dataOffset = uncompressedOffset;
+        int read;
+        while ((read = inputStream.read(block, blockLength, block.length - blockLength)) >= 0) {
+            blockLength += read;
+            uncompressedOffset += read;
+            if (blockLength == block.length) { submitBlock(); }
+        }
+        // Size is taken from the read data, the file may have changed after its attributes were read:
+        long size = uncompressedOffset - dataOffset;
+        entries.add(new ArchiveFormat.Entry(path, ArchiveFormat.EntryType.REGULAR_FILE, modificationTime, size,
+                null, dataOffset));
+        return size;
+    }
+
+    private void submitBlock() throws IOException {
+        // Compressing block in parallel with reading the following ones:
+        byte[] data = new byte[blockLength];
+        System.arraycopy(block, 0, data, 0, blockLength);
+        int length = blockLength;
+        pendingBlocks.add(compressionExecutor.submit(() -> ArchiveFormat.compress(data, length)));
+        blockLength = 0;
+        // Writing the oldest block when too many of them are waiting, so blocks are written in order:
+        if (pendingBlocks.size() >= maximumPendingBlocks) { writeBlock(pendingBlocks.poll()); }
+    }
+
+    private void writeBlock(Future<ArchiveFormat.CompressedBlock> pendingBlock) throws WriteException {
+        ArchiveFormat.CompressedBlock compressedBlock;
+        try {
+            compressedBlock = pendingBlock.get();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new WriteException(exc);
+        } catch (ExecutionException exc) { throw new WriteException(exc.getCause()); }
+        long blockUncompressedOffset = blocks.isEmpty() ? 0 : blocks.getLast().uncompressedOffset()
+                + blocks.getLast().uncompressedLength();
+        blocks.add(new ArchiveFormat.Block(archiveOffset, compressedBlock.length(),
+                compressedBlock.uncompressedLength(), blockUncompressedOffset, compressedBlock.method()));
+        try {
+            outputStream.write(compressedBlock.data(), 0, compressedBlock.length());
+        } catch (IOException exc) { throw new WriteException(exc); }
+        archiveOffset += compressedBlock.length();
+    }
+
+    public void finish() throws IOException {
+        // Compressing the last block and writing all remaining ones:
+        if (blockLength > 0) { submitBlock(); }
+        while (!pendingBlocks.isEmpty()) { writeBlock(pendingBlocks.poll()); }
+        // Index and trailer pointing at it:
+        long indexOffset = archiveOffset;
+        DataOutputStream indexStream = new DataOutputStream(outputStream);
+        ArchiveFormat.writeIndex(indexStream, blocks, entries);
+        indexStream.writeLong(indexOffset);
+        indexStream.writeInt(ArchiveFormat.trailerMagic);
+        indexStream.flush();
+        // Archive is complete only when it is on the device:
+        archiveChannel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Cancelling blocks which haven't been written:
+        pendingBlocks.forEach(pendingBlock -> pendingBlock.cancel(false));
+        try {
+            outputStream.close();
+        } finally { archiveChannel.close(); }
+    }
+
+    // Getters:
+    public int getBlocksCount() { return blocks.size(); }
+    public long getUncompressedSize() { return uncompressedOffset; }
+    public long getArchiveSize() { return archiveOffset; }
+}
@@ -0,0 +1,45 @@
+package Deduplication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// SHA-256 of chunk content stored as four longs, which are cheaper as map keys than arrays:
+public record ChunkHash(long part1, long part2, long part3, long part4) {
+    public final static String algorithm = "SHA-256";
+
+    public static ChunkHash of(byte[] data, int offset, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance(algorithm);
+            digest.update(data, offset, length);
+            return fromBytes(digest.digest());
+        } catch (NoSuchAlgorithmException exc) { throw new IllegalStateException(exc); }
+    }
+
+    public static ChunkHash fromBytes(byte[] hash) {
+        ByteBuffer buffer = ByteBuffer.wrap(hash);
+        return new ChunkHash(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+
+    public static ChunkHash read(DataInputStream inputStream) throws IOException {
+        return new ChunkHash(inputStream.readLong(), inputStream.readLong(), inputStream.readLong(),
+                inputStream.readLong());
+    }
+
+    public void write(DataOutputStream outputStream) throws IOException {
+        outputStream.writeLong(part1);
+        outputStream.writeLong(part2);
+        outputStream.writeLong(part3);
+        outputStream.writeLong(part4);
+    }
+
+    @Override
+    public String toString() {
+        return HexFormat.of().toHexDigits(part1) + HexFormat.of().toHexDigits(part2)
+                + HexFormat.of().toHexDigits(part3) + HexFormat.of().toHexDigits(part4);
+    }
+}
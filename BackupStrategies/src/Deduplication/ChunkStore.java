@@ -0,0 +1,358 @@
+package Deduplication;
+
+import Mirror.MirrorState;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+public class ChunkStore implements Closeable {
+    public final static String packsDirectoryName = "packs";
+    public final static String snapshotsDirectoryName = "snapshots";
+    public final static String indexFileName = "index";
+    public final static String snapshotSuffix = ".files";
+    private final static String packPrefix = "pack-";
+    private final static String packSuffix = ".pack";
+    private final static int snapshotFormatVersion = 1;
+    // Hash (32 bytes), pack number, offset and length:
+    private final static int indexRecordSize = 32 + Integer.BYTES + Long.BYTES + Integer.BYTES;
+    private final static long maximumPackSize = 256L * 1024 * 1024;
+    private final static int maximumPendingKilobytes = 256 * 1024;
+    private final static int restoreBatchSize = 64;
+    private final static ChunkLocation pendingLocation = new ChunkLocation(-1, -1, -1);
+    private final Path storePath;
+    private final Map<ChunkHash, ChunkLocation> locations;
+    private final ExecutorService packWriter;
+    private final Semaphore pendingKilobytes;
+    private final FileChannel indexChannel;
+    private final DataOutputStream indexStream;
+    // Index records of chunks which aren't synchronized in their pack yet:
+    private final ByteArrayOutputStream pendingIndex;
+    private final DataOutputStream pendingIndexStream;
+    private FileChannel packChannel;
+    private int packNumber;
+    private long packSize;
+    private volatile IOException writeException;
+
+    // Place of a chunk in pack files:
+    public record ChunkLocation(int packNumber, long offset, int length) { }
+
+    // Entry of a snapshot, regular files are described by the list of their chunks:
+    public record FileRecord(String path, FileType type, long modificationTime, long size, String linkTarget,
+                             List<ChunkHash> chunks) { }
+
+    public enum FileType { DIRECTORY, REGULAR_FILE, SYMBOLIC_LINK }
+
+    private ChunkStore(Path store, Map<ChunkHash, ChunkLocation> index, int nextPackNumber) throws IOException {
+        // Global variables:
+        storePath = store;
+        locations = new ConcurrentHashMap<>(index);
+        packNumber = nextPackNumber - 1;
+        // Only one thread writes packs, so chunks are written sequentially:
+        packWriter = Executors.newSingleThreadExecutor();
+        // Limit of chunks waiting for write:
+        pendingKilobytes = new Semaphore(maximumPendingKilobytes);
+        indexChannel = FileChannel.open(store.resolve(indexFileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        indexStream = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(indexChannel)));
+        pendingIndex = new ByteArrayOutputStream();
+        pendingIndexStream = new DataOutputStream(pendingIndex);
+    }
+
+    public static ChunkStore open(Path storePath) throws IOException {
+        // Creating store structure:
+        Files.createDirectories(storePath.resolve(packsDirectoryName));
+        Files.createDirectories(storePath.resolve(snapshotsDirectoryName));
+        // Loading index and removing the incomplete last record left by an interrupted write:
+        Path indexFile = storePath.resolve(indexFileName);
+        Map<ChunkHash, ChunkLocation> index = loadIndex(storePath);
+        if (Files.exists(indexFile)) {
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() / indexRecordSize * indexRecordSize);
+            }
+        }
+        // Every session writes new packs:
+        int nextPackNumber = 0;
+        try (Stream<Path> packs = Files.list(storePath.resolve(packsDirectoryName))) {
+            nextPackNumber = packs.map(ChunkStore::getPackNumber).filter(Objects::nonNull).max(
+                    Integer::compare).map(number -> number + 1).orElse(0);
+        }
+        return new ChunkStore(storePath, index, nextPackNumber);
+    }
+
+    private static Integer getPackNumber(Path pack) {
+        String name = pack.getFileName().toString();
+        if (!name.startsWith(packPrefix) || !name.endsWith(packSuffix)) { return null; }
+        try {
+            return Integer.parseInt(name.substring(packPrefix.length(), name.length() - packSuffix.length()));
+        } catch (NumberFormatException exc) { return null; }
+    }
+
+    private static Path getPackFile(Path storePath, int number) {
+        return storePath.resolve(packsDirectoryName).resolve(packPrefix + "%08d".formatted(number) + packSuffix);
+    }
+
+    public static Map<ChunkHash, ChunkLocation> loadIndex(Path storePath) throws IOException {
+        Map<ChunkHash, ChunkLocation> index = new HashMap<>();
+        Path indexFile = storePath.resolve(indexFileName);
+        if (!Files.exists(indexFile)) { return index; }
+        // Sizes of packs, chunks written after the last synchronization may be lost:
+        Map<Integer, Long> packSizes = new HashMap<>();
+        long records = Files.size(indexFile) / indexRecordSize;
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(indexFile)))) {
+            for (long iter = 0; iter < records; ++iter) {
+                ChunkHash hash = ChunkHash.read(inputStream);
+                ChunkLocation location = new ChunkLocation(inputStream.readInt(), inputStream.readLong(),
+                        inputStream.readInt());
+                long packFileSize = packSizes.computeIfAbsent(location.packNumber(), number -> {
+                    try {
+                        return Files.size(getPackFile(storePath, number));
+                    } catch (IOException exc) { return -1L; }
+                });
+                // Skipping chunks which don't exist in packs:
+                if (location.offset() + location.length() <= packFileSize) { index.put(hash, location); }
+            }
+        } return index;
+    }
+
+    public boolean put(ChunkHash hash, byte[] data, int length) throws IOException, InterruptedException {
+        // Rethrowing error of the previous write:
+        if (writeException != null) { throw writeException; }
+        // Storing only chunks which haven't been stored yet:
+        if (locations.putIfAbsent(hash, pendingLocation) != null) { return false; }
+        // Waiting if writer is behind chunking threads:
+        int kilobytes = Math.min(maximumPendingKilobytes, Math.max(1, length / 1024));
+        pendingKilobytes.acquire(kilobytes);
+        packWriter.execute(() -> {
+            try {
+                append(hash, data, length);
+            } finally { pendingKilobytes.release(kilobytes); }
+        });
+        return true;
+    }
+
+    private void append(ChunkHash hash, byte[] data, int length) {
+        try {
+            // Starting a new pack if the current one is full:
+            if (packChannel == null || packSize + length > maximumPackSize) { rollPack(); }
+            // Appending chunk to the pack:
+            ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+            while (buffer.hasRemaining()) { packChannel.write(buffer); }
+            ChunkLocation location = new ChunkLocation(packNumber, packSize, length);
+            packSize += length;
+            // Index record waits until the pack is synchronized, so the index never points to lost data:
+            hash.write(pendingIndexStream);
+            pendingIndexStream.writeInt(location.packNumber());
+            pendingIndexStream.writeLong(location.offset());
+            pendingIndexStream.writeInt(location.length());
+            locations.put(hash, location);
+        } catch (IOException exc) {
+            writeException = exc;
+            locations.remove(hash);
+        }
+    }
+
+    private void rollPack() throws IOException {
+        // Synchronizing the full pack before its index records:
+        if (packChannel != null) {
+            commitPack();
+            packChannel.close();
+        }
+        packChannel = FileChannel.open(getPackFile(storePath, ++packNumber), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+        packSize = 0;
+    }
+
+    private void commitPack() throws IOException {
+        // Pack is synchronized first, then index records of its chunks are appended:
+        packChannel.force(true);
+        pendingIndex.writeTo(indexStream);
+        pendingIndex.reset();
+        indexStream.flush();
+    }
+
+    public void flush() throws IOException {
+        // Waiting for all pending chunks:
+        try {
+            packWriter.submit(() -> {
+                if (packChannel != null) { commitPack(); }
+                // Snapshots written after flush rely on the index:
+                indexStream.flush();
+                indexChannel.force(false);
+                return null;
+            }).get();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException exc) { throw new IOException(exc.getCause()); }
+        if (writeException != null) { throw writeException; }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Finishing writes and releasing files:
+        try {
+            flush();
+        } finally {
+            packWriter.shutdown();
+            if (packChannel != null) { packChannel.close(); }
+            indexStream.close();
+        }
+    }
+
+    public void writeSnapshot(String name, Collection<FileRecord> records) throws IOException {
+        // Snapshot is written after its chunks are synchronized, so it never points to missing data:
+        flush();
+        List<FileRecord> sortedRecords = new ArrayList<>(records);
+        sortedRecords.sort(Comparator.comparing(FileRecord::path));
+        MirrorState.write(storePath.resolve(snapshotsDirectoryName).resolve(name + snapshotSuffix), outputStream -> {
+            outputStream.writeInt(snapshotFormatVersion);
+            outputStream.writeInt(sortedRecords.size());
+            for (FileRecord record : sortedRecords) {
+                MirrorState.writeString(outputStream, record.path());
+                outputStream.writeByte(record.type().ordinal());
+                outputStream.writeLong(record.modificationTime());
+                outputStream.writeLong(record.size());
+                MirrorState.writeString(outputStream, Objects.requireNonNullElse(record.linkTarget(), ""));
+                outputStream.writeInt(record.chunks().size());
+                for (ChunkHash hash : record.chunks()) { hash.write(outputStream); }
+            }
+        });
+    }
+
+    public static List<FileRecord> readSnapshot(Path snapshotFile) throws IOException {
+        return MirrorState.read(snapshotFile, inputStream -> {
+            if (inputStream.readInt() != snapshotFormatVersion) {
+                throw new IOException("Unsupported snapshot format!");
+            }
+            int count = inputStream.readInt();
+            List<FileRecord> records = new ArrayList<>(count);
+            for (int recordIter = 0; recordIter < count; ++recordIter) {
+                String path = MirrorState.readString(inputStream);
+                FileType type = FileType.values()[inputStream.readByte()];
+                long modificationTime = inputStream.readLong();
+                long size = inputStream.readLong();
+                String linkTarget = MirrorState.readString(inputStream);
+                int chunksCount = inputStream.readInt();
+                List<ChunkHash> chunks = new ArrayList<>(chunksCount);
+                for (int chunkIter = 0; chunkIter < chunksCount; ++chunkIter) {
+                    chunks.add(ChunkHash.read(inputStream));
+                }
+                records.add(new FileRecord(path, type, modificationTime, size, linkTarget, chunks));
+            } return records;
+        });
+    }
+
+    public static Optional<Path> findLastSnapshot(Path storePath) throws IOException {
+        // Snapshots are named by date, so the newest one has the greatest name:
+        Path snapshotsPath = storePath.resolve(snapshotsDirectoryName);
+        if (!Files.isDirectory(snapshotsPath)) { return Optional.empty(); }
+        try (Stream<Path> snapshots = Files.list(snapshotsPath)) {
+            return snapshots.filter(path -> path.getFileName().toString().endsWith(snapshotSuffix)).max(
+                    Path::compareTo);
+        }
+    }
+
+    public static void restore(Path storePath, Path snapshotFile, Path targetPath, ExecutorService executor)
+            throws IOException, InterruptedException {
+        Map<ChunkHash, ChunkLocation> index = loadIndex(storePath);
+        List<FileRecord> records = readSnapshot(snapshotFile);
+        // Creating directories and symbolic links before files:
+        Files.createDirectories(targetPath);
+        for (FileRecord record : records) {
+            Path target = targetPath.resolve(record.path());
+            if (record.type() == FileType.DIRECTORY) { Files.createDirectories(target); }
+            else if (record.type() == FileType.SYMBOLIC_LINK) {
+                Files.deleteIfExists(target);
+                Files.createSymbolicLink(target, Path.of(record.linkTarget()));
+            }
+        }
+        // Pack files shared by all reading threads, positional reads don't need synchronization:
+        Map<Integer, FileChannel> packs = new ConcurrentHashMap<>();
+        try {
+            List<FileRecord> files = records.stream().filter(
+                    record -> record.type() == FileType.REGULAR_FILE).toList();
+            // Restoring files in batches, so the number of open files is limited:
+            for (int batchStart = 0; batchStart < files.size(); batchStart += restoreBatchSize) {
+                restoreBatch(storePath, index, packs, files.subList(batchStart, Math.min(files.size(),
+                        batchStart + restoreBatchSize)), targetPath, executor);
+            }
+        } finally {
+            for (FileChannel channel : packs.values()) { channel.close(); }
+        }
+        // Restoring modification times of directories, after all their entries have been created:
+        for (FileRecord record : records) {
+            if (record.type() == FileType.DIRECTORY) {
+                Files.setLastModifiedTime(targetPath.resolve(record.path()),
+                        FileTime.from(record.modificationTime(), TimeUnit.NANOSECONDS));
+            }
+        }
+    }
+
+    private static void restoreBatch(Path storePath, Map<ChunkHash, ChunkLocation> index,
+                                     Map<Integer, FileChannel> packs, List<FileRecord> files, Path targetPath,
+                                     ExecutorService executor) throws IOException, InterruptedException {
+        List<FileChannel> targets = new ArrayList<>();
+        List<Future<?>> tasks = new ArrayList<>();
+        try {
+            for (FileRecord record : files) {
+                FileChannel target = FileChannel.open(targetPath.resolve(record.path()), StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                targets.add(target);
+                // Reading every chunk in parallel and writing it at its offset:
+                long offset = 0;
+                for (ChunkHash hash : record.chunks()) {
+                    ChunkLocation location = index.get(hash);
+                    if (location == null) {
+                        throw new IOException("Missing chunk %s of %s".formatted(hash, record.path()));
+                    }
+                    long chunkOffset = offset;
+                    tasks.add(executor.submit(() -> {
+                        ByteBuffer buffer = ByteBuffer.allocate(location.length());
+                        FileChannel pack = packs.computeIfAbsent(location.packNumber(), number -> {
+                            try {
+                                return FileChannel.open(getPackFile(storePath, number), StandardOpenOption.READ);
+                            } catch (IOException exc) { throw new UncheckedIOException(exc); }
+                        });
+                        while (buffer.hasRemaining()) {
+                            if (pack.read(buffer, location.offset() + buffer.position()) < 0) {
+                                throw new EOFException("Chunk %s is truncated".formatted(hash));
+                            }
+                        }
+                        // Verifying chunk content:
+                        if (!ChunkHash.of(buffer.array(), 0, location.length()).equals(hash)) {
+                            throw new IOException("Chunk %s is corrupted".formatted(hash));
+                        }
+                        buffer.flip();
+                        while (buffer.hasRemaining()) { target.write(buffer, chunkOffset + buffer.position()); }
+                        return null;
+                    }));
+                    offset += location.length();
+                }
+            }
+            // Waiting for the batch:
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                } catch (ExecutionException exc) { throw new IOException(exc.getCause()); }
+            }
+        } finally {
+            tasks.forEach(task -> task.cancel(false));
+            for (FileChannel target : targets) { target.close(); }
+        }
+        // Restoring modification times:
+        for (FileRecord record : files) {
+            Files.setLastModifiedTime(targetPath.resolve(record.path()),
+                    FileTime.from(record.modificationTime(), TimeUnit.NANOSECONDS));
+        }
+    }
+
+    public Path getStorePath() { return storePath; }
+}
@@ -0,0 +1,80 @@
+package Deduplication;
+
+import Mirror.MirrorBackup;
+import Mirror.MirrorTask;
+import Utils.SimplePair;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+
+public class ChunkStoreBackup extends MirrorBackup {
+    private ExecutorService chunkingExecutor;
+
+    // Overriding backup task:
+    @Override
+    protected synchronized MirrorTask createTask(Path sourcePath, Path destinationPath,
+                                                 BiFunction<Path, Path, Boolean> comparisonStrategy) {
+        // Pool shared by all path sets, chunking and hashing are limited by processors:
+        if (chunkingExecutor == null) {
+            chunkingExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+        // Storing new and changed files as chunks in a store next to the source name:
+        return new ChunkStoreTask(this, sourcePath, destinationPath, comparisonStrategy, chunkingExecutor);
+    }
+
+    public void restore(Path storePath, Path snapshotFile, Path targetPath) throws IOException,
+            InterruptedException {
+        // Restoring snapshot with chunks read in parallel:
+        ExecutorService restoreExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            ChunkStore.restore(storePath, snapshotFile, targetPath, restoreExecutor);
+        } finally { restoreExecutor.shutdownNow(); }
+    }
+
+    @Override
+    public boolean isRestorable() { return true; }
+
+    @Override
+    public void restore(List<SimplePair<String>> paths, Path targetPath) throws IOException, InterruptedException {
+        // Sources may not exist anymore, so paths are not validated like backup paths:
+        ExecutorService restoreExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (SimplePair<String> pathSet : paths) {
+                Path sourceName = Path.of(pathSet.key()).toAbsolutePath().normalize().getFileName();
+                if (sourceName == null) { throw new NoSuchFileException(pathSet.key()); }
+                // The last snapshot of the store next to the source name:
+                Path storePath = Path.of(pathSet.val()).resolve(sourceName + ChunkStoreTask.storeSuffix);
+                Path snapshotFile = ChunkStore.findLastSnapshot(storePath).orElseThrow(() -> new NoSuchFileException(
+                        storePath.resolve(ChunkStore.snapshotsDirectoryName).toString()));
+                logger.log(Level.INFO, "Restoring snapshot %s into %s".formatted(snapshotFile, targetPath));
+                ChunkStore.restore(storePath, snapshotFile, targetPath.resolve(sourceName), restoreExecutor);
+            }
+        } finally { restoreExecutor.shutdownNow(); }
+    }
+
+    @Override
+    public void joinAndDispose() throws InterruptedException {
+        // Joining backup and releasing chunking threads:
+        super.joinAndDispose();
+        synchronized (this) {
+            if (chunkingExecutor != null) {
+                chunkingExecutor.shutdown();
+                chunkingExecutor = null;
+            }
+        }
+    }
+
+    // Every destination has its own chunk store:
+    @Override
+    protected boolean isFanOutCopy() { return false; }
+
+    // Backup name:
+    @Override
+    public String getBackupType() { return resourceBundle.getString("chunkStoreBackup"); }
+}
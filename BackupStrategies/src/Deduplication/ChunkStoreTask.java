@@ -0,0 +1,195 @@
+package Deduplication;
+
+import Mirror.MirrorTask;
+import Mirror.SnapshotMirrorTask;
+import Mirror.Statistics;
+import Mirror.StatisticsEnum;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+
+public class ChunkStoreTask extends MirrorTask {
+    public final static String storeSuffix = ".chunks";
+    private final static int maximumFilesInProgress = 64;
+    private final ExecutorService chunkingExecutor;
+    private final Semaphore filesInProgress;
+    private final Phaser pendingFiles;
+    private final Queue<ChunkStore.FileRecord> fileRecords;
+    private final String snapshotName;
+    private Map<String, ChunkStore.FileRecord> previousRecords;
+    private ChunkStore chunkStore;
+
+    public ChunkStoreTask(ChunkStoreBackup chunkStoreBackup, Path srcPath, Path dstPath,
+                          BiFunction<Path, Path, Boolean> comparison, ExecutorService executor) {
+        // Chunks of all snapshots of the source are kept in one store:
+        super(chunkStoreBackup, srcPath, dstPath, dstPath.resolve(srcPath.getFileName() + storeSuffix),
+                comparison);
+        // Global variables:
+        chunkingExecutor = executor;
+        snapshotName = LocalDateTime.now().format(SnapshotMirrorTask.snapshotFormatter);
+        // Limit of files read at once, chunks of a file are kept in memory until they are written:
+        filesInProgress = new Semaphore(maximumFilesInProgress);
+        pendingFiles = new Phaser(1);
+        fileRecords = new ConcurrentLinkedQueue<>();
+        previousRecords = Map.of();
+    }
+
+    @Override
+    public Statistics run() {
+        try (ChunkStore store = ChunkStore.open(resolvedDestinationPath)) {
+            chunkStore = store;
+            // Files which haven't changed since the previous snapshot are not read again:
+            Optional<Path> previousSnapshot = ChunkStore.findLastSnapshot(resolvedDestinationPath);
+            if (previousSnapshot.isPresent()) {
+                previousRecords = new HashMap<>();
+                for (ChunkStore.FileRecord record : ChunkStore.readSnapshot(previousSnapshot.get())) {
+                    previousRecords.put(record.path(), record);
+                }
+                setConsole("previousChunkSnapshot", previousSnapshot.get());
+            }
+            // Walking source tree, files are chunked in parallel:
+            try {
+                Files.walkFileTree(sourcePath, fileCopyVisitor);
+            } finally {
+                // Waiting for all files, even if walking has failed:
+                pendingFiles.arriveAndAwaitAdvance();
+            }
+            // Writing snapshot only if it is complete:
+            if (!isInterrupted()) {
+                store.writeSnapshot(snapshotName, fileRecords);
+                setConsole("chunkSnapshotCreated", snapshotName, resolvedDestinationPath);
+            }
+        } catch (IOException exc) {
+            // Any backup error catch:
+            statistics.increment(StatisticsEnum.NOT_CREATED_DIRECTORIES);
+            setConsole("cannotFinishBackup", sourcePath, destinationPath);
+            getLogger().log(Level.SEVERE, "Creating chunk snapshot of: %s, %s".formatted(
+                    sourcePath, destinationPath), exc);
+        } return statistics;
+    }
+
+    @Override
+    public FileVisitResult createDirectory(Path dir) {
+        // Interrupt backup check:
+        if (isInterrupted()) { return FileVisitResult.TERMINATE; }
+        try {
+            // Directories are only recorded in the snapshot:
+            fileRecords.add(new ChunkStore.FileRecord(toRecordPath(dir), ChunkStore.FileType.DIRECTORY,
+                    getModificationTime(Files.readAttributes(dir, BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS)), 0, null, List.of()));
+        } catch (IOException exc) {
+            // Skipping subtree with information:
+            getLogger().log(Level.SEVERE, "Recording directory: %s".formatted(dir), exc);
+            statistics.increment(StatisticsEnum.NOT_VISITED_DIRS);
+            setConsole("errorVisitDir", dir);
+            return FileVisitResult.SKIP_SUBTREE;
+        } return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult mirrorFile(Path file) {
+        // Interrupt backup check:
+        if (isInterrupted()) { return FileVisitResult.TERMINATE; }
+        try {
+            // Waiting for a free slot, so walking doesn't run ahead of chunking:
+            filesInProgress.acquire();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            return FileVisitResult.TERMINATE;
+        }
+        pendingFiles.register();
+        try {
+            chunkingExecutor.execute(() -> {
+                try {
+                    storeFile(file);
+                } finally {
+                    filesInProgress.release();
+                    pendingFiles.arriveAndDeregister();
+                }
+            });
+        } catch (RejectedExecutionException exc) {
+            filesInProgress.release();
+            pendingFiles.arriveAndDeregister();
+            return FileVisitResult.TERMINATE;
+        } return FileVisitResult.CONTINUE;
+    }
+
+    private void storeFile(Path file) {
+        if (isInterrupted()) { return; }
+        String recordPath = toRecordPath(file);
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            long modificationTime = getModificationTime(attributes);
+            if (attributes.isSymbolicLink()) {
+                // Symbolic links are stored as their targets:
+                fileRecords.add(new ChunkStore.FileRecord(recordPath, ChunkStore.FileType.SYMBOLIC_LINK,
+                        modificationTime, 0, Files.readSymbolicLink(file).toString(), List.of()));
+            } else {
+                ChunkStore.FileRecord previousRecord = previousRecords.get(recordPath);
+                if (previousRecord != null && previousRecord.type() == ChunkStore.FileType.REGULAR_FILE
+                        && previousRecord.size() == attributes.size()
+                        && previousRecord.modificationTime() == modificationTime) {
+                    // Reusing chunks of unchanged file:
+                    fileRecords.add(previousRecord);
+                } else {
+                    // Reading file within limits of the source device:
+                    srcDevice.read(attributes.size());
+                    fileRecords.add(new ChunkStore.FileRecord(recordPath, ChunkStore.FileType.REGULAR_FILE,
+                            modificationTime, attributes.size(), null, chunkFile(file)));
+                    statistics.increment(StatisticsEnum.COPIED_FILES);
+                    setConsole("fileChunked", file);
+                }
+            }
+            // Adding file size to a global files size sum:
+            addProcessedSize(attributes.size());
+        } catch (IOException exc) {
+            // Sending proper communicate if error:
+            getLogger().log(Level.SEVERE, "Storing chunks of file %s in %s".formatted(
+                    file, resolvedDestinationPath), exc);
+            statistics.increment(StatisticsEnum.NOT_COPIED_FILE);
+            setConsole("errorFileCopy", file, resolvedDestinationPath);
+        }
+    }
+
+    private List<ChunkHash> chunkFile(Path file) throws IOException {
+        List<ChunkHash> chunks = new ArrayList<>();
+        try (InputStream inputStream = Files.newInputStream(file)) {
+            GearChunker.split(inputStream, (data, length) -> {
+                ChunkHash hash = ChunkHash.of(data, 0, length);
+                chunks.add(hash);
+                // Writing only chunks which are not in the store yet:
+                boolean isStored;
+                try {
+                    isStored = chunkStore.put(hash, data, length);
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException(exc.getMessage());
+                }
+                statistics.increment(isStored ? StatisticsEnum.STORED_CHUNKS : StatisticsEnum.REUSED_CHUNKS);
+            });
+        } return chunks;
+    }
+
+    private String toRecordPath(Path entry) {
+        // Paths in snapshots are relative to the source, with '/' as separator:
+        String relativePath = sourcePath.relativize(entry).toString();
+        return relativePath.replace(entry.getFileSystem().getSeparator(), "/");
+    }
+
+    private static long getModificationTime(BasicFileAttributes attributes) {
+        // Microsecond precision, which is kept by all file systems that keep sub-second times:
+        return TimeUnit.MICROSECONDS.toNanos(attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS));
+    }
+
+    // Getters:
+    public String getSnapshotName() { return snapshotName; }
+}
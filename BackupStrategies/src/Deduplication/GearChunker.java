@@ -0,0 +1,65 @@
+package Deduplication;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.SplittableRandom;
+
+public class GearChunker {
+    public final static int minimumChunkSize = 256 * 1024;
+    public final static int averageChunkBits = 20;
+    public final static int maximumChunkSize = 4 * 1024 * 1024;
+    // Cut point is found when the highest bits of the rolling hash are zeros (on average every 2^bits bytes):
+    private final static long cutMask = -1L << (Long.SIZE - averageChunkBits);
+    private final static long[] gearTable = createGearTable();
+    // Buffer of every chunking thread, reused by all files it splits (chunks are passed on as copies):
+    private final static ThreadLocal<byte[]> threadBuffer = ThreadLocal.withInitial(() -> new byte[maximumChunkSize]);
+
+    @FunctionalInterface
+    public interface ChunkConsumer { void accept(byte[] data, int length) throws IOException; }
+
+    private GearChunker() { }
+
+    private static long[] createGearTable() {
+        // Table must be the same for every run, otherwise boundaries and deduplication would change:
+        SplittableRandom random = new SplittableRandom(0x544B5A43444CL);
+        long[] table = new long[256];
+        for (int iter = 0; iter < table.length; ++iter) { table[iter] = random.nextLong(); }
+        return table;
+    }
+
+    public static int findCutPoint(byte[] data, int length) {
+        // Chunks shorter than minimum are not searched for boundaries:
+        if (length <= minimumChunkSize) { return length; }
+        int end = Math.min(length, maximumChunkSize);
+        long hash = 0;
+        // Rolling gear hash, which depends only on the last 64 bytes:
+        for (int iter = minimumChunkSize; iter < end; ++iter) {
+            hash = (hash << 1) + gearTable[data[iter] & 0xff];
+            if ((hash & cutMask) == 0) { return iter + 1; }
+        } return end;
+    }
+
+    public static void split(InputStream inputStream, ChunkConsumer consumer) throws IOException {
+        // Buffer holds at most one maximal chunk, the rest of data is moved to the beginning after each cut:
+        byte[] buffer = threadBuffer.get();
+        int length = 0;
+        boolean isEnd = false;
+        while (true) {
+            // Filling the buffer:
+            while (!isEnd && length < buffer.length) {
+                int read = inputStream.read(buffer, length, buffer.length - length);
+                if (read < 0) { isEnd = true; }
+                else { length += read; }
+            }
+            if (length == 0) { return; }
+            // Cutting a chunk and passing its copy to the consumer:
+            int cutPoint = findCutPoint(buffer, length);
+            byte[] chunk = new byte[cutPoint];
+            System.arraycopy(buffer, 0, chunk, 0, cutPoint);
+            consumer.accept(chunk, cutPoint);
+            // Moving the rest of data:
+            System.arraycopy(buffer, cutPoint, buffer, 0, length - cutPoint);
+            length -= cutPoint;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package ExecutesStrategies;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveConcurrencyController {
+    public final static int maximumLimit = 16;
+    private final static long measurementWindowTime = TimeUnit.SECONDS.toNanos(1);
+    // Latency growth over the best observed latency which is treated as congestion:
+    private final static double latencyTolerance = 1.5;
+    // Best latency slowly drifts up, so controller adapts when device becomes slower:
+    private final static double baselineLatencyDrift = 1.02;
+    // Unit of work for latency, so big and small files are comparable:
+    private final static long latencyUnitSize = 64 * 1024;
+    private final static int maximumHistorySize = 1024;
+    private final List<Sample> history;
+    private int limit;
+    private long windowStartTime;
+    private long windowBytes;
+    private long windowUnits;
+    private long windowLatencySum;
+    private double lastThroughput;
+    private double baselineLatency;
+
+    // Measurement of one window and the limit chosen after it:
+    public record Sample(long timeMillis, int limit, double bytesPerSecond, double latencyNanos) { }
+
+    public AdaptiveConcurrencyController() {
+        // Starting with one task, like the serial execution:
+        limit = 1;
+        history = new ArrayList<>();
+        windowStartTime = System.nanoTime();
+    }
+
+    public synchronized void recordOperation(long bytes, long nanos) {
+        // Gathering measurements of the current window:
+        long units = Math.max(1, bytes / latencyUnitSize);
+        windowBytes += bytes;
+        windowUnits += units;
+        windowLatencySum += nanos;
+        long now = System.nanoTime();
+        if (now - windowStartTime >= measurementWindowTime) { adjust(now); }
+    }
+
+    private void adjust(long now) {
+        double throughput = windowBytes * (double) TimeUnit.SECONDS.toNanos(1) / (now - windowStartTime);
+        double latency = windowLatencySum / (double) windowUnits;
+        // Updating the best observed latency:
+        baselineLatency = baselineLatency == 0 ? latency : Math.min(latency, baselineLatency * baselineLatencyDrift);
+        if (latency > baselineLatency * latencyTolerance) {
+            // Multiplicative decrease when device is congested:
+            limit = Math.max(1, limit / 2);
+        } else if (throughput >= lastThroughput) {
+            // Additive increase while throughput doesn't fall:
+            limit = Math.min(maximumLimit, limit + 1);
+        }
+        lastThroughput = throughput;
+        // Storing history, the oldest samples are dropped:
+        if (history.size() >= maximumHistorySize) { history.removeFirst(); }
+        history.add(new Sample(System.currentTimeMillis(), limit, throughput, latency));
+        // Starting a new window:
+        windowStartTime = now;
+        windowBytes = windowUnits = windowLatencySum = 0;
+    }
+
+    // Getters:
+    public synchronized int getLimit() { return limit; }
+    public synchronized List<Sample> getHistory() { return List.copyOf(history); }
+}
@@ -7,19 +7,26 @@ import java.nio.file.FileStore;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class AutomateAsyncExecutor implements BackupExecutor {
-    private ExecutorService executor;
+    // Throughput assumed for devices without measurements, so their size estimates are comparable:
+    private final static double unmeasuredThroughput = 100 * 1024 * 1024;
+    // Tasks of all groups running at once, free places are given to groups with the longest planned time first:
+    private final static int maximumRunningTasks = AdaptiveConcurrencyController.maximumLimit;
+    private volatile ExecutorService executor;
+    private final Map<copyDevices, AdaptiveConcurrencyController> controllers;
+    private final Map<SimplePair<Path>, GroupRun<?>> pathsGroups;
+    private volatile List<GroupRun<?>> lastGroups;
+    private volatile CriticalPath plannedCriticalPath;
+    private int runningTasks;
     protected final Logger logger;
 
     // Simple pair of paths set (source path, destination path) and devices where paths are stored:
@@ -46,15 +53,145 @@ public class AutomateAsyncExecutor implements BackupExecutor {
                 return Objects.equals(srcFileStore, cd.srcFileStore) && Objects.equals(dstFileStore, cd.dstFileStore);
             } return false;
         }
+
+        @Override
+        public String toString() { return "%s -> %s".formatted(srcFileStore, dstFileStore); }
+    }
+
+    // Paths sets of one devices group, started while the number of running tasks is below the group limit:
+    private class GroupRun<R> {
+        private final copyDevices devices;
+        private final AdaptiveConcurrencyController controller;
+        private final Deque<SimplePair<Path>> pendingPaths;
+        private final Map<SimplePair<Path>, Long> sizes;
+        // Path set whose end allowed a path set to start, chains of them form the actual critical path:
+        private final Map<SimplePair<Path>, SimplePair<Path>> predecessors;
+        private final Function<SimplePair<Path>, R> backupTask;
+        private final BiFunction<R, R, R> mergeStrategy;
+        private final CompletableFuture<R> groupResult;
+        private int runningTasks;
+        private int finishedTasks;
+        private R mergedResult;
+        private SimplePair<Path> lastFinishedPath;
+        private long startTime, finishTime;
+        private CriticalPath plannedPath;
+
+        private GroupRun(copyDevices groupDevices, AdaptiveConcurrencyController concurrencyController,
+                         Function<SimplePair<Path>, R> task, BiFunction<R, R, R> merge) {
+            // Global variables:
+            devices = groupDevices;
+            controller = concurrencyController;
+            backupTask = task;
+            mergeStrategy = merge;
+            pendingPaths = new ArrayDeque<>();
+            sizes = new HashMap<>();
+            predecessors = new HashMap<>();
+            groupResult = new CompletableFuture<>();
+        }
+
+        private synchronized void plan() {
+            // Largest path sets first, so the biggest one isn't left for the end of the backup:
+            List<SimplePair<Path>> sortedPaths = new ArrayList<>(pendingPaths);
+            sortedPaths.sort(Comparator.comparingLong((SimplePair<Path> pathSet) -> sizes.get(pathSet)).reversed());
+            pendingPaths.clear();
+            pendingPaths.addAll(sortedPaths);
+            // Assigning path sets to the least loaded of concurrent tasks (longest processing time rule):
+            long[] tasksLoads = new long[controller.getLimit()];
+            List<List<SimplePair<Path>>> tasksPaths = new ArrayList<>();
+            for (int i = 0; i < tasksLoads.length; ++i) { tasksPaths.add(new ArrayList<>()); }
+            for (SimplePair<Path> pathSet : sortedPaths) {
+                int leastLoaded = 0;
+                for (int i = 1; i < tasksLoads.length; ++i) {
+                    if (tasksLoads[i] < tasksLoads[leastLoaded]) { leastLoaded = i; }
+                }
+                tasksLoads[leastLoaded] += sizes.get(pathSet);
+                tasksPaths.get(leastLoaded).add(pathSet);
+            }
+            // The most loaded task is the planned critical path of the group:
+            int mostLoaded = 0;
+            for (int i = 1; i < tasksLoads.length; ++i) {
+                if (tasksLoads[i] > tasksLoads[mostLoaded]) { mostLoaded = i; }
+            }
+            plannedPath = new CriticalPath(devices.toString(), tasksLoads[mostLoaded],
+                    estimateMillis(tasksLoads[mostLoaded]), List.copyOf(tasksPaths.get(mostLoaded)));
+            startTime = System.nanoTime();
+        }
+
+        private long estimateMillis(long bytes) {
+            // Using the last measured throughput of devices:
+            List<AdaptiveConcurrencyController.Sample> history = controller.getHistory();
+            double throughput = history.isEmpty() ? unmeasuredThroughput : history.getLast().bytesPerSecond();
+            return (long) (bytes * 1000. / Math.max(1, throughput));
+        }
+
+        private synchronized void schedule(SimplePair<Path> releasingPath) {
+            // Starting tasks up to the current limit of the group and the limit of all groups:
+            while (runningTasks < controller.getLimit() && AutomateAsyncExecutor.this.runningTasks
+                    < maximumRunningTasks && !pendingPaths.isEmpty()) {
+                SimplePair<Path> pathSet = pendingPaths.poll();
+                // Path sets started now are waiting for the finished one:
+                predecessors.put(pathSet, releasingPath);
+                ++runningTasks;
+                ++AutomateAsyncExecutor.this.runningTasks;
+                try {
+                    CompletableFuture.supplyAsync(() -> backupTask.apply(pathSet), executor).thenAccept(
+                            result -> finish(pathSet, result));
+                } catch (RejectedExecutionException exc) {
+                    // Executor has been shut down, the group never finishes:
+                    logger.log(Level.WARNING, "Rejected backup of: %s".formatted(pathSet), exc);
+                    --runningTasks;
+                    --AutomateAsyncExecutor.this.runningTasks;
+                    pendingPaths.clear();
+                }
+            }
+        }
+
+        private void finish(SimplePair<Path> pathSet, R result) {
+            boolean isGroupFinished;
+            synchronized (this) {
+                // Merging result of a finished task:
+                mergedResult = finishedTasks++ == 0 ? result : mergeStrategy.apply(mergedResult, result);
+                lastFinishedPath = pathSet;
+                --runningTasks;
+                isGroupFinished = runningTasks == 0 && pendingPaths.isEmpty();
+                if (isGroupFinished) { finishTime = System.nanoTime(); }
+            }
+            // Place of the finished task is taken before the group completes, groups are locked in one order:
+            release(this, pathSet);
+            if (isGroupFinished) { groupResult.complete(mergedResult); }
+        }
+
+        private synchronized CriticalPath getActualPath() {
+            // Following path sets which were waiting for each other, from the last finished one:
+            Deque<SimplePair<Path>> chain = new ArrayDeque<>();
+            long bytes = 0;
+            for (SimplePair<Path> pathSet = lastFinishedPath; pathSet != null; pathSet = predecessors.get(pathSet)) {
+                chain.addFirst(pathSet);
+                bytes += sizes.get(pathSet);
+            }
+            return new CriticalPath(devices.toString(), bytes, TimeUnit.NANOSECONDS.toMillis(
+                    finishTime - startTime), List.copyOf(chain));
+        }
+
+        // Getters:
+        private synchronized int getPendingCount() { return pendingPaths.size(); }
+        private synchronized boolean isFinished() { return groupResult.isDone(); }
+        private synchronized long getFinishTime() { return finishTime; }
     }
 
     public AutomateAsyncExecutor(Logger log) {
         // Global variables:
         logger = log;
+        // Controllers are kept between backups, so the next backup starts from learnt limits:
+        controllers = new ConcurrentHashMap<>();
+        pathsGroups = new ConcurrentHashMap<>();
+        lastGroups = List.of();
     }
 
     @Override
     public void joinAndShutdown() throws InterruptedException {
+        // Executor exists only after the first backup:
+        if (executor == null) { return; }
         // Disposing executor:
         executor.shutdownNow();
         // Waiting forever for backup to finish:
@@ -66,15 +203,61 @@ public class AutomateAsyncExecutor implements BackupExecutor {
     }
 
     @Override
-    public <R> void execute(List<SimplePair<Path>> backupPaths, BiFunction<Path, Path, R> backupStrategy,
+    public void recordOperation(Path srcPath, Path dstPath, long bytes, long nanos) {
+        GroupRun<?> groupRun = pathsGroups.get(new SimplePair<>(srcPath, dstPath));
+        if (groupRun == null) { return; }
+        // Measuring devices group and starting more tasks if its limit has grown:
+        groupRun.controller.recordOperation(bytes, nanos);
+        scheduleGroups(null, null);
+    }
+
+    private synchronized void release(GroupRun<?> releasingGroup, SimplePair<Path> releasingPath) {
+        --runningTasks;
+        scheduleGroups(releasingGroup, releasingPath);
+    }
+
+    private synchronized void scheduleGroups(GroupRun<?> releasingGroup, SimplePair<Path> releasingPath) {
+        // Groups are sorted by planned time, so the group of the critical path gets free places first:
+        for (GroupRun<?> groupRun : lastGroups) {
+            groupRun.schedule(groupRun == releasingGroup ? releasingPath : null);
+        }
+    }
+
+    @Override
+    public Map<String, AdaptiveConcurrencyController> getConcurrencyControllers() {
+        Map<String, AdaptiveConcurrencyController> namedControllers = new TreeMap<>();
+        controllers.forEach((devices, controller) -> namedControllers.put(devices.toString(), controller));
+        return namedControllers;
+    }
+
+    @Override
+    public Optional<CriticalPath> getPlannedCriticalPath() { return Optional.ofNullable(plannedCriticalPath); }
+
+    @Override
+    public Optional<CriticalPath> getActualCriticalPath() {
+        // Devices group which has finished as the last one:
+        return lastGroups.stream().filter(GroupRun::isFinished).max(Comparator.comparingLong(
+                GroupRun::getFinishTime)).map(GroupRun::getActualPath);
+    }
+
+    @Override
+    public int getQueuedTasks() { return lastGroups.stream().mapToInt(GroupRun::getPendingCount).sum(); }
+
+    @Override
+    public int getActiveThreads() {
+        // Cached thread pool reports threads which are running tasks:
+        return executor instanceof ThreadPoolExecutor pool ? pool.getActiveCount() : 0;
+    }
+
+    @Override
+    public <R> void execute(List<SimplePair<Path>> backupPaths, ToLongFunction<SimplePair<Path>> sizeEstimate,
+                            BiFunction<Path, Path, R> backupStrategy,
                             BiFunction<R, R, R> mergeStrategy, Consumer<R> finishStrategy,
                             BiConsumer<IOException, SimplePair<Path>> pathsErrorStrategy) {
-        // Declaring new ExecutorService if it doesn't exist:
-        if (executor == null) {
-            executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
-        }
+        // Declaring new ExecutorService if it doesn't exist, threads are limited by groups controllers:
+        if (executor == null) { executor = Executors.newCachedThreadPool(); }
         // Declaring task dictionary:
-        Map<copyDevices, CompletableFuture<R>> executorList = new HashMap<>();
+        Map<copyDevices, GroupRun<R>> executorList = new HashMap<>();
         // Exception strategy when backupStrategy throw any exceptions:
         Function<Throwable, R> backupExceptionStrategy = exc -> {
             logger.log(Level.SEVERE, "Exception thrown from backup instance!", exc);
@@ -97,40 +280,41 @@ public class AutomateAsyncExecutor implements BackupExecutor {
                 logger.log(Level.SEVERE, "Exception thrown from finish function!", exc);
             }
         };
+        // Backup task which catches any errors thrown from backup instance:
+        Function<SimplePair<Path>, R> backupTask = pathSet -> {
+            try {
+                return backupStrategy.apply(pathSet.key(), pathSet.val());
+            } catch (Throwable exc) { return backupExceptionStrategy.apply(exc); }
+        };
 
         copyDevices copyDevices;
         for (SimplePair<Path> pathSet : backupPaths) {
             try {
                 // Declaring devices of the current path set:
                 copyDevices = new copyDevices(pathSet);
-                executorList.compute(copyDevices, (key, val) -> {
-                    if (val == null) {
-                        // Creating new subtree and new backup as a separated task:
-                        // Also catching any errors thrown from backup instance:
-                        return CompletableFuture.supplyAsync(() -> backupStrategy.apply(
-                                key.pathSet.key(), key.pathSet.val()), executor).exceptionally(backupExceptionStrategy);
-
-                    } else {
-                        // Queueing a new task in an existing tree:
-                        return val.thenApply(statistics -> {
-                            R backupReturn;
-                            // Invoking a backup task and catching any exceptions:
-                            try {
-                                backupReturn = backupStrategy.apply(key.pathSet.key(), key.pathSet.val());
-                            } catch (Throwable exc) { backupReturn = backupExceptionStrategy.apply(exc); }
-                            // Merging two results using merge strategy:
-                            return mergeApply.apply(statistics, backupReturn);
-                        });
-                    }
-                });
+                // Queueing path set in its devices group:
+                GroupRun<R> groupRun = executorList.computeIfAbsent(copyDevices, key -> new GroupRun<>(key,
+                        controllers.computeIfAbsent(key, _ -> new AdaptiveConcurrencyController()), backupTask,
+                        mergeApply));
+                groupRun.pendingPaths.add(pathSet);
+                groupRun.sizes.put(pathSet, sizeEstimate.applyAsLong(pathSet));
+                pathsGroups.put(pathSet, groupRun);
             } catch (IOException exc) {
                 // Catching exceptions to getting device id from paths set:
                 pathsErrorStrategy.accept(exc, pathSet);
             }
         }
-        // Merging all CompletableFutures from executorList into one CompletableFuture using mergeFunction:
-        Optional<CompletableFuture<R>> rFuture = executorList.values().stream().reduce(
-                (future1, future2) -> future1.thenCombine(future2, mergeApply));
+        // Planning groups, the group with the longest planned time gets free places first:
+        List<GroupRun<R>> groups = new ArrayList<>(executorList.values());
+        groups.forEach(GroupRun::plan);
+        groups.sort(Comparator.comparingLong((GroupRun<R> groupRun) -> groupRun.plannedPath.millis()).reversed());
+        plannedCriticalPath = groups.isEmpty() ? null : groups.getFirst().plannedPath;
+        lastGroups = List.copyOf(groups);
+        // Starting groups, tasks of different groups run in parallel up to the limit of all groups:
+        scheduleGroups(null, null);
+        // Merging all groups results into one CompletableFuture using mergeFunction:
+        Optional<CompletableFuture<R>> rFuture = groups.stream().map(
+                groupRun -> groupRun.groupResult).reduce((future1, future2) -> future1.thenCombine(future2, mergeApply));
         // Executing finish strategy:
         rFuture.ifPresentOrElse(future -> future.thenAccept(finishAccept),
                 () -> finishAccept.accept(null));
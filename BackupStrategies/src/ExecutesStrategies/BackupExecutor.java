@@ -5,13 +5,28 @@ import Utils.SimplePair;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
 
 public interface BackupExecutor {
-    <R> void execute(List<SimplePair<Path>> backupPaths, BiFunction<Path, Path, R> backupStrategy,
+    // Path sets with bigger size estimates are started first:
+    <R> void execute(List<SimplePair<Path>> backupPaths, ToLongFunction<SimplePair<Path>> sizeEstimate,
+                     BiFunction<Path, Path, R> backupStrategy,
                      BiFunction<R, R, R> mergeStrategy, Consumer<R> finishStrategy,
                      BiConsumer<IOException, SimplePair<Path>> pathsErrorStrategy);
     void joinAndShutdown() throws InterruptedException;
+    // Feedback of a finished operation of a path set, used to adjust concurrency of its devices:
+    void recordOperation(Path srcPath, Path dstPath, long bytes, long nanos);
+    // Concurrency controllers of devices groups, named by their devices:
+    Map<String, AdaptiveConcurrencyController> getConcurrencyControllers();
+    // Critical paths of the last execution, planned from size estimates and measured after it has finished:
+    Optional<CriticalPath> getPlannedCriticalPath();
+    Optional<CriticalPath> getActualCriticalPath();
+    // Path sets waiting for a free place in their devices groups and threads running backup tasks now:
+    int getQueuedTasks();
+    int getActiveThreads();
 }
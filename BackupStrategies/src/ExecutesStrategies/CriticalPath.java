@@ -0,0 +1,9 @@
+package ExecutesStrategies;
+
+import Utils.SimplePair;
+
+import java.nio.file.Path;
+import java.util.List;
+
+// Chain of path sets which determines duration of a backup, with devices group it runs in:
+public record CriticalPath(String devices, long bytes, long millis, List<SimplePair<Path>> pathSets) { }
@@ -0,0 +1,119 @@
+package Mirror;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class ChangePlan {
+    public final static String planFileName = "ChangePlan";
+    public final static String listingFileName = "ChangePlan.txt";
+    private final static int planMagic = 0x544B5A50;
+    private final static int planVersion = 1;
+    private final Path sourcePath;
+    private final Path destinationPath;
+    private final List<Change> changes;
+
+    public enum Action { CREATE_DIRECTORY, CREATE_FILE, UPDATE_FILE, DELETE_FILE, DELETE_DIRECTORY }
+
+    // One change, path is relative to the source and to the backup directory in destination:
+    public record Change(Action action, String path, long size) { }
+
+    public ChangePlan(Path srcPath, Path dstPath) {
+        // Global variables:
+        sourcePath = srcPath;
+        destinationPath = dstPath;
+        changes = new ArrayList<>();
+    }
+
+    public synchronized void add(Action action, String path, long size) { changes.add(new Change(action, path, size)); }
+
+    public synchronized void sort() {
+        // Entries replaced by another type are removed first, before their paths are created or updated:
+        Set<String> writtenPaths = new HashSet<>();
+        changes.stream().filter(change -> !isDeletion(change.action())).forEach(change -> writtenPaths.add(
+                change.path()));
+        Set<Change> replacedEntries = new HashSet<>();
+        for (Change change : changes) {
+            if (!isDeletion(change.action())) { continue; }
+            // Children of a replaced directory are removed together with it:
+            for (Path path = Path.of(change.path()); path != null; path = path.getParent()) {
+                if (writtenPaths.contains(path.toString())) {
+                    replacedEntries.add(change);
+                    break;
+                }
+            }
+        }
+        // Parents are created before their children and removed after them, copies are done in path order:
+        changes.sort(Comparator.comparing((Change change) -> !replacedEntries.contains(change)).thenComparing(
+                Change::action).thenComparing((change1, change2) -> change1.action() == Action.DELETE_DIRECTORY
+                ? change2.path().compareTo(change1.path()) : change1.path().compareTo(change2.path())));
+    }
+
+    private static boolean isDeletion(Action action) {
+        return action == Action.DELETE_FILE || action == Action.DELETE_DIRECTORY;
+    }
+
+    public synchronized long getCount(Action action) {
+        return changes.stream().filter(change -> change.action() == action).count();
+    }
+
+    public synchronized long getBytes() {
+        // Size of all files which will be copied, used as exact progress of the execution:
+        return changes.stream().mapToLong(Change::size).sum();
+    }
+
+    public void write(Path planFile) throws IOException {
+        MirrorState.write(planFile, outputStream -> {
+            outputStream.writeInt(planMagic);
+            outputStream.writeInt(planVersion);
+            MirrorState.writeString(outputStream, sourcePath.toString());
+            MirrorState.writeString(outputStream, destinationPath.toString());
+            List<Change> currentChanges = getChanges();
+            outputStream.writeInt(currentChanges.size());
+            for (Change change : currentChanges) {
+                outputStream.writeByte(change.action().ordinal());
+                MirrorState.writeString(outputStream, change.path());
+                outputStream.writeLong(change.size());
+            }
+        });
+    }
+
+    public static ChangePlan read(Path planFile) throws IOException {
+        return MirrorState.read(planFile, inputStream -> {
+            if (inputStream.readInt() != planMagic || inputStream.readInt() != planVersion) {
+                throw new IOException("Unsupported change plan: %s".formatted(planFile));
+            }
+            ChangePlan plan = new ChangePlan(Path.of(MirrorState.readString(inputStream)),
+                    Path.of(MirrorState.readString(inputStream)));
+            Action[] actions = Action.values();
+            for (int i = inputStream.readInt(); i > 0; --i) {
+                int action = inputStream.readUnsignedByte();
+                if (action >= actions.length) {
+                    throw new IOException("Unknown change in plan: %s".formatted(planFile));
+                }
+                plan.changes.add(new Change(actions[action], MirrorState.readString(inputStream),
+                        inputStream.readLong()));
+            }
+            return plan;
+        });
+    }
+
+    public void exportListing(Path listingFile) throws IOException {
+        // Readable listing of the plan, one change per line:
+        try (BufferedWriter writer = Files.newBufferedWriter(listingFile, StandardCharsets.UTF_8)) {
+            writer.write("# %s -> %s%n".formatted(sourcePath, destinationPath));
+            for (Action action : Action.values()) { writer.write("# %s: %d%n".formatted(action, getCount(action))); }
+            writer.write("# BYTES: %d%n".formatted(getBytes()));
+            for (Change change : getChanges()) {
+                writer.write("%s\t%d\t%s%n".formatted(change.action(), change.size(), change.path()));
+            }
+        }
+    }
+
+    // Getters:
+    public synchronized List<Change> getChanges() { return List.copyOf(changes); }
+    public Path getSourcePath() { return sourcePath; }
+    public Path getDestinationPath() { return destinationPath; }
+}
@@ -0,0 +1,68 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class ChecksumManifest {
+    public final static String manifestFileName = "ChecksumManifest";
+    private final Path manifestFile;
+    // Checksums of destination files, by path relative to the destination:
+    private final Map<String, Entry> entries;
+    private boolean isChanged;
+
+    // Size and modification time tell if the entry still describes the file:
+    public record Entry(long size, long modificationTime, long checksum) { }
+
+    public static long getModificationTime(BasicFileAttributes attributes) {
+        // Microseconds, as other comparisons of times, file systems and copies keep different precision:
+        return attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS);
+    }
+
+    public ChecksumManifest(Path file) throws IOException {
+        manifestFile = file;
+        entries = new ConcurrentHashMap<>();
+        // Manifest of the previous backups, new manifest is empty:
+        if (Files.exists(manifestFile)) {
+            MirrorState.read(manifestFile, inputStream -> {
+                for (int i = inputStream.readInt(); i > 0; --i) {
+                    entries.put(MirrorState.readString(inputStream), new Entry(inputStream.readLong(),
+                            inputStream.readLong(), inputStream.readLong()));
+                }
+                return null;
+            });
+        }
+    }
+
+    public synchronized void put(String relativePath, Entry entry) {
+        entries.put(relativePath, entry);
+        isChanged = true;
+    }
+
+    public synchronized void remove(String relativePath) {
+        if (entries.remove(relativePath) != null) { isChanged = true; }
+    }
+
+    public synchronized void save() throws IOException {
+        // Unchanged manifest isn't written again:
+        if (!isChanged) { return; }
+        MirrorState.write(manifestFile, outputStream -> {
+            outputStream.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                MirrorState.writeString(outputStream, entry.getKey());
+                outputStream.writeLong(entry.getValue().size());
+                outputStream.writeLong(entry.getValue().modificationTime());
+                outputStream.writeLong(entry.getValue().checksum());
+            }
+        });
+        isChanged = false;
+    }
+
+    // Getters:
+    public Entry get(String relativePath) { return entries.get(relativePath); }
+    public Map<String, Entry> getEntries() { return Map.copyOf(entries); }
+}
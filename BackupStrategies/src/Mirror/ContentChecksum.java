@@ -0,0 +1,98 @@
+package Mirror;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32C;
+
+public class ContentChecksum {
+    // Content is summed in fixed chunks, so parallel ranges and teed chunks are summed independently:
+    public final static int chunkSize = 1024 * 1024;
+    // Option of the JDK outside of the standard API, copies are read through the cache if it is missing:
+    private final static OpenOption directOption = findDirectOption();
+    private final long size;
+    private final int[] chunkChecksums;
+
+    public ContentChecksum(long fileSize) {
+        size = fileSize;
+        chunkChecksums = new int[(int) ((fileSize + chunkSize - 1) / chunkSize)];
+    }
+
+    public void update(long position, ByteBuffer data) {
+        // Data starts at a chunk boundary and covers whole chunks, only the last one may be shorter:
+        ByteBuffer chunks = data.duplicate();
+        while (chunks.hasRemaining()) {
+            ByteBuffer chunk = chunks.slice(chunks.position(), Math.min(chunkSize, chunks.remaining()));
+            CRC32C crc = new CRC32C();
+            crc.update(chunk);
+            // Content beyond the expected size (file growing during copy) fails the verification by size:
+            int index = (int) (position / chunkSize);
+            if (index < chunkChecksums.length) { chunkChecksums[index] = (int) crc.getValue(); }
+            position += chunk.capacity();
+            chunks.position(chunks.position() + chunk.capacity());
+        }
+    }
+
+    public void update(long position, byte[] data, int offset, int length) {
+        update(position, ByteBuffer.wrap(data, offset, length));
+    }
+
+    public long getValue() {
+        // Checksum of the whole file is summed from the size and checksums of its chunks:
+        ByteBuffer summary = ByteBuffer.allocate(Long.BYTES + chunkChecksums.length * Integer.BYTES);
+        summary.putLong(size);
+        for (int chunkChecksum : chunkChecksums) { summary.putInt(chunkChecksum); }
+        CRC32C crc = new CRC32C();
+        crc.update(summary.flip());
+        return crc.getValue();
+    }
+
+    public static long read(Path file, LongConsumer readLimit, BooleanSupplier isInterrupted) throws IOException {
+        long size = Files.size(file);
+        ContentChecksum checksum = new ContentChecksum(size);
+        // Direct reading bypasses the page cache, so data really written to the device is checked:
+        FileChannel directChannel = openDirect(file);
+        ByteBuffer buffer = directChannel == null ? ByteBuffer.allocate(chunkSize) : ByteBuffer.allocateDirect(
+                chunkSize * 2).alignedSlice((int) Files.getFileStore(file).getBlockSize()).limit(chunkSize);
+        try (FileChannel channel = directChannel == null ? FileChannel.open(file, StandardOpenOption.READ)
+                : directChannel) {
+            for (long position = 0; position < size; position += chunkSize) {
+                // Every chunk is a safe point for stopping and pausing:
+                if (isInterrupted.getAsBoolean()) { throw new InterruptedIOException("Backup interrupted!"); }
+                // Reading stops at the end of file, direct reads are only allowed from aligned positions:
+                buffer.clear().limit(chunkSize);
+                readLimit.accept(Math.min(chunkSize, size - position));
+                while (buffer.hasRemaining() && position + buffer.position() < size) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) { break; }
+                }
+                checksum.update(position, buffer.flip());
+            }
+        } return checksum.getValue();
+    }
+
+    private static OpenOption findDirectOption() {
+        try {
+            // Looking the option up at runtime, so the module doesn't depend on internal API:
+            return (OpenOption) Class.forName("com.sun.nio.file.ExtendedOpenOption").getField("DIRECT").get(null);
+        } catch (ReflectiveOperationException | ClassCastException | SecurityException exc) { return null; }
+    }
+
+    private static FileChannel openDirect(Path file) {
+        if (directOption == null) { return null; }
+        try {
+            // Chunks have to be aligned to blocks of the file system:
+            if (chunkSize % Files.getFileStore(file).getBlockSize() != 0) { return null; }
+            return FileChannel.open(file, StandardOpenOption.READ, directOption);
+        } catch (IOException | UnsupportedOperationException exc) {
+            // File systems without direct access are read through the cache:
+            return null;
+        }
+    }
+}
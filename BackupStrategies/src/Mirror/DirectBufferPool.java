@@ -0,0 +1,45 @@
+package Mirror;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+public class DirectBufferPool {
+    public final static int smallFileBufferSize = 64 * 1024;
+    // Memory of buffers in use by all worker threads of all backups:
+    private final static long smallFilesMemoryBudget = 32L * 1024 * 1024;
+    private final static DirectBufferPool smallFilesPool = new DirectBufferPool(smallFileBufferSize,
+            (int) (smallFilesMemoryBudget / smallFileBufferSize));
+    private final int bufferSize;
+    private final Semaphore availableBuffers;
+    private final Queue<ByteBuffer> freeBuffers;
+
+    public DirectBufferPool(int size, int maximumBuffers) {
+        // Global variables:
+        bufferSize = size;
+        // Buffers are created lazily, but never more than the budget allows:
+        availableBuffers = new Semaphore(maximumBuffers);
+        freeBuffers = new ConcurrentLinkedQueue<>();
+    }
+
+    public static DirectBufferPool getSmallFilesPool() { return smallFilesPool; }
+
+    public ByteBuffer[] acquire(int count) throws InterruptedException {
+        // Acquiring all buffers at once, so threads holding a part of them never wait for each other:
+        availableBuffers.acquire(count);
+        ByteBuffer[] buffers = new ByteBuffer[count];
+        for (int iter = 0; iter < count; ++iter) {
+            ByteBuffer buffer = freeBuffers.poll();
+            buffers[iter] = buffer != null ? buffer.clear() : ByteBuffer.allocateDirect(bufferSize);
+        } return buffers;
+    }
+
+    public void release(ByteBuffer... buffers) {
+        // Returning buffers for reuse by other threads:
+        for (ByteBuffer buffer : buffers) { freeBuffers.add(buffer); }
+        availableBuffers.release(buffers.length);
+    }
+
+    public int getBufferSize() { return bufferSize; }
+}
@@ -0,0 +1,98 @@
+package Mirror;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class DirectoryIndex {
+    private final static int formatVersion = 1;
+    // Timestamps closer to the time of listing than this value may hide changes made in the same time unit:
+    private final static long racyTime = TimeUnit.SECONDS.toNanos(2);
+    private final Map<String, Entry> entries;
+    private long totalSize;
+
+    // Entry of a listed directory:
+    public record Child(String name, boolean isDirectory) { }
+
+    // Listed directory with its own timestamps and time of listing:
+    public record Entry(long modificationTime, long changeTime, long recordTime, List<Child> children) {
+        public boolean isUnchanged(long currentModificationTime, long currentChangeTime) {
+            // Entries haven't been added, removed or renamed if directory timestamps are the same:
+            return modificationTime == currentModificationTime && changeTime == currentChangeTime
+                    && recordTime - modificationTime > racyTime && recordTime - changeTime > racyTime;
+        }
+
+        public int getEntryCount() { return children.size(); }
+    }
+
+    public DirectoryIndex() {
+        // Global variables:
+        entries = new HashMap<>();
+        totalSize = -1;
+    }
+
+    public static DirectoryIndex load(Path file) throws IOException {
+        return MirrorState.read(file, inputStream -> {
+            DirectoryIndex index = new DirectoryIndex();
+            // Rejecting index of other format:
+            if (inputStream.readInt() != formatVersion) { throw new IOException("Unsupported index format!"); }
+            index.totalSize = inputStream.readLong();
+            // Reading directories:
+            for (int dirIter = inputStream.readInt(); dirIter > 0; --dirIter) {
+                String dir = MirrorState.readString(inputStream);
+                long modificationTime = inputStream.readLong();
+                long changeTime = inputStream.readLong();
+                long recordTime = inputStream.readLong();
+                int childrenCount = inputStream.readInt();
+                List<Child> children = new ArrayList<>(childrenCount);
+                for (int childIter = 0; childIter < childrenCount; ++childIter) {
+                    children.add(readChild(inputStream));
+                }
+                index.entries.put(dir, new Entry(modificationTime, changeTime, recordTime, children));
+            } return index;
+        });
+    }
+
+    public void save(Path file) throws IOException {
+        MirrorState.write(file, outputStream -> {
+            outputStream.writeInt(formatVersion);
+            outputStream.writeLong(totalSize);
+            // Writing directories:
+            outputStream.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writeEntry(outputStream, entry.getKey(), entry.getValue());
+            }
+        });
+    }
+
+    private static void writeEntry(DataOutputStream outputStream, String dir, Entry entry) throws IOException {
+        MirrorState.writeString(outputStream, dir);
+        outputStream.writeLong(entry.modificationTime());
+        outputStream.writeLong(entry.changeTime());
+        outputStream.writeLong(entry.recordTime());
+        outputStream.writeInt(entry.getEntryCount());
+        for (Child child : entry.children()) {
+            outputStream.writeBoolean(child.isDirectory());
+            MirrorState.writeString(outputStream, child.name());
+        }
+    }
+
+    private static Child readChild(DataInputStream inputStream) throws IOException {
+        boolean isDirectory = inputStream.readBoolean();
+        return new Child(MirrorState.readString(inputStream), isDirectory);
+    }
+
+    // Getters and setters:
+    public Entry get(String dir) { return entries.get(dir); }
+    public void put(String dir, Entry entry) { entries.put(dir, entry); }
+    public void remove(String dir) { entries.remove(dir); }
+    public int size() { return entries.size(); }
+    public long getTotalSize() { return totalSize; }
+    public void setTotalSize(long size) { totalSize = size; }
+}
@@ -0,0 +1,214 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+
+public class FanOutMirrorTask {
+    private final MirrorBackup backup;
+    private final Path sourcePath;
+    private final List<MirrorTask> tasks;
+    private final BiFunction<Path, Path, Boolean> comparisonStrategy;
+    private final IOThrottle.Device srcDevice;
+    // Subtree skipped for a destination, e.g. when its directory cannot be created:
+    private final Map<MirrorTask, Path> skippedSubtrees;
+
+    // Walking source once, for all destinations, also of path sets with sources nested in it:
+    private class FanOutVisitor extends SimpleFileVisitor<Path> {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            // Decision if proceed with specified subtree:
+            if (backup.isNotProceedSubtree(dir)) { return FileVisitResult.SKIP_SUBTREE; }
+            // Creating missing directories in every destination:
+            for (MirrorTask task : getVisitingTasks(dir)) {
+                // Subtree which is excluded from the source of the destination:
+                if (task.isExcludedSubtree(dir)) {
+                    skippedSubtrees.put(task, dir);
+                    continue;
+                }
+                FileVisitResult result = task.createDirectory(dir);
+                if (result == FileVisitResult.TERMINATE) { return result; }
+                if (result == FileVisitResult.SKIP_SUBTREE) { skippedSubtrees.put(task, dir); }
+            }
+            // Subtree is skipped only if no destination needs it:
+            return getVisitingTasks(dir).isEmpty() ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            // Decision if proceed with specified file:
+            if (backup.isNotProceedFile(file)) { return FileVisitResult.CONTINUE; }
+            return mirrorFile(file);
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            // Leaving skipped subtrees:
+            skippedSubtrees.values().removeIf(dir::equals);
+            return super.postVisitDirectory(dir, exc);
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            // Every destination gets its information:
+            for (MirrorTask task : getVisitingTasks(file)) {
+                if (task.visitFailed(file, exc) == FileVisitResult.TERMINATE) { return FileVisitResult.TERMINATE; }
+            } return FileVisitResult.CONTINUE;
+        }
+    }
+
+    public FanOutMirrorTask(MirrorBackup mirrorBackup, Path srcPath, List<MirrorTask> destinationTasks,
+                            BiFunction<Path, Path, Boolean> comparison) {
+        // Global variables:
+        backup = mirrorBackup;
+        sourcePath = srcPath;
+        tasks = destinationTasks;
+        comparisonStrategy = comparison;
+        srcDevice = backup.getThrottle().getDevice(srcPath);
+        skippedSubtrees = new HashMap<>();
+    }
+
+    public Statistics run() {
+        // Preparing destinations, destination which cannot be prepared is left out:
+        Map<MirrorTask, Boolean> pureBackups = new HashMap<>();
+        try {
+            if (!backup.isNotProceedSubtree(sourcePath)) {
+                Map<RenameDetector, Boolean> renameDetectors = new LinkedHashMap<>();
+                for (MirrorTask task : tasks) {
+                    try {
+                        pureBackups.put(task, task.createDestination());
+                        if (task.getRenameDetector() != null) {
+                            renameDetectors.put(task.getRenameDetector(), !pureBackups.get(task));
+                        }
+                    } catch (IOException exc) {
+                        task.reportFailure(exc);
+                        skippedSubtrees.put(task, task.getSourcePath());
+                    }
+                }
+                // Moving renamed entries of all destinations, source is walked once for the whole group:
+                if (!renameDetectors.isEmpty()) { RenameDetector.detect(sourcePath, renameDetectors); }
+                // Copying files:
+                Files.walkFileTree(sourcePath, new FanOutVisitor());
+            }
+        } catch (IOException exc) {
+            // Walk of the source has failed for all destinations:
+            tasks.forEach(task -> task.reportFailure(exc));
+            pureBackups.clear();
+        }
+        // Removing additional files of every destination:
+        for (Map.Entry<MirrorTask, Boolean> pureBackup : pureBackups.entrySet()) {
+            try {
+                pureBackup.getKey().finishDestination(pureBackup.getValue());
+            } catch (IOException exc) {
+                pureBackup.getKey().reportFailure(exc);
+            } finally { pureBackup.getKey().commit(); }
+        }
+        // Merging statistics of destinations:
+        Statistics statistics = new Statistics();
+        for (MirrorTask task : tasks) { statistics = Statistics.merge(statistics, task.getStatistics()); }
+        return statistics;
+    }
+
+    private List<MirrorTask> getVisitingTasks(Path srcEntry) {
+        // Destinations which source contains the entry and which haven't skipped subtree of the entry:
+        return tasks.stream().filter(task -> srcEntry.startsWith(task.getSourcePath())
+                && (!skippedSubtrees.containsKey(task) || !srcEntry.startsWith(skippedSubtrees.get(task)))).toList();
+    }
+
+    private FileVisitResult mirrorFile(Path file) {
+        // Interrupt backup check:
+        if (backup.isInterrupted()) { return FileVisitResult.TERMINATE; }
+        List<MirrorTask> visitingTasks = getVisitingTasks(file);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException exc) { attributes = null; }
+        // Links and other entries are small, every destination mirrors them on its own:
+        if (attributes == null || !attributes.isRegularFile()) {
+            for (MirrorTask task : visitingTasks) {
+                if (task.mirrorFile(file) == FileVisitResult.TERMINATE) { return FileVisitResult.TERMINATE; }
+            } return FileVisitResult.CONTINUE;
+        }
+        long startTime = backup.getActiveTime();
+        List<Path> dstFiles = visitingTasks.stream().map(task -> task.toDestination(file)).toList();
+        List<IOThrottle.Device> dstDevices = visitingTasks.stream().map(task -> task.dstDevice).toList();
+        // Only content comparisons and copies read or write content, other comparisons read attributes:
+        boolean isTransferred = comparisonStrategy == backup.contentComparison;
+        try {
+            // Choosing destinations which differ, content is read from the source once for all of them:
+            boolean[] isDifferent;
+            if (comparisonStrategy == backup.contentComparison) {
+                isDifferent = backup.getTeeCopier().findDifferent(file, dstFiles, srcDevice, dstDevices,
+                        backup::isInterrupted);
+            } else {
+                isDifferent = new boolean[visitingTasks.size()];
+                for (int i = 0; i < visitingTasks.size(); ++i) {
+                    isDifferent[i] = !(backup.isSameFileType(file, dstFiles.get(i))
+                            && visitingTasks.get(i).compareFiles(file, dstFiles.get(i)));
+                }
+            }
+            for (boolean isDestinationDifferent : isDifferent) { isTransferred |= isDestinationDifferent; }
+            copyFile(file, attributes.size(), visitingTasks, dstFiles, dstDevices, isDifferent);
+        } catch (IOException exc) {
+            // Source cannot be read, every destination gets its information:
+            backup.logger.log(Level.SEVERE, "Copying file %s to %s".formatted(file, dstFiles), exc);
+            for (int i = 0; i < visitingTasks.size(); ++i) {
+                reportCopyError(visitingTasks.get(i), file, dstFiles.get(i));
+            }
+        }
+        // Measuring comparison and copy for concurrency of devices of the whole group:
+        if (isTransferred) {
+            backup.recordOperation(sourcePath, tasks.getFirst().destinationPath, attributes.size(),
+                    backup.getActiveTime() - startTime);
+        }
+        // Every destination adds the file to progress:
+        for (MirrorTask task : visitingTasks) { task.addProcessedSize(attributes.size()); }
+        return FileVisitResult.CONTINUE;
+    }
+
+    private void copyFile(Path file, long size, List<MirrorTask> visitingTasks, List<Path> dstFiles,
+                          List<IOThrottle.Device> dstDevices, boolean[] isDifferent) throws IOException {
+        List<MirrorTask> copyingTasks = new ArrayList<>();
+        List<Path> copyingFiles = new ArrayList<>();
+        List<IOThrottle.Device> copyingDevices = new ArrayList<>();
+        for (int i = 0; i < visitingTasks.size(); ++i) {
+            if (!isDifferent[i]) { continue; }
+            copyingTasks.add(visitingTasks.get(i));
+            copyingFiles.add(dstFiles.get(i));
+            copyingDevices.add(dstDevices.get(i));
+        }
+        if (copyingTasks.isEmpty()) { return; }
+        // Teeing source content to all changed destinations, content is summed once for all of them:
+        ContentChecksum checksum = backup.isVerifiedCopy() ? new ContentChecksum(size) : null;
+        TeeCopier.TargetResult[] results = backup.getTeeCopier().copy(file, copyingFiles, srcDevice, copyingDevices,
+                backup::isInterrupted, checksum);
+        for (int i = 0; i < copyingTasks.size(); ++i) {
+            MirrorTask task = copyingTasks.get(i);
+            IOException error = results[i].error();
+            // Every destination reads its copy back:
+            if (error == null && checksum != null) {
+                try {
+                    task.verifyCopy(file, copyingFiles.get(i), checksum);
+                } catch (IOException exc) { error = exc; }
+            }
+            if (error == null) {
+                // Holes of sparse files aren't counted as written:
+                task.addCopiedBytes(results[i].copyResult());
+                task.statistics.increment(StatisticsEnum.COPIED_FILES);
+                task.setConsole("fileCopy", file, copyingFiles.get(i));
+            } else {
+                backup.logger.log(Level.SEVERE, "Copying file %s to %s".formatted(file, copyingFiles.get(i)),
+                        error);
+                reportCopyError(task, file, copyingFiles.get(i));
+            }
+        }
+    }
+
+    private static void reportCopyError(MirrorTask task, Path file, Path dstFile) {
+        task.statistics.increment(StatisticsEnum.NOT_COPIED_FILE);
+        task.setConsole("errorFileCopy", file, dstFile);
+    }
+}
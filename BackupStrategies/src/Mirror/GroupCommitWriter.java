@@ -0,0 +1,136 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class GroupCommitWriter {
+    private final static int maximumBatchSize = 512;
+    private final static long commitWindowTime = TimeUnit.MILLISECONDS.toNanos(250);
+    public final static String temporaryFileSuffix = ".tkztmp";
+    private final List<StagedFile> stagedFiles;
+    private final Set<Path> modifiedDirectories;
+    private final BiConsumer<Path, Path> commitStrategy;
+    private final BiConsumer<Path, Path> commitErrorStrategy;
+    private final FileCopier fileCopier;
+    private long batchStartTime;
+    protected final Logger logger;
+
+    // Copied file waiting for synchronization and renaming (source file, temporary sibling, target file):
+    private record StagedFile(Path srcFile, Path tmpFile, Path dstFile) { }
+
+    @FunctionalInterface
+    public interface FileCopier { SparseFileCopier.CopyResult copy(Path srcFile, Path dstFile) throws IOException; }
+
+    public GroupCommitWriter(Logger log, FileCopier copier, BiConsumer<Path, Path> onCommit,
+                             BiConsumer<Path, Path> onCommitError) {
+        // Global variables:
+        logger = log;
+        fileCopier = copier;
+        commitStrategy = onCommit;
+        commitErrorStrategy = onCommitError;
+        // Files and directories of the current batch:
+        stagedFiles = new ArrayList<>();
+        modifiedDirectories = new LinkedHashSet<>();
+    }
+
+    public static Path getTemporaryFile(Path dstFile) {
+        // Hidden sibling of the target file, placed on the same device to allow atomic rename:
+        return dstFile.resolveSibling("." + dstFile.getFileName() + temporaryFileSuffix);
+    }
+
+    public static boolean isTemporaryFile(Path file) {
+        // Siblings left by a crashed backup, they are hidden, but removed also when hidden files aren't copied:
+        String name = file.getFileName().toString();
+        return name.startsWith(".") && name.endsWith(temporaryFileSuffix);
+    }
+
+    public SparseFileCopier.CopyResult stage(Path srcFile, Path dstFile) throws IOException {
+        // Writing content to temporary sibling instead of overwriting the target in place:
+        Path tmpFile = getTemporaryFile(dstFile);
+        SparseFileCopier.CopyResult copyResult = fileCopier.copy(srcFile, tmpFile);
+        // Opening a new batch window with the first staged file:
+        if (stagedFiles.isEmpty()) { batchStartTime = System.nanoTime(); }
+        stagedFiles.add(new StagedFile(srcFile, tmpFile, dstFile));
+        // Committing if batch is full or time window has elapsed:
+        if (stagedFiles.size() >= maximumBatchSize || System.nanoTime() - batchStartTime >= commitWindowTime) {
+            commit();
+        } return copyResult;
+    }
+
+    public void registerDirectory(Path directory) {
+        // Directory which entries have been changed and must be synchronized with the next batch:
+        modifiedDirectories.add(directory);
+    }
+
+    public void commit() {
+        // Synchronizing content of all staged files at once:
+        List<StagedFile> syncedFiles = new ArrayList<>(stagedFiles.size());
+        for (StagedFile stagedFile : stagedFiles) {
+            try {
+                forceFile(stagedFile.tmpFile());
+                syncedFiles.add(stagedFile);
+            } catch (IOException exc) {
+                // Removing the temporary file, the old target file is left untouched:
+                logger.log(Level.SEVERE, "Synchronizing file: %s".formatted(stagedFile.tmpFile()), exc);
+                deleteTemporaryFile(stagedFile.tmpFile());
+                commitErrorStrategy.accept(stagedFile.srcFile(), stagedFile.dstFile());
+            }
+        }
+        // Replacing target files by atomic renames:
+        List<StagedFile> renamedFiles = new ArrayList<>(syncedFiles.size());
+        for (StagedFile stagedFile : syncedFiles) {
+            try {
+                Files.move(stagedFile.tmpFile(), stagedFile.dstFile(), StandardCopyOption.ATOMIC_MOVE);
+                modifiedDirectories.add(stagedFile.dstFile().getParent());
+                renamedFiles.add(stagedFile);
+            } catch (IOException exc) {
+                logger.log(Level.SEVERE, "Renaming file %s to %s".formatted(
+                        stagedFile.tmpFile(), stagedFile.dstFile()), exc);
+                deleteTemporaryFile(stagedFile.tmpFile());
+                commitErrorStrategy.accept(stagedFile.srcFile(), stagedFile.dstFile());
+            }
+        }
+        // Synchronizing every modified directory only once per batch:
+        for (Path directory : modifiedDirectories) { forceDirectory(directory); }
+        // Informing about committed files:
+        renamedFiles.forEach(stagedFile -> commitStrategy.accept(stagedFile.srcFile(), stagedFile.dstFile()));
+        // Starting a new batch:
+        stagedFiles.clear();
+        modifiedDirectories.clear();
+    }
+
+    private static void forceFile(Path file) throws IOException {
+        // Symbolic links have no content to synchronize:
+        if (Files.isSymbolicLink(file)) { return; }
+        // Copies keep permissions of sources, so read-only files are synchronized through a reading channel:
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private void forceDirectory(Path directory) {
+        // Directory synchronization makes renames durable, but it isn't supported on every platform:
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException exc) {
+            logger.log(Level.FINE, "Synchronizing directory: %s".formatted(directory), exc);
+        }
+    }
+
+    private void deleteTemporaryFile(Path tmpFile) {
+        try {
+            Files.deleteIfExists(tmpFile);
+        } catch (IOException exc) {
+            logger.log(Level.WARNING, "Removing temporary file: %s".formatted(tmpFile), exc);
+        }
+    }
+}
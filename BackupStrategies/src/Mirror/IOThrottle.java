@@ -0,0 +1,151 @@
+package Mirror;
+
+import Utils.ThrottleSettings;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+public class IOThrottle {
+    private final static long bytesInMegabyte = 1024 * 1024;
+    private final Map<FileStore, Device> devices;
+    private final BooleanSupplier isInterrupted;
+    private volatile ThrottleSettings settings;
+    // Limits of devices by names of their file stores, replacing limits of all other devices:
+    private volatile Map<String, ThrottleSettings> deviceSettings;
+
+    // Limits of one device, shared by all tasks which read or write it:
+    public class Device {
+        private final TokenBucket readBucket;
+        private final TokenBucket writeBucket;
+        private final TokenBucket operationsBucket;
+        // Bytes requested by all tasks, counted also without limits:
+        private final LongAdder readBytes;
+        private final LongAdder writtenBytes;
+
+        private Device(String deviceName) {
+            ThrottleSettings currentSettings = getSettings(deviceName);
+            readBucket = new TokenBucket(currentSettings.readBytesPerSecond());
+            writeBucket = new TokenBucket(currentSettings.writeBytesPerSecond());
+            operationsBucket = new TokenBucket(currentSettings.operationsPerSecond());
+            readBytes = new LongAdder();
+            writtenBytes = new LongAdder();
+        }
+
+        private void update(ThrottleSettings newSettings) {
+            readBucket.setRate(newSettings.readBytesPerSecond());
+            writeBucket.setRate(newSettings.writeBytesPerSecond());
+            operationsBucket.setRate(newSettings.operationsPerSecond());
+        }
+
+        public void read(long bytes) {
+            readBytes.add(bytes);
+            if (!isThrottled()) { return; }
+            // Every read request is also an operation:
+            operationsBucket.acquire(1, isInterrupted);
+            readBucket.acquire(bytes, isInterrupted);
+        }
+
+        public void write(long bytes) {
+            writtenBytes.add(bytes);
+            if (!isThrottled()) { return; }
+            operationsBucket.acquire(1, isInterrupted);
+            writeBucket.acquire(bytes, isInterrupted);
+        }
+
+        public void operation() {
+            // Metadata operations (e.g. reading attributes, creating or removing entries):
+            if (isThrottled()) { operationsBucket.acquire(1, isInterrupted); }
+        }
+
+        // Getters:
+        public long getReadBytes() { return readBytes.sum(); }
+        public long getWrittenBytes() { return writtenBytes.sum(); }
+    }
+
+    public IOThrottle(BooleanSupplier interruptedSupplier) {
+        // Global variables:
+        isInterrupted = interruptedSupplier;
+        devices = new ConcurrentHashMap<>();
+        settings = ThrottleSettings.unlimited();
+        deviceSettings = Map.of();
+    }
+
+    public Device getDevice(Path path) {
+        try {
+            // Every device has its own buckets:
+            return devices.computeIfAbsent(Files.getFileStore(path), fileStore -> new Device(fileStore.name()));
+        } catch (IOException exc) {
+            // Device which cannot be recognized is not limited with others:
+            return new Device(null);
+        }
+    }
+
+    public void setSettings(ThrottleSettings newSettings) {
+        // Changing limits of all devices, also during backup:
+        settings = newSettings;
+        updateDevices();
+    }
+
+    public void setDeviceSettings(Map<String, ThrottleSettings> newDeviceSettings) {
+        deviceSettings = Map.copyOf(newDeviceSettings);
+        updateDevices();
+    }
+
+    private void updateDevices() {
+        devices.forEach((fileStore, device) -> device.update(getSettings(fileStore.name())));
+    }
+
+    private ThrottleSettings getSettings(String deviceName) {
+        // Device limits are applied within the schedule of all limits:
+        ThrottleSettings currentSettings = settings;
+        ThrottleSettings limits = deviceName == null ? null : deviceSettings.get(deviceName);
+        if (limits == null) { return currentSettings; }
+        return new ThrottleSettings(limits.readBytesPerSecond(), limits.writeBytesPerSecond(),
+                limits.operationsPerSecond(), currentSettings.unthrottledFromHour(),
+                currentSettings.unthrottledToHour());
+    }
+
+    public static Map<String, ThrottleSettings> parseDeviceSettings(String value) {
+        // Devices are separated by semicolons: <file store>=<read MB/s>,<write MB/s>,<operations/s>;...
+        Map<String, ThrottleSettings> parsedSettings = new HashMap<>();
+        if (value == null || value.isBlank()) { return parsedSettings; }
+        for (String device : value.split(";")) {
+            if (device.isBlank()) { continue; }
+            int separatorIndex = device.lastIndexOf('=');
+            String[] limits = device.substring(separatorIndex + 1).split(",");
+            if (separatorIndex <= 0 || limits.length != 3) {
+                throw new IllegalArgumentException("Wrong limits of device: " + device);
+            }
+            try {
+                ThrottleSettings deviceLimits = new ThrottleSettings(Long.parseLong(limits[0].strip())
+                        * bytesInMegabyte, Long.parseLong(limits[1].strip()) * bytesInMegabyte,
+                        Integer.parseInt(limits[2].strip()), 0, 0);
+                if (deviceLimits.readBytesPerSecond() < 0 || deviceLimits.writeBytesPerSecond() < 0
+                        || deviceLimits.operationsPerSecond() < 0) {
+                    throw new IllegalArgumentException("Negative limits of device: " + device);
+                }
+                parsedSettings.put(device.substring(0, separatorIndex).strip(), deviceLimits);
+            } catch (NumberFormatException exc) {
+                throw new IllegalArgumentException("Wrong limits of device: " + device, exc);
+            }
+        } return parsedSettings;
+    }
+
+    private boolean isThrottled() {
+        // Schedule may switch limits off, e.g. at night:
+        return settings.isThrottled(LocalTime.now());
+    }
+
+    public ThrottleSettings getSettings() { return settings; }
+
+    public Map<FileStore, Device> getDevices() { return Collections.unmodifiableMap(devices); }
+}
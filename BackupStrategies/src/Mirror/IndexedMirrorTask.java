@@ -0,0 +1,180 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+
+public class IndexedMirrorTask extends MirrorTask {
+    private final DirectoryIndex previousIndex;
+    private final DirectoryIndex currentIndex;
+    private final Path indexFile;
+    private long processedSize;
+    private long listedDirectories;
+    private long skippedDirectories;
+
+    public IndexedMirrorTask(MirrorBackup mirrorBackup, Path srcPath, Path dstPath,
+                             BiFunction<Path, Path, Boolean> comparison, DirectoryIndex index, Path indexPath) {
+        super(mirrorBackup, srcPath, dstPath, comparison);
+        // Index of the previous run (empty if there was no successful run):
+        previousIndex = index;
+        // Index being built during the current run:
+        currentIndex = new DirectoryIndex();
+        indexFile = indexPath;
+    }
+
+    @Override
+    public Statistics run() {
+        try {
+            // Skipping path if it doesn't meet requirements:
+            if (backup.isNotProceedSubtree(sourcePath)) { return statistics; }
+            // Creating directory of a source path last directory name and loading checksums of verified copies:
+            createDestination();
+            // Copying and removing files directory by directory:
+            mirrorDirectory(sourcePath);
+            // Storing checksums, also of a stopped backup, after the last group of copied files:
+            commit();
+            saveChecksumManifest();
+        } catch (IOException exc) {
+            // Any backup error catch:
+            reportFailure(exc);
+        } finally {
+            // Committing staged files and synchronizing directories changed by removals:
+            commit();
+        }
+        // Saving the index, which is trusted only if the whole tree has been mirrored without errors:
+        saveIndex();
+        backup.setConsole(backup.resourceBundle.getString("indexedDirectories").formatted(
+                sourcePath, listedDirectories, skippedDirectories));
+        return statistics;
+    }
+
+    private boolean mirrorDirectory(Path dir) {
+        // Interrupt backup check:
+        if (backup.isInterrupted()) { return false; }
+        String relativeDir = sourcePath.relativize(dir).toString();
+        // Reading timestamps of the directory itself:
+        long[] timestamps;
+        try {
+            timestamps = readTimestamps(dir);
+        } catch (IOException exc) { return visitFailed(dir, exc) != FileVisitResult.TERMINATE; }
+        // Deciding if directory must be listed:
+        DirectoryIndex.Entry previousEntry = previousIndex.get(relativeDir);
+        boolean isListed = previousEntry == null || !previousEntry.isUnchanged(timestamps[0], timestamps[1]);
+        List<DirectoryIndex.Child> children;
+        if (isListed) {
+            try {
+                children = listDirectory(dir);
+            } catch (IOException exc) { return visitFailed(dir, exc) != FileVisitResult.TERMINATE; }
+            ++listedDirectories;
+        } else {
+            // Entries haven't been added, removed or renamed since the last run:
+            children = previousEntry.children();
+            ++skippedDirectories;
+        }
+        currentIndex.put(relativeDir, new DirectoryIndex.Entry(timestamps[0], timestamps[1],
+                TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis()), children));
+        // Mirroring entries:
+        for (DirectoryIndex.Child child : children) {
+            Path childPath = dir.resolve(child.name());
+            try {
+                if (child.isDirectory()) {
+                    // Decision if proceed with specified subtree:
+                    if (backup.isNotProceedSubtree(childPath) || isExcludedSubtree(childPath)) { continue; }
+                    FileVisitResult result = createDirectory(childPath);
+                    if (result == FileVisitResult.TERMINATE) { return false; }
+                    else if (result == FileVisitResult.SKIP_SUBTREE) { continue; }
+                    if (!mirrorDirectory(childPath)) { return false; }
+                } else {
+                    // Decision if proceed with specified file:
+                    if (backup.isNotProceedFile(childPath)) { continue; }
+                    if (mirrorFile(childPath) == FileVisitResult.TERMINATE) { return false; }
+                }
+            } catch (IOException exc) {
+                if (visitFailed(childPath, exc) == FileVisitResult.TERMINATE) { return false; }
+            }
+        }
+        // Removing additional entries only from directories which entries have changed:
+        return !isListed || removeAdditionalEntries(dir, children);
+    }
+
+    private boolean removeAdditionalEntries(Path dir, List<DirectoryIndex.Child> children) {
+        // Names of source entries:
+        Set<String> names = new HashSet<>();
+        children.forEach(child -> names.add(child.name()));
+        Path dstDir = toDestination(dir);
+        // Checking entries of the destination directory:
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dstDir)) {
+            for (Path dstEntry : stream) {
+                if (names.contains(dstEntry.getFileName().toString())) { continue; }
+                if (Files.isDirectory(dstEntry, LinkOption.NOFOLLOW_LINKS)) {
+                    // Removing additional subtree:
+                    if (backup.isNotProceedSubtree(dstEntry)) { continue; }
+                    Files.walkFileTree(dstEntry, fileRemoveVisitor);
+                } else if (!backup.isNotProceedFile(dstEntry) || GroupCommitWriter.isTemporaryFile(dstEntry)) {
+                    // Removing additional file:
+                    if (removeFile(dstEntry) == FileVisitResult.TERMINATE) { return false; }
+                }
+                if (backup.isInterrupted()) { return false; }
+            }
+        } catch (IOException exc) { return visitFailed(dstDir, exc) != FileVisitResult.TERMINATE; }
+        return true;
+    }
+
+    private static List<DirectoryIndex.Child> listDirectory(Path dir) throws IOException {
+        // Listing directory and remembering which entries are directories:
+        List<DirectoryIndex.Child> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path entry : stream) {
+                children.add(new DirectoryIndex.Child(entry.getFileName().toString(),
+                        Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)));
+            }
+        } return children;
+    }
+
+    private static long[] readTimestamps(Path dir) throws IOException {
+        // Reading modification and change time at once, change time is available only on unix systems:
+        try {
+            Map<String, Object> attributes = Files.readAttributes(dir, "unix:lastModifiedTime,ctime",
+                    LinkOption.NOFOLLOW_LINKS);
+            return new long[] {((FileTime) attributes.get("lastModifiedTime")).to(TimeUnit.NANOSECONDS),
+                    ((FileTime) attributes.get("ctime")).to(TimeUnit.NANOSECONDS)};
+        } catch (UnsupportedOperationException | IllegalArgumentException exc) {
+            BasicFileAttributes attributes = Files.readAttributes(dir, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            return new long[] {attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                    attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)};
+        }
+    }
+
+    @Override
+    protected void addProcessedSize(long size) {
+        // Remembering size of the tree for progress of the next run:
+        processedSize += size;
+        super.addProcessedSize(size);
+    }
+
+    private void saveIndex() {
+        // Index which is in the file, none if it hasn't been saved:
+        DirectoryIndex savedIndex = null;
+        try {
+            if (!backup.isInterrupted() && statistics.isExceptionsNotRaised()) {
+                currentIndex.setTotalSize(processedSize);
+                currentIndex.save(indexFile);
+                savedIndex = currentIndex;
+            }
+            // Incomplete run can't be trusted, so all directories will be listed next time:
+            else { Files.deleteIfExists(indexFile); }
+        } catch (IOException exc) {
+            backup.logger.log(Level.WARNING, "Saving directory index: %s".formatted(indexFile), exc);
+        }
+        // Backup kept between runs (e.g. by the daemon) doesn't read the saved index again:
+        if (backup instanceof MirrorBackupIndexed indexedBackup) {
+            indexedBackup.keepIndex(sourcePath, destinationPath, savedIndex, indexFile);
+        }
+    }
+}
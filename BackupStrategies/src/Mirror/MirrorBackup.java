@@ -1,42 +1,82 @@
 package Mirror;
 
 import API.BackupStrategy;
+import ExecutesStrategies.AdaptiveConcurrencyController;
 import ExecutesStrategies.AutomateAsyncExecutor;
 import ExecutesStrategies.BackupExecutor;
 import Utils.BadPathsException;
 import Utils.ListenersTypes;
+import Utils.MetricsWriter;
 import Utils.SimplePair;
+import Utils.ThrottleSettings;
 
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiFunction;
+import java.util.function.LongConsumer;
+import java.util.function.ToLongFunction;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 public class MirrorBackup implements BackupStrategy {
+    // Part of files compared at once, stopping or pausing waits at most for one part:
+    private final static int comparisonBufferSize = 1024 * 1024;
+    protected final static long bytesInMegabyte = 1024 * 1024;
+    // Attributes of profiles read as options of mirror backups:
+    public final static String parallelCopyThresholdOption = "ParallelCopyThresholdMiB";
+    public final static String deviceLimitsOption = "DeviceLimits";
+    public final static String renameDetectionOption = "RenameDetection";
+    public final static String overlapPolicyOption = "OverlapPolicy";
     private final PropertyChangeSupport propertyChange;
-    private List<SimplePair<Path>> backupPaths;
+    protected List<SimplePair<Path>> backupPaths;
     private final BackupExecutor executor;
     private final LongAdder pathSizeSum;
-    private long fileSizes;
-    private final AtomicBoolean isInterrupted;
+    private volatile long fileSizes;
+    protected final AtomicBoolean isInterrupted;
+    private final PauseGate pauseGate;
     private FileHandler fileHandler;
     private boolean isCopyHidden;
+    private boolean isDurableCopy;
+    private boolean isRenameDetection;
+    private boolean isVerifiedCopy;
+    private long parallelCopyThreshold;
+    private ParallelRangeCopier rangeCopier;
+    private TeeCopier teeCopier;
+    // Path sets which are backed up by one walk of their common source, first of them runs the walk:
+    private volatile Map<Path, List<SimplePair<Path>>> fanOutGroups;
+    // Sources of other path sets which contain a source, path sets which were given more than once:
+    private Map<Path, List<Path>> outerSources;
+    private List<SimplePair<Path>> duplicatePathSets;
+    private OverlapPolicy overlapPolicy;
+    private long avoidedBytes;
+    private final IOThrottle ioThrottle;
+    // Counters of path sets and statistics of finished tasks, kept for metrics between backups:
+    private final Map<SimplePair<Path>, PathSetMetrics> pathSetsMetrics;
+    private final LongAdder[] statisticsTotals;
     private volatile boolean isWorkingBackup;
     protected final Logger logger;
     protected static final String loggerFileName = "TKZMirrorLog";
     protected final ResourceBundle resourceBundle;
+    protected final BiFunction<Path, Path, Boolean> contentComparison;
 
     public MirrorBackup() {
         // Stop backup flag:
         isInterrupted = new AtomicBoolean();
+        // Gate where workers park while backup is paused:
+        pauseGate = new PauseGate();
         // Properties manager:
         propertyChange = new PropertyChangeSupport(this);
         // Language bundle:
@@ -45,36 +85,64 @@ public class MirrorBackup implements BackupStrategy {
         pathSizeSum = new LongAdder();
         // Setting default value of proceeding with hidden elements:
         isCopyHidden = true;
+        // Setting default value of durable copying (temporary files, atomic renames and synchronization):
+        isDurableCopy = false;
+        // Setting default value of moving renamed entries in destination instead of copying them again:
+        isRenameDetection = false;
+        // Setting default value of summing copied content and reading copies back:
+        isVerifiedCopy = false;
+        // Setting default size from which files are copied in ranges by many threads:
+        parallelCopyThreshold = ParallelRangeCopier.defaultParallelCopyThreshold;
         // Informs if backup is currently running:
         isWorkingBackup = false;
+        // Setting default handling of path sets with nested sources:
+        overlapPolicy = OverlapPolicy.MERGE;
+        fanOutGroups = Map.of();
+        outerSources = Map.of();
+        duplicatePathSets = List.of();
         // Errors logger:
         logger = Logger.getLogger("BackupStrategies.Mirror.MirrorBackup");
         logger.setLevel(Level.ALL);
         // Backup execution strategy:
         executor = new AutomateAsyncExecutor(logger);
+        // Limits of devices, without limits by default:
+        ioThrottle = new IOThrottle(this::isInterrupted);
+        // Counters of metrics, tasks only add to them:
+        pathSetsMetrics = new ConcurrentHashMap<>();
+        statisticsTotals = new LongAdder[StatisticsEnum.values().length];
+        Arrays.setAll(statisticsTotals, _ -> new LongAdder());
+        // Comparison of content, tasks recognize it to compare small files in memory and to limit reads:
+        contentComparison = (filePath1, filePath2) -> compareContent(filePath1, filePath2, _ -> { }, _ -> { });
+    }
+
+    protected boolean compareContent(Path filePath1, Path filePath2, LongConsumer readLimit1,
+                                     LongConsumer readLimit2) {
+        try {
+            if (Files.isSymbolicLink(filePath1)) {
+                return Files.readSymbolicLink(filePath1).equals(Files.readSymbolicLink(filePath2));
+            }
+            // Analyzing file content:
+            return isSameContent(filePath1, filePath2, readLimit1, readLimit2);
+        } catch (InterruptedIOException exc) {
+            // Skipping copy, backup is stopping:
+            return true;
+        } catch (IOException exc) {
+            // Decision of a copy file if errors occurred:
+            logger.log(Level.WARNING, "Comparing two files: %s, %s".formatted(filePath1, filePath2), exc);
+            return false;
+        }
     }
 
     @Override
     public void execute() {
         // Specifying comparison strategy:
-        execute((filePath1, filePath2) -> {
-            try {
-                if (Files.isSymbolicLink(filePath1)) {
-                    return Files.readSymbolicLink(filePath1).equals(Files.readSymbolicLink(filePath2));
-                }
-                // Analyzing file content:
-                return Files.mismatch(filePath1, filePath2) == -1;
-            } catch (IOException exc) {
-                // Decision of a copy file if errors occurred:
-                logger.log(Level.WARNING, "Comparing two files: %s, %s".formatted(filePath1, filePath2), exc);
-                return false;
-            }
-        });
+        execute(contentComparison);
     }
 
     public void execute(BiFunction<Path, Path, Boolean> comparisonStrategy) {
         // Resetting last backup flags and counters:
         isInterrupted.set(false);
+        pauseGate.resume();
         pathSizeSum.reset();
         isWorkingBackup = true;
         // Resetting progress:
@@ -85,15 +153,119 @@ public class MirrorBackup implements BackupStrategy {
         } catch (IOException exc) { throw new RuntimeException(exc); }
         logger.addHandler(fileHandler);
         // Executing backup using specified executor with logging error strategy:
-        executor.execute(backupPaths, (srcPath, _) -> getPathSize(srcPath), Long::sum, sumSizes -> {
-            fileSizes = sumSizes;
-            executor.execute(backupPaths, (srcPath, dstPath) -> backup(
+        // Pre-scan keeps profile order, its sizes order the backup of path sets:
+        executor.execute(backupPaths, _ -> 0, (srcPath, dstPath) -> Map.of(new SimplePair<>(srcPath, dstPath),
+                estimatePathSize(srcPath, dstPath)), MirrorBackup::mergeSizes, pathsSizes -> {
+            Map<SimplePair<Path>, Long> sizes = pathsSizes == null ? Map.of() : pathsSizes;
+            fileSizes = sizes.values().stream().mapToLong(Long::longValue).sum();
+            // Path sets which share a source are run as one task of the first of them, source is read once:
+            Map<Path, List<SimplePair<Path>>> groups = isFanOutCopy() ? groupPathSets() : Map.of();
+            fanOutGroups = groups;
+            avoidedBytes = getAvoidedBytes(groups, sizes);
+            List<SimplePair<Path>> executedPaths = backupPaths.stream().filter(pathSet -> !groups.containsKey(
+                    getWalkRoot(pathSet)) || groups.get(getWalkRoot(pathSet)).getFirst().equals(pathSet)).toList();
+            ToLongFunction<SimplePair<Path>> taskSize = pathSet -> groups.getOrDefault(pathSet.key(),
+                    List.of(pathSet)).stream().mapToLong(groupPathSet -> sizes.getOrDefault(groupPathSet, 0L)).sum();
+            executor.execute(executedPaths, taskSize, (srcPath, dstPath) -> backup(
                     srcPath, dstPath, comparisonStrategy), Statistics::merge, this::finishStrategy,
                     this::pathExceptionStrategy);
         }, (exc, paths) -> logger.log(Level.SEVERE,
                 "Getting device id, while getting path size: %s, %s".formatted(paths.key(), paths.val()), exc));
     }
 
+    private boolean isSameContent(Path filePath1, Path filePath2, LongConsumer readLimit1, LongConsumer readLimit2)
+            throws IOException {
+        try (FileChannel channel1 = FileChannel.open(filePath1, StandardOpenOption.READ);
+             FileChannel channel2 = FileChannel.open(filePath2, StandardOpenOption.READ)) {
+            // Files of different sizes cannot be equal:
+            if (channel1.size() != channel2.size()) { return false; }
+            int bufferSize = (int) Math.max(1, Math.min(comparisonBufferSize, channel1.size()));
+            ByteBuffer buffer1 = ByteBuffer.allocate(bufferSize);
+            ByteBuffer buffer2 = ByteBuffer.allocate(bufferSize);
+            long position = 0;
+            while (true) {
+                // Comparing in parts, every part is a safe point for stopping and pausing:
+                if (isInterrupted()) { throw new InterruptedIOException("Backup interrupted!"); }
+                // Limits of devices are taken for every part, comparison stopped early doesn't take the rest:
+                long partSize = Math.max(0, Math.min(bufferSize, channel1.size() - position));
+                readLimit1.accept(partSize);
+                readLimit2.accept(partSize);
+                position += partSize;
+                int length1 = readFully(channel1, buffer1.clear());
+                int length2 = readFully(channel2, buffer2.clear());
+                if (length1 != length2 || !buffer1.flip().equals(buffer2.flip())) { return false; }
+                if (length1 < bufferSize) { return true; }
+            }
+        }
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        // Filling buffer until the end of file:
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) { break; }
+        } return buffer.position();
+    }
+
+    private Map<Path, List<SimplePair<Path>>> groupPathSets() {
+        // Grouping path sets by the source which is walked, in order of path sets:
+        Map<Path, List<SimplePair<Path>>> groups = new LinkedHashMap<>();
+        for (SimplePair<Path> pathSet : backupPaths) {
+            groups.computeIfAbsent(getWalkRoot(pathSet), _ -> new ArrayList<>()).add(pathSet);
+        }
+        groups.values().removeIf(group -> group.size() < 2);
+        // Path set of the walked source itself runs the walk:
+        groups.forEach((root, group) -> group.stream().filter(pathSet -> pathSet.key().equals(root)).findFirst()
+                .ifPresent(walkingPathSet -> {
+                    group.remove(walkingPathSet);
+                    group.addFirst(walkingPathSet);
+                }));
+        return groups;
+    }
+
+    private Path getWalkRoot(SimplePair<Path> pathSet) {
+        // Merged nested source is walked as a part of its outermost source:
+        List<Path> sources = outerSources.get(pathSet.key());
+        if (overlapPolicy != OverlapPolicy.MERGE || sources == null) { return pathSet.key(); }
+        return sources.stream().min(Comparator.comparingInt(Path::getNameCount)).orElseThrow();
+    }
+
+    private long getAvoidedBytes(Map<Path, List<SimplePair<Path>>> groups, Map<SimplePair<Path>, Long> sizes) {
+        // Path sets given more than once are backed up once:
+        long bytes = duplicatePathSets.stream().mapToLong(pathSet -> sizes.getOrDefault(pathSet, 0L)).sum();
+        // Walks of a group read the source of the first path set only:
+        for (List<SimplePair<Path>> group : groups.values()) {
+            bytes += group.stream().skip(1).mapToLong(pathSet -> sizes.getOrDefault(pathSet, 0L)).sum();
+        }
+        // Excluded nested sources are not walked by any of their outer sources:
+        if (overlapPolicy == OverlapPolicy.EXCLUDE) {
+            Map<Path, Long> sourceSizes = new HashMap<>();
+            backupPaths.forEach(pathSet -> sourceSizes.merge(pathSet.key(), sizes.getOrDefault(pathSet, 0L),
+                    Math::max));
+            for (Map.Entry<Path, List<Path>> nestedSource : outerSources.entrySet()) {
+                bytes += sourceSizes.getOrDefault(nestedSource.getKey(), 0L) * nestedSource.getValue().size();
+            }
+        } return bytes;
+    }
+
+    protected boolean isFanOutCopy() {
+        // Durable copy stages every destination separately:
+        return !isDurableCopy;
+    }
+
+    private static Map<SimplePair<Path>, Long> mergeSizes(Map<SimplePair<Path>, Long> sizes1,
+                                                          Map<SimplePair<Path>, Long> sizes2) {
+        // Sizes of path sets which failed are missing:
+        Map<SimplePair<Path>, Long> mergedSizes = new HashMap<>();
+        if (sizes1 != null) { mergedSizes.putAll(sizes1); }
+        if (sizes2 != null) { mergedSizes.putAll(sizes2); }
+        return mergedSizes;
+    }
+
+    protected long estimatePathSize(Path srcPath, Path dstPath) {
+        // Walking through source path to get exact size for progress:
+        return getPathSize(srcPath);
+    }
+
     private long getPathSize(Path srcPath) {
         // File visitor:
         class Visitor extends SimpleFileVisitor<Path> {
@@ -102,7 +274,9 @@ public class MirrorBackup implements BackupStrategy {
             @Override
             public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
                 // Decision if proceed with specified subtree:
-                if (isNotProceedSubtree(dir)) { return FileVisitResult.SKIP_SUBTREE; }
+                if (isNotProceedSubtree(dir) || isExcludedSubtree(srcPath, dir)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
                 return super.preVisitDirectory(dir, attrs);
             }
 
@@ -148,7 +322,7 @@ public class MirrorBackup implements BackupStrategy {
                 paths.key(), paths.val()), exception);
     }
 
-    private void finishStrategy(Statistics stats) {
+    protected void finishStrategy(Statistics stats) {
         // Releasing flags:
         isWorkingBackup = false;
         // Replacing null with default empty statistics:
@@ -156,13 +330,31 @@ public class MirrorBackup implements BackupStrategy {
         // Printing statistics:
         setConsole(resourceBundle.getString("statisticsPrint"));
         for (StatisticsEnum type : StatisticsEnum.values()) { setConsole(stats.getMessage(type)); }
+        // Printing bytes which haven't been read again thanks to merged or excluded path sets:
+        if (avoidedBytes > 0) { setConsole(resourceBundle.getString("avoidedBytes").formatted(avoidedBytes)); }
+        // Printing concurrency chosen for every devices group:
+        executor.getConcurrencyControllers().forEach((devices, controller) -> setConsole(resourceBundle.getString(
+                "concurrencyLevel").formatted(devices, controller.getLimit(), controller.getHistory().size())));
+        // Printing planned and measured critical path of the backup:
+        executor.getPlannedCriticalPath().ifPresent(criticalPath -> setConsole(resourceBundle.getString(
+                "plannedCriticalPath").formatted(criticalPath.devices(), criticalPath.bytes(),
+                criticalPath.millis(), formatPathSets(criticalPath.pathSets()))));
+        executor.getActualCriticalPath().ifPresent(criticalPath -> setConsole(resourceBundle.getString(
+                "actualCriticalPath").formatted(criticalPath.devices(), criticalPath.bytes(),
+                criticalPath.millis(), formatPathSets(criticalPath.pathSets()))));
         // Changing state of running backup property:
         setEndBackup(stats.isExceptionsNotRaised());
         // Releasing logger resources:
         releaseResources();
     }
 
-    private boolean isSameFileType(Path srcFile, Path dstFile) {
+    private static String formatPathSets(List<SimplePair<Path>> pathSets) {
+        // Path sets in order of their execution:
+        return pathSets.stream().map(pathSet -> "%s -> %s".formatted(pathSet.key(), pathSet.val())).collect(
+                Collectors.joining(", "));
+    }
+
+    protected boolean isSameFileType(Path srcFile, Path dstFile) {
         // Method requires that srcFile exists, and it is not a directory:
         if (Files.notExists(dstFile, LinkOption.NOFOLLOW_LINKS)) { return false; }
         BasicFileAttributes srcAttribs, dstAttribs;
@@ -177,206 +369,175 @@ public class MirrorBackup implements BackupStrategy {
                 == dstAttribs.isSymbolicLink() || srcAttribs.isOther() == dstAttribs.isOther();
     }
 
-    private Statistics backup(Path sourcePath, Path destinationPath,
-                              BiFunction<Path, Path, Boolean> comparisonStrategy) {
-        // Current backup instance statistics:
-        Statistics statistics = new Statistics();
-        // Destination path with added source path directory name:
-        Path resolvedDestinationPath = destinationPath.resolve(sourcePath.getFileName());
-        BiFunction<Path, IOException, FileVisitResult> failedVisitFile = (file, exc) -> {
-            // Interrupt backup check:
-            if (isInterrupted.get()) { return FileVisitResult.TERMINATE; }
-            // Sending proper communicate:
-            logger.log(Level.WARNING, "Failed visiting file: %s".formatted(file), exc);
-            if (Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
-                statistics.increment(StatisticsEnum.NOT_VISITED_DIRS);
-                setConsole(resourceBundle.getString("errorVisitDir").formatted(file));
-            } else {
-                statistics.increment(StatisticsEnum.NOT_VISITED_FILES);
-                setConsole(resourceBundle.getString("errorVisitFile").formatted(file));
-            } return FileVisitResult.CONTINUE;
-        };
-
-        // Copy visitor:
-        FileVisitor<? super Path> fileCopyVisitor = new SimpleFileVisitor<>() {
-
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                // Decision if proceed with specified subtree:
-                if (isNotProceedSubtree(dir)) { return FileVisitResult.SKIP_SUBTREE; }
-                // Mechanism of creating missing directories:
-                // Interrupt backup check:
-                if (isInterrupted.get()) { return FileVisitResult.TERMINATE; }
-                // Defining a path of current directory in destination backup location:
-                Path dstDir = resolvedDestinationPath.resolve(sourcePath.relativize(dir));
-                // Creating if not exists:
-                if (!Files.isDirectory(dstDir, LinkOption.NOFOLLOW_LINKS)) {
-                    try {
-                        Files.createDirectory(dstDir);
-                        statistics.increment(StatisticsEnum.CREATED_DIRS);
-                        setConsole(resourceBundle.getString("createDir").formatted(dstDir));
-                    } catch (IOException exc) {
-                        // Skipping subtree with information:
-                        logger.log(Level.SEVERE, "Creating directory: %s".formatted(dstDir), exc);
-                        statistics.increment(StatisticsEnum.NOT_CREATED_DIRECTORIES);
-                        setConsole(resourceBundle.getString("errorCreateDir").formatted(dstDir));
-                        return FileVisitResult.SKIP_SUBTREE;
-                    }
-                } return FileVisitResult.CONTINUE;
-            }
+    protected Statistics backup(Path sourcePath, Path destinationPath,
+                                BiFunction<Path, Path, Boolean> comparisonStrategy) {
+        Statistics statistics;
+        // Mirroring source into all destinations of its group at once:
+        List<SimplePair<Path>> group = fanOutGroups.get(sourcePath);
+        if (group != null) {
+            statistics = new FanOutMirrorTask(this, sourcePath, group.stream().map(pathSet -> createTask(
+                    pathSet.key(), pathSet.val(), comparisonStrategy)).toList(), comparisonStrategy).run();
+        }
+        // Running backup of a path set as a separated task:
+        else { statistics = createTask(sourcePath, destinationPath, comparisonStrategy).run(); }
+        // Statistics of a finished task are added to metrics once, not by every event:
+        for (StatisticsEnum type : StatisticsEnum.values()) {
+            statisticsTotals[type.ordinal()].add(statistics.get(type));
+        } return statistics;
+    }
 
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                // Decision if proceed with specified file:
-                if (isNotProceedFile(file)) { return FileVisitResult.CONTINUE; }
-                // Mechanism of copying missing or different files:
-                // Interrupt backup check:
-                if (isInterrupted.get()) { return FileVisitResult.TERMINATE; }
-                // Defining a path of the current file in destination backup location:
-                Path dstFile = resolvedDestinationPath.resolve(sourcePath.relativize(file));
-                // Decision of copying file:
-                if (!(isSameFileType(file, dstFile) && comparisonStrategy.apply(file, dstFile))) {
-                    try {
-                        // Copying file:
-                        Files.copy(file, dstFile, StandardCopyOption.REPLACE_EXISTING,
-                                StandardCopyOption.COPY_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
-                        statistics.increment(StatisticsEnum.COPIED_FILES);
-                        setConsole(resourceBundle.getString("fileCopy").formatted(file, dstFile));
-                    } catch (IOException exc) {
-                        // Sending proper communicate if error:
-                        logger.log(Level.SEVERE, "Copying file %s to %s".formatted(file, dstFile), exc);
-                        statistics.increment(StatisticsEnum.NOT_COPIED_FILE);
-                        setConsole(resourceBundle.getString("errorFileCopy").formatted(file, dstFile));
-                    }
-                }
-                try {
-                    // Adding path size to a global files size sum:
-                    pathSizeSum.add(Files.readAttributes(file, BasicFileAttributes.class,
-                            LinkOption.NOFOLLOW_LINKS).size());
-                } catch (IOException exc) {
-                    // Only logging error:
-                    logger.log(Level.WARNING, "Getting file size: %s".formatted(file), exc);
-                }
-                // Sending new progress of copied files:
-                if (fileSizes == 0) { setProgress(100); }
-                else { setProgress((int) (pathSizeSum.sum() * 100. / fileSizes)); }
-                return FileVisitResult.CONTINUE;
-            }
+    protected MirrorTask createTask(Path sourcePath, Path destinationPath,
+                                    BiFunction<Path, Path, Boolean> comparisonStrategy) {
+        // Creating task which mirrors a source path into destination path:
+        return new MirrorTask(this, sourcePath, destinationPath, comparisonStrategy);
+    }
 
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                // Files that cannot be visited:
-                return failedVisitFile.apply(file, exc);
-            }
-        };
+    protected void recordOperation(Path sourcePath, Path destinationPath, long bytes, long nanos) {
+        // Feedback for concurrency of devices of the path set:
+        executor.recordOperation(sourcePath, destinationPath, bytes, nanos);
+    }
 
-        // Removing visitor:
-        FileVisitor<? super Path> fileRemoveVisitor = new SimpleFileVisitor<>() {
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-                // Decision if proceed with specified subtree:
-                if (isNotProceedSubtree(dir)) { return FileVisitResult.SKIP_SUBTREE; }
-                return super.preVisitDirectory(dir, attrs);
-            }
+    protected PathSetMetrics getPathSetMetrics(Path sourcePath, Path destinationPath) {
+        return pathSetsMetrics.computeIfAbsent(new SimplePair<>(sourcePath, destinationPath),
+                _ -> new PathSetMetrics());
+    }
 
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                // Decision if proceed with specified file:
-                if (isNotProceedFile(file)) { return FileVisitResult.CONTINUE; }
-                // Interrupt backup check:
-                if (isInterrupted.get()) { return FileVisitResult.TERMINATE; }
-                // Checking if a path of the current file exists in source backup location:
-                else if (Files.notExists(sourcePath.resolve(resolvedDestinationPath.relativize(file)),
-                        LinkOption.NOFOLLOW_LINKS)) {
-                    try {
-                        // Removing an additional file:
-                        Files.delete(file);
-                        statistics.increment(StatisticsEnum.REMOVED_FILES);
-                        setConsole(resourceBundle.getString("removeFile").formatted(file));
-                    } catch (IOException exc) {
-                        // Sending proper communicate of exception:
-                        logger.log(Level.SEVERE, "Removing file: %s".formatted(file), exc);
-                        statistics.increment(StatisticsEnum.NOT_REMOVED_FILES);
-                        setConsole(resourceBundle.getString("errorRemoveFile").formatted(file));
-                    }
-                } return FileVisitResult.CONTINUE;
-            }
+    @Override
+    public void writeMetrics(MetricsWriter writer) {
+        // State of the current or the last backup:
+        writer.gauge("tkz_backup_running", "Whether a backup is running.", isWorkingBackup ? 1 : 0);
+        writer.gauge("tkz_backup_paused", "Whether the running backup is paused.",
+                isWorkingBackup && pauseGate.isPaused() ? 1 : 0);
+        writer.gauge("tkz_backup_planned_bytes", "Size of files of the current or the last backup.", fileSizes);
+        writer.gauge("tkz_backup_processed_bytes", "Bytes of files processed by the current or the last backup.",
+                pathSizeSum.sum());
+        // Counters summed only here, so copying threads don't wait for each other:
+        pathSetsMetrics.forEach((pathSet, metrics) -> {
+            String source = pathSet.key().toString(), destination = pathSet.val().toString();
+            writer.counter("tkz_path_set_processed_bytes_total", "Bytes of files processed in a path set.",
+                    metrics.getProcessedBytes(), "source", source, "destination", destination);
+            writer.counter("tkz_path_set_processed_files_total", "Files processed in a path set.",
+                    metrics.getProcessedFiles(), "source", source, "destination", destination);
+        });
+        ioThrottle.getDevices().forEach((fileStore, device) -> {
+            writer.counter("tkz_device_read_bytes_total", "Bytes read from a device.", device.getReadBytes(),
+                    "device", fileStore.toString());
+            writer.counter("tkz_device_written_bytes_total", "Bytes written to a device.", device.getWrittenBytes(),
+                    "device", fileStore.toString());
+        });
+        for (StatisticsEnum type : StatisticsEnum.values()) {
+            writer.counter("tkz_statistic_total", "Statistics of finished backup tasks.",
+                    statisticsTotals[type.ordinal()].sum(), "statistic", type.getMessageName(), "error",
+                    String.valueOf(type.isErrorStatistic()));
+        }
+        // Load of the executor:
+        writer.gauge("tkz_executor_queued_tasks", "Path sets waiting for a place in their devices group.",
+                executor.getQueuedTasks());
+        writer.gauge("tkz_executor_active_threads", "Threads running backup tasks.", executor.getActiveThreads());
+        // Concurrency chosen for every devices group and the last measurement which it was chosen from:
+        executor.getConcurrencyControllers().forEach((devices, controller) -> writer.gauge("tkz_concurrency_limit",
+                "Tasks allowed to run at once in a devices group.", controller.getLimit(), "devices", devices));
+        getConcurrencyHistory().forEach((devices, history) -> {
+            if (history.isEmpty()) { return; }
+            AdaptiveConcurrencyController.Sample lastSample = history.getLast();
+            writer.gauge("tkz_concurrency_throughput_bytes_per_second", "Last measured throughput of a devices group.",
+                    lastSample.bytesPerSecond(), "devices", devices);
+            writer.gauge("tkz_concurrency_latency_seconds", "Last measured latency of 64 KiB in a devices group.",
+                    lastSample.latencyNanos() / TimeUnit.SECONDS.toNanos(1), "devices", devices);
+            writer.gauge("tkz_concurrency_sample_timestamp_seconds", "Time of the last measurement of a devices group.",
+                    lastSample.timeMillis() / 1000.0, "devices", devices);
+        });
+    }
 
-            @Override
-            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-                // Interrupt backup check:
-                if (isInterrupted.get()) { return FileVisitResult.TERMINATE; }
-                // Throwing any exception if throws from other methods and finishing work:
-                else if (exc != null) { throw exc; }
-                // Checking if a path of the current directory exists in source backup location:
-                if (!Files.isDirectory(sourcePath.resolve(resolvedDestinationPath.relativize(dir)),
-                        LinkOption.NOFOLLOW_LINKS)) {
-                    try {
-                        // Removing additional directory:
-                        Files.delete(dir);
-                        statistics.increment(StatisticsEnum.REMOVED_DIRECTORIES);
-                        setConsole(resourceBundle.getString("removeDir").formatted(dir));
-                    } catch (IOException exception) {
-                        // Sending proper communicate of exception:
-                        logger.log(Level.SEVERE, "Removing directory: %s".formatted(dir), exception);
-                        statistics.increment(StatisticsEnum.NOT_REMOVED_DIRECTORIES);
-                        setConsole(resourceBundle.getString("errorRemoveDir").formatted(dir));
-                    }
-                } return FileVisitResult.CONTINUE;
-            }
+    public Map<String, List<AdaptiveConcurrencyController.Sample>> getConcurrencyHistory() {
+        // History of limits and measurements of every devices group:
+        Map<String, List<AdaptiveConcurrencyController.Sample>> concurrencyHistory = new TreeMap<>();
+        executor.getConcurrencyControllers().forEach((devices, controller) -> concurrencyHistory.put(
+                devices, controller.getHistory()));
+        return concurrencyHistory;
+    }
 
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                return failedVisitFile.apply(file, exc);
-            }
-        };
-        // Variable which stores information if there is a need to check for additional files in a destination path:
-        boolean isPureBackup = false;
-        try {
-            // Skipping path if it doesn't meet requirements:
-            if (isNotProceedSubtree(sourcePath)) { return statistics; }
-            // Creating directory of a source path last directory name:
-            if (!Files.isDirectory(resolvedDestinationPath, LinkOption.NOFOLLOW_LINKS)) {
-                isPureBackup = true;
-                try {
-                    Files.createDirectory(resolvedDestinationPath);
-                } catch (FileAlreadyExistsException exc) {
-                    setConsole(resourceBundle.getString("cannotCreateBackupDirectory").formatted(
-                            resolvedDestinationPath));
-                    // Going to logging:
-                    throw new IOException(exc);
-                }
-            }
-            // Copying files:
-            Files.walkFileTree(sourcePath, fileCopyVisitor);
-            // Removing files:
-            if (!isPureBackup) { Files.walkFileTree(resolvedDestinationPath, fileRemoveVisitor); }
-        } catch (IOException exc) {
-            // Any backup error catch:
-            statistics.increment(StatisticsEnum.NOT_CREATED_DIRECTORIES);
-            setConsole(resourceBundle.getString("cannotFinishBackup").formatted(sourcePath, destinationPath));
-            logger.log(Level.SEVERE, "Creating backup of: %s, %s".formatted(sourcePath, destinationPath), exc);
-        } return statistics;
+    protected void addProcessedSize(long size) {
+        // Adding path size to a global files size sum:
+        pathSizeSum.add(size);
+        // Sending new progress of copied files:
+        if (fileSizes == 0) { setProgress(100); }
+        else { setProgress((int) (pathSizeSum.sum() * 100. / fileSizes)); }
     }
 
     @Override
     public void stop() {
         // Changing flag of stopping backup:
         isInterrupted.set(true);
+        // Releasing workers parked by pause:
+        pauseGate.release();
     }
 
+    @Override
+    public void pause() { pauseGate.pause(); }
+
+    @Override
+    public void resume() { pauseGate.resume(); }
+
     @Override
     public void joinAndDispose() throws InterruptedException {
         // Joining executor:
         executor.joinAndShutdown();
+        // Releasing threads of ranged copy:
+        synchronized (this) {
+            if (rangeCopier != null) {
+                rangeCopier.shutdown();
+                rangeCopier = null;
+            }
+            if (teeCopier != null) {
+                teeCopier.shutdown();
+                teeCopier = null;
+            }
+        }
         // Releasing resources in case finishStrategy() hasn't been invoked:
         releaseResources();
     }
 
     protected void releaseResources() {
-        // Closing file handler:
+        // Closing file handler, backup which has never been executed has none:
+        if (fileHandler == null) { return; }
         logger.removeHandler(fileHandler);
         fileHandler.close();
+        fileHandler = null;
+    }
+
+    public boolean isInterrupted() {
+        // Every check of stopping is a safe point, where workers park while backup is paused:
+        pauseGate.await(isInterrupted::get);
+        return isInterrupted.get();
+    }
+
+    public boolean isPaused() { return pauseGate.isPaused(); }
+
+    public long getActiveTime() { return pauseGate.getActiveTime(); }
+
+    protected boolean isWorkingBackup() { return isWorkingBackup; }
+
+    public boolean isDurableCopy() { return isDurableCopy; }
+
+    public boolean isRenameDetection() { return isRenameDetection; }
+
+    public boolean isVerifiedCopy() { return isVerifiedCopy; }
+
+    public long getParallelCopyThreshold() { return parallelCopyThreshold; }
+
+    public IOThrottle getThrottle() { return ioThrottle; }
+
+    protected synchronized ParallelRangeCopier getRangeCopier() {
+        // Threads are created only when a large file is copied:
+        if (rangeCopier == null) { rangeCopier = new ParallelRangeCopier(); }
+        return rangeCopier;
+    }
+
+    protected synchronized TeeCopier getTeeCopier() {
+        // Writers are created only when a source has more than one destination:
+        if (teeCopier == null) { teeCopier = new TeeCopier(); }
+        return teeCopier;
     }
 
     protected boolean isNotProceedFile(Path file) throws IOException {
@@ -389,6 +550,13 @@ public class MirrorBackup implements BackupStrategy {
         return !isCopyHidden && Files.isHidden(subtree);
     }
 
+    protected boolean isExcludedSubtree(Path sourcePath, Path subtree) {
+        // Skipping source of another path set which is nested in a walked source:
+        if (overlapPolicy != OverlapPolicy.EXCLUDE) { return false; }
+        List<Path> sources = outerSources.get(subtree);
+        return sources != null && sources.contains(sourcePath);
+    }
+
     @Override
     public void setIsCopyHiddenElements(boolean copyHiddenElements) {
         // Checking if backup is not running:
@@ -396,6 +564,75 @@ public class MirrorBackup implements BackupStrategy {
         isCopyHidden = copyHiddenElements;
     }
 
+    @Override
+    public void setIsDurableCopy(boolean durableCopy) {
+        // Checking if backup is not running:
+        if (isWorkingBackup) { throw new IllegalStateException("Cannot modify flags during backup!"); }
+        isDurableCopy = durableCopy;
+    }
+
+    @Override
+    public void setIsVerifiedCopy(boolean verifiedCopy) {
+        // Checking if backup is not running:
+        if (isWorkingBackup) { throw new IllegalStateException("Cannot modify flags during backup!"); }
+        isVerifiedCopy = verifiedCopy;
+    }
+
+    @Override
+    public void setThrottle(ThrottleSettings throttleSettings) {
+        // Limits may be changed while backup is running:
+        ioThrottle.setSettings(throttleSettings);
+    }
+
+    public void setIsRenameDetection(boolean renameDetection) {
+        // Checking if backup is not running:
+        if (isWorkingBackup) { throw new IllegalStateException("Cannot modify flags during backup!"); }
+        isRenameDetection = renameDetection;
+    }
+
+    public void setOverlapPolicy(OverlapPolicy policy) {
+        // Checking if backup is not running:
+        if (isWorkingBackup) { throw new IllegalStateException("Cannot modify flags during backup!"); }
+        overlapPolicy = policy;
+    }
+
+    @Override
+    public void setOptions(Map<String, String> options) {
+        // Size from which files are copied in ranges, given in megabytes:
+        setParallelCopyThreshold(getPositiveOption(options, parallelCopyThresholdOption,
+                ParallelRangeCopier.defaultParallelCopyThreshold / bytesInMegabyte) * bytesInMegabyte);
+        // Limits of single source and destination devices, replacing limits set for all devices:
+        ioThrottle.setDeviceSettings(IOThrottle.parseDeviceSettings(options.get(deviceLimitsOption)));
+        // Moving renamed entries in destination is enabled only by profiles:
+        setIsRenameDetection(Boolean.parseBoolean(options.get(renameDetectionOption)));
+        // Handling of path sets with nested sources, given by name of the policy:
+        String policy = options.get(overlapPolicyOption);
+        try {
+            setOverlapPolicy(policy == null || policy.isBlank() ? OverlapPolicy.MERGE
+                    : OverlapPolicy.valueOf(policy.strip().toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException exc) {
+            throw new IllegalArgumentException("Wrong value of option %s: %s".formatted(overlapPolicyOption, policy));
+        }
+    }
+
+    protected static long getPositiveOption(Map<String, String> options, String name, long defaultValue) {
+        String value = options.get(name);
+        if (value == null || value.isBlank()) { return defaultValue; }
+        long number;
+        try {
+            number = Long.parseLong(value.strip());
+        } catch (NumberFormatException exc) { number = 0; }
+        // Malformed, zero and negative values are rejected with the name of the option:
+        if (number <= 0) { throw new IllegalArgumentException("Wrong value of option %s: %s".formatted(name, value)); }
+        return number;
+    }
+
+    public void setParallelCopyThreshold(long threshold) {
+        // Checking if backup is not running:
+        if (isWorkingBackup) { throw new IllegalStateException("Cannot modify flags during backup!"); }
+        parallelCopyThreshold = threshold;
+    }
+
     @Override
     public void setPaths(List<SimplePair<String>> paths) throws BadPathsException {
         // Checking if specified paths are not empty:
@@ -405,8 +642,8 @@ public class MirrorBackup implements BackupStrategy {
         Path srcPath, dstPath;
         for (SimplePair<String> pathSet : paths) {
             // Converting iterating paths to absolute paths:
-            srcPath = Path.of(pathSet.key()).toAbsolutePath();
-            dstPath = Path.of(pathSet.val()).toAbsolutePath();
+            srcPath = Path.of(pathSet.key()).toAbsolutePath().normalize();
+            dstPath = Path.of(pathSet.val()).toAbsolutePath().normalize();
             // If paths don't point to existing directories:
             if (!Files.isDirectory(srcPath, LinkOption.NOFOLLOW_LINKS)
                     || !Files.isDirectory(dstPath, LinkOption.NOFOLLOW_LINKS)) {
@@ -419,12 +656,42 @@ public class MirrorBackup implements BackupStrategy {
                         resourceBundle.getString("pathsLooped").formatted(pathSet.key(), pathSet.val()));
             }
             acceptedPaths.add(new SimplePair<>(srcPath, dstPath));
-        } backupPaths = acceptedPaths;
+        }
+        // Path sets given more than once are backed up once:
+        List<SimplePair<Path>> uniquePaths = new ArrayList<>(new LinkedHashSet<>(acceptedPaths));
+        List<SimplePair<Path>> duplicates = new ArrayList<>(acceptedPaths);
+        uniquePaths.forEach(duplicates::remove);
+        // Validating path sets against each other:
+        Map<Path, List<Path>> nestedSources = new HashMap<>();
+        for (PathOverlaps.Overlap overlap : PathOverlaps.find(uniquePaths)) {
+            SimplePair<Path> first = overlap.pathSet(), second = overlap.otherPathSet();
+            switch (overlap.type()) {
+                // If one path set reads or writes a backup of the other one:
+                case CROSSED -> throw new BadPathsException(resourceBundle.getString("pathsCrossed").formatted(
+                        first.key(), first.val(), second.key(), second.val()));
+                // If both path sets write into the same tree:
+                case CONFLICTED -> throw new BadPathsException(resourceBundle.getString("pathsConflicted")
+                        .formatted(first.key(), first.val(), second.key(), second.val()));
+                case NESTED_SOURCE -> {
+                    if (overlapPolicy == OverlapPolicy.REJECT) {
+                        throw new BadPathsException(resourceBundle.getString("pathsNested").formatted(
+                                first.key(), first.val(), second.key(), second.val()));
+                    }
+                    List<Path> sources = nestedSources.computeIfAbsent(first.key(), _ -> new ArrayList<>());
+                    if (!sources.contains(second.key())) { sources.add(second.key()); }
+                }
+            }
+        }
+        backupPaths = uniquePaths;
+        // Counters of path sets which have been removed aren't written anymore:
+        pathSetsMetrics.keySet().retainAll(uniquePaths);
+        duplicatePathSets = duplicates;
+        outerSources = nestedSources;
     }
 
     // Strategies change the state of properties:
 
-    private void setConsole(String line) {
+    protected void setConsole(String line) {
         propertyChange.firePropertyChange(ListenersTypes.CONSOLE.toString(), null, line + "\n");
     }
 
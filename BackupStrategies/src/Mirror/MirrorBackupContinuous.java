@@ -0,0 +1,241 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+
+public class MirrorBackupContinuous extends MirrorBackupModificationTime {
+    private final static long pollTime = 200;
+    private final static long debounceTime = TimeUnit.SECONDS.toNanos(1);
+    private final static long maximumDelayTime = TimeUnit.SECONDS.toNanos(10);
+    private final Object watchLock;
+    private WatchService watchService;
+    // Directories which are currently watched, used only by the watching thread after it's started:
+    private Map<WatchKey, Path> watchedDirectories;
+    private Thread watchThread;
+    private List<MirrorTask> watchTasks;
+    private Statistics initialStatistics;
+    private boolean isInitialBackupFinished;
+
+    public MirrorBackupContinuous() {
+        // Lock guarding hand over of the initial backup result to the watching thread:
+        watchLock = new Object();
+    }
+
+    @Override
+    public void execute(BiFunction<Path, Path, Boolean> comparisonStrategy) {
+        // Resetting the last session:
+        synchronized (watchLock) {
+            initialStatistics = null;
+            isInitialBackupFinished = false;
+        }
+        // Creating one persistent task for every path set, which gathers statistics of applied changes:
+        watchTasks = backupPaths.stream().map(paths -> createTask(
+                paths.key(), paths.val(), comparisonStrategy)).toList();
+        // Registering watches of all source trees before the initial backup, so changes made during it are not lost:
+        watchedDirectories = new HashMap<>();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (MirrorTask task : watchTasks) { registerTree(task.getSourcePath()); }
+        } catch (IOException exc) {
+            closeWatchService();
+            throw new RuntimeException(exc);
+        }
+        watchThread = new Thread(this::watchLoop, "TKZ-Continuous-Mirror");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        // Running initial full backup:
+        super.execute(comparisonStrategy);
+    }
+
+    @Override
+    protected void finishStrategy(Statistics stats) {
+        // Handing over the initial backup result to the watching thread:
+        synchronized (watchLock) {
+            initialStatistics = stats == null ? new Statistics() : stats;
+            isInitialBackupFinished = true;
+            watchLock.notifyAll();
+        }
+    }
+
+    private void closeWatchService() {
+        try {
+            if (watchService != null) { watchService.close(); }
+        } catch (IOException exc) { logger.log(Level.WARNING, "Closing watch service", exc); }
+    }
+
+    private void watchLoop() {
+        // Deduplicated paths changed since the last applied batch, sorted to visit parents before children:
+        NavigableSet<Path> dirtyPaths = new TreeSet<>();
+        // Directories which events have been lost:
+        NavigableSet<Path> rescanDirectories = new TreeSet<>();
+        long firstEventTime = 0, lastEventTime = 0;
+        try (WatchService service = watchService) {
+            // Waiting for the initial backup:
+            awaitInitialBackup();
+            if (!isInterrupted()) {
+                setConsole(resourceBundle.getString("watchingStarted").formatted(watchTasks.size()));
+            }
+            while (!isInterrupted()) {
+                // Waiting for the next event:
+                WatchKey key = service.poll(pollTime, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Path dir = watchedDirectories.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (dir == null) { continue; }
+                        // Events have been lost, so the whole directory must be checked again:
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) { rescanDirectories.add(dir); }
+                        else {
+                            Path changedPath = dir.resolve((Path) event.context());
+                            dirtyPaths.add(changedPath);
+                            // Watching newly created directories:
+                            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                                    && Files.isDirectory(changedPath, LinkOption.NOFOLLOW_LINKS)) {
+                                registerTree(changedPath);
+                            }
+                        }
+                    }
+                    // Dropping keys of removed directories:
+                    if (!key.reset()) { watchedDirectories.remove(key); }
+                    // Updating debounce timers:
+                    lastEventTime = System.nanoTime();
+                    if (firstEventTime == 0) { firstEventTime = lastEventTime; }
+                }
+                // Applying changes after a quiet period, but not later than maximum delay:
+                long now = System.nanoTime();
+                if (firstEventTime != 0 && (now - lastEventTime >= debounceTime
+                        || now - firstEventTime >= maximumDelayTime)) {
+                    applyChanges(dirtyPaths, rescanDirectories);
+                    dirtyPaths.clear();
+                    rescanDirectories.clear();
+                    firstEventTime = 0;
+                }
+            }
+        } catch (InterruptedException exc) {
+            logger.log(Level.INFO, "Watching interrupted!", exc);
+        } catch (Throwable exc) {
+            setConsole(resourceBundle.getString("watchingFailed"));
+            logger.log(Level.SEVERE, "Watching source trees for changes", exc);
+        } finally {
+            // Merging initial backup with changes applied during watching and finishing:
+            Statistics statistics;
+            try {
+                statistics = awaitInitialBackup();
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                statistics = null;
+            }
+            for (MirrorTask task : watchTasks) { statistics = Statistics.merge(statistics, task.getStatistics()); }
+            super.finishStrategy(statistics);
+        }
+    }
+
+    private Statistics awaitInitialBackup() throws InterruptedException {
+        // Initial backup finishes also when it's stopped, so waiting can't last forever:
+        synchronized (watchLock) {
+            while (!isInitialBackupFinished) { watchLock.wait(); }
+            return initialStatistics;
+        }
+    }
+
+    private void registerTree(Path root) throws IOException {
+        // Registering every directory of the tree, because WatchService isn't recursive:
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (isInterrupted()) { return FileVisitResult.TERMINATE; }
+                if (isNotProceedSubtree(dir)) { return FileVisitResult.SKIP_SUBTREE; }
+                watchedDirectories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                logger.log(Level.WARNING, "Registering watch: %s".formatted(file), exc);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private Optional<MirrorTask> getTask(Path srcPath) {
+        // Choosing the task of the deepest source path containing a specified path:
+        return watchTasks.stream().filter(task -> srcPath.startsWith(task.getSourcePath())).max(
+                Comparator.comparingInt(task -> task.getSourcePath().getNameCount()));
+    }
+
+    private void applyChanges(NavigableSet<Path> dirtyPaths, NavigableSet<Path> rescanDirectories) {
+        // Rescanning whole directories which events have been lost:
+        Path lastSubtree = null;
+        for (Path dir : rescanDirectories) {
+            // Skipping directories which are a part of an already rescanned subtree:
+            if (lastSubtree != null && dir.startsWith(lastSubtree)) { continue; }
+            lastSubtree = dir;
+            setConsole(resourceBundle.getString("rescanDir").formatted(dir));
+            getTask(dir).ifPresent(task -> applySubtree(task, dir, true));
+        }
+        // Applying single changed paths:
+        for (Path changedPath : dirtyPaths) {
+            if (isInterrupted()) { return; }
+            // Skipping paths which have already been checked as a part of subtree:
+            if (lastSubtree != null && changedPath.startsWith(lastSubtree)) { continue; }
+            Optional<MirrorTask> task = getTask(changedPath);
+            if (task.isEmpty()) { continue; }
+            try {
+                if (Files.isDirectory(changedPath, LinkOption.NOFOLLOW_LINKS)) {
+                    // Copying whole new or changed directory:
+                    if (isNotProceedSubtree(changedPath)) { continue; }
+                    applySubtree(task.get(), changedPath, false);
+                    lastSubtree = changedPath;
+                } else if (Files.exists(changedPath, LinkOption.NOFOLLOW_LINKS)) {
+                    // Copying new or changed file:
+                    if (!isNotProceedFile(changedPath)) { task.get().mirrorFile(changedPath); }
+                } else {
+                    // Removing entry which doesn't exist in source anymore:
+                    Path dstPath = task.get().toDestination(changedPath);
+                    if (Files.isDirectory(dstPath, LinkOption.NOFOLLOW_LINKS)) {
+                        Files.walkFileTree(dstPath, task.get().fileRemoveVisitor);
+                        lastSubtree = changedPath;
+                    } else if (Files.exists(dstPath, LinkOption.NOFOLLOW_LINKS)) { task.get().removeFile(dstPath); }
+                }
+            } catch (IOException exc) {
+                task.get().visitFailed(changedPath, exc);
+            }
+        }
+        // Committing durable copies of the batch:
+        watchTasks.forEach(MirrorTask::commit);
+    }
+
+    private void applySubtree(MirrorTask task, Path srcDir, boolean isRemovingAdditional) {
+        try {
+            // Watching directories created while events have been lost, registering watched ones again is harmless:
+            registerTree(srcDir);
+            // Copying missing or different elements of a subtree:
+            Files.walkFileTree(srcDir, task.fileCopyVisitor);
+            task.commit();
+            // Removing elements which don't exist in source:
+            Path dstDir = task.toDestination(srcDir);
+            if (isRemovingAdditional && Files.isDirectory(dstDir, LinkOption.NOFOLLOW_LINKS)) {
+                Files.walkFileTree(dstDir, task.fileRemoveVisitor);
+            }
+        } catch (IOException exc) { task.visitFailed(srcDir, exc); }
+    }
+
+    @Override
+    public void joinAndDispose() throws InterruptedException {
+        // Waiting for watching thread, which finishes after stop():
+        if (watchThread != null) {
+            watchThread.join();
+            watchThread = null;
+        }
+        super.joinAndDispose();
+    }
+
+    // Backup name:
+    @Override
+    public String getBackupType() { return resourceBundle.getString("mirrorBackupContinuous"); }
+}
@@ -0,0 +1,125 @@
+package Mirror;
+
+import Utils.SimplePair;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+
+public class MirrorBackupIndexed extends MirrorBackupModificationTime {
+    protected final static String indexFileName = "DirectoryIndex";
+    // Directories kept in memory between backups at most, bigger indexes are read from their files:
+    private final static int maximumWarmDirectories = 1_000_000;
+    // Indexes loaded while estimating path sizes, taken over by backup tasks:
+    protected final Map<SimplePair<Path>, DirectoryIndex> loadedIndexes;
+    // Indexes saved by the last backup of path sets, used while their files haven't been changed by others:
+    private final Map<SimplePair<Path>, WarmIndex> warmIndexes;
+
+    private record WarmIndex(DirectoryIndex index, Object fileKey, FileTime modificationTime, long size) {
+        private boolean isSameFile(BasicFileAttributes attributes) {
+            return Objects.equals(attributes.fileKey(), fileKey) && attributes.lastModifiedTime().equals(
+                    modificationTime) && attributes.size() == size;
+        }
+    }
+
+    public MirrorBackupIndexed() {
+        // Global variables:
+        loadedIndexes = new ConcurrentHashMap<>();
+        warmIndexes = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void execute(BiFunction<Path, Path, Boolean> comparisonStrategy) {
+        // Forgetting indexes of path sets which have been removed from the profile:
+        warmIndexes.keySet().retainAll(new HashSet<>(backupPaths));
+        super.execute(comparisonStrategy);
+    }
+
+    protected DirectoryIndex getIndex(Path srcPath, Path dstPath) {
+        // Reusing index loaded during the size estimation:
+        DirectoryIndex index = loadedIndexes.get(new SimplePair<>(srcPath, dstPath));
+        if (index != null) { return index; }
+        try {
+            Path indexFile = MirrorState.getPairFile(srcPath, dstPath, indexFileName);
+            index = getWarmIndex(srcPath, dstPath, indexFile);
+            if (index == null && Files.isRegularFile(indexFile)) { index = DirectoryIndex.load(indexFile); }
+        } catch (IOException exc) {
+            // Listing all directories if index cannot be read:
+            logger.log(Level.WARNING, "Loading directory index of: %s, %s".formatted(srcPath, dstPath), exc);
+        }
+        if (index == null) { index = new DirectoryIndex(); }
+        loadedIndexes.put(new SimplePair<>(srcPath, dstPath), index);
+        return index;
+    }
+
+    private DirectoryIndex getWarmIndex(Path srcPath, Path dstPath, Path indexFile) throws IOException {
+        WarmIndex warmIndex = warmIndexes.remove(new SimplePair<>(srcPath, dstPath));
+        if (warmIndex == null || !Files.isRegularFile(indexFile, LinkOption.NOFOLLOW_LINKS)) { return null; }
+        // Index in memory is the content of the file, if the file is still the one saved by this backup:
+        return warmIndex.isSameFile(Files.readAttributes(indexFile, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS)) ? warmIndex.index() : null;
+    }
+
+    protected void keepIndex(Path srcPath, Path dstPath, DirectoryIndex index, Path indexFile) {
+        SimplePair<Path> pathSet = new SimplePair<>(srcPath, dstPath);
+        warmIndexes.remove(pathSet);
+        if (index == null || index.size() > maximumWarmDirectories) { return; }
+        try {
+            // Remembering identity of the saved file, so a file changed by others is read again:
+            BasicFileAttributes attributes = Files.readAttributes(indexFile, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            warmIndexes.put(pathSet, new WarmIndex(index, attributes.fileKey(), attributes.lastModifiedTime(),
+                    attributes.size()));
+        } catch (IOException exc) {
+            logger.log(Level.WARNING, "Keeping directory index of: %s, %s".formatted(srcPath, dstPath), exc);
+        }
+    }
+
+    @Override
+    public void joinAndDispose() throws InterruptedException {
+        // Disposed backup releases its indexes, the next one reads them from files:
+        warmIndexes.clear();
+        super.joinAndDispose();
+    }
+
+    @Override
+    protected long estimatePathSize(Path srcPath, Path dstPath) {
+        // Using size from the previous run instead of walking through the whole tree:
+        long totalSize = getIndex(srcPath, dstPath).getTotalSize();
+        return totalSize >= 0 ? totalSize : super.estimatePathSize(srcPath, dstPath);
+    }
+
+    @Override
+    protected MirrorTask createTask(Path sourcePath, Path destinationPath,
+                                    BiFunction<Path, Path, Boolean> comparisonStrategy) {
+        DirectoryIndex index = getIndex(sourcePath, destinationPath);
+        // Releasing index, the task builds a new one:
+        loadedIndexes.remove(new SimplePair<>(sourcePath, destinationPath));
+        try {
+            return new IndexedMirrorTask(this, sourcePath, destinationPath, comparisonStrategy, index,
+                    MirrorState.getPairFile(sourcePath, destinationPath, indexFileName));
+        } catch (IOException exc) {
+            // Falling back to full walk if state cannot be stored:
+            logger.log(Level.WARNING, "Preparing directory index of: %s, %s".formatted(
+                    sourcePath, destinationPath), exc);
+            return super.createTask(sourcePath, destinationPath, comparisonStrategy);
+        }
+    }
+
+    // Every path set has its own directory index:
+    @Override
+    protected boolean isFanOutCopy() { return false; }
+
+    // Backup name:
+    @Override
+    public String getBackupType() { return resourceBundle.getString("mirrorBackupIndexed"); }
+}
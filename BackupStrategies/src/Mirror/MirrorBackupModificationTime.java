@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 public class MirrorBackupModificationTime extends MirrorBackup {
@@ -18,8 +19,9 @@ public class MirrorBackupModificationTime extends MirrorBackup {
                         LinkOption.NOFOLLOW_LINKS);
                 BasicFileAttributes fileAttributes2 = Files.readAttributes(filePath2, BasicFileAttributes.class,
                         LinkOption.NOFOLLOW_LINKS);
-                // Comparing using modification time and file size:
-                return fileAttributes1.lastModifiedTime().equals(fileAttributes2.lastModifiedTime())
+                // Comparing using modification time and file size, copied files keep time only with microseconds:
+                return fileAttributes1.lastModifiedTime().to(TimeUnit.MICROSECONDS)
+                        == fileAttributes2.lastModifiedTime().to(TimeUnit.MICROSECONDS)
                         && fileAttributes1.size() == fileAttributes2.size();
             } catch (IOException exc) {
                 // Decision od copy file if errors occurred:
@@ -0,0 +1,43 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+
+public class MirrorBackupPlanned extends MirrorBackup {
+
+    @Override
+    protected long estimatePathSize(Path srcPath, Path dstPath) {
+        // Bytes of planned copies are the exact size of the execution:
+        try {
+            Path planFile = MirrorState.getPairFile(srcPath, dstPath, ChangePlan.planFileName);
+            return Files.isRegularFile(planFile) ? ChangePlan.read(planFile).getBytes() : 0;
+        } catch (IOException exc) {
+            logger.log(Level.WARNING, "Reading change plan of: %s, %s".formatted(srcPath, dstPath), exc);
+            return 0;
+        }
+    }
+
+    // Overriding backup task, changes are taken from the plan:
+    @Override
+    protected MirrorTask createTask(Path sourcePath, Path destinationPath,
+                                    BiFunction<Path, Path, Boolean> comparisonStrategy) {
+        try {
+            return new PlannedMirrorTask(this, sourcePath, destinationPath, comparisonStrategy,
+                    MirrorState.getPairFile(sourcePath, destinationPath, ChangePlan.planFileName));
+        } catch (IOException exc) {
+            logger.log(Level.SEVERE, "Locating change plan of: %s, %s".formatted(sourcePath, destinationPath), exc);
+            throw new RuntimeException(exc);
+        }
+    }
+
+    // Every path set executes its own change plan:
+    @Override
+    protected boolean isFanOutCopy() { return false; }
+
+    // Backup name:
+    @Override
+    public String getBackupType() { return resourceBundle.getString("mirrorBackupPlanned"); }
+}
@@ -0,0 +1,51 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+
+public class MirrorBackupPlanning extends MirrorBackup {
+    private ExecutorService comparisonExecutor;
+
+    // Overriding backup task, destination is only read:
+    @Override
+    protected synchronized MirrorTask createTask(Path sourcePath, Path destinationPath,
+                                                 BiFunction<Path, Path, Boolean> comparisonStrategy) {
+        // Pool shared by all path sets for content comparisons which metadata cannot decide:
+        if (comparisonExecutor == null) {
+            comparisonExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+        try {
+            return new PlanningMirrorTask(this, sourcePath, destinationPath, comparisonStrategy, comparisonExecutor,
+                    MirrorState.getPairFile(sourcePath, destinationPath, ChangePlan.planFileName),
+                    MirrorState.getPairFile(sourcePath, destinationPath, ChangePlan.listingFileName));
+        } catch (IOException exc) {
+            // Plan cannot be stored, so path set cannot be planned:
+            logger.log(Level.SEVERE, "Preparing change plan of: %s, %s".formatted(sourcePath, destinationPath), exc);
+            throw new RuntimeException(exc);
+        }
+    }
+
+    @Override
+    public void joinAndDispose() throws InterruptedException {
+        // Joining backup and releasing comparison threads:
+        super.joinAndDispose();
+        synchronized (this) {
+            if (comparisonExecutor != null) {
+                comparisonExecutor.shutdown();
+                comparisonExecutor = null;
+            }
+        }
+    }
+
+    // Every path set has its own change plan:
+    @Override
+    protected boolean isFanOutCopy() { return false; }
+
+    // Backup name:
+    @Override
+    public String getBackupType() { return resourceBundle.getString("mirrorBackupPlanning"); }
+}
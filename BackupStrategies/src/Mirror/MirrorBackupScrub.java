@@ -0,0 +1,150 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+public class MirrorBackupScrub extends MirrorBackup {
+    // Low default rate, so scrubbing doesn't disturb other work of backup drives:
+    public final static long defaultScrubBytesPerSecond = 16L * 1024 * 1024;
+    // Attributes of profiles read as options of scrubbing:
+    public final static String scrubRateOption = "ScrubRateMiB";
+    public final static String scrubSessionTimeOption = "ScrubSessionMinutes";
+    public final static String scrubRepairOption = "ScrubRepair";
+    private final TokenBucket scrubBucket;
+    private boolean isScrubRepair;
+    private long scrubSessionTime;
+    private long sessionStartTime;
+
+    @FunctionalInterface
+    protected interface ScrubVisitor { boolean visit(Path file, BasicFileAttributes attributes) throws IOException; }
+
+    public MirrorBackupScrub() {
+        // Rate of all scrubbed path sets together:
+        scrubBucket = new TokenBucket(defaultScrubBytesPerSecond);
+        // Setting default value of copying damaged files again from the source:
+        isScrubRepair = true;
+        // Setting default length of one session, zero means scrubbing until the whole pass is done:
+        scrubSessionTime = 0;
+    }
+
+    @Override
+    public void execute(BiFunction<Path, Path, Boolean> comparisonStrategy) {
+        // Session time is counted without pauses:
+        sessionStartTime = getActiveTime();
+        super.execute(comparisonStrategy);
+    }
+
+    @Override
+    protected long estimatePathSize(Path srcPath, Path dstPath) {
+        // Bytes of destination files which are left in the current pass:
+        long[] size = new long[1];
+        try {
+            walkFrom(dstPath.resolve(srcPath.getFileName()), ScrubMirrorTask.readCursor(srcPath, dstPath),
+                    (_, attributes) -> {
+                        size[0] += attributes.size();
+                        return true;
+                    });
+        } catch (IOException exc) {
+            logger.log(Level.WARNING, "Getting scrub size of: %s, %s".formatted(srcPath, dstPath), exc);
+        } return size[0];
+    }
+
+    protected boolean walkFrom(Path root, List<String> cursor, ScrubVisitor visitor) throws IOException {
+        // Destination which doesn't exist has nothing to scrub:
+        if (!Files.isDirectory(root, LinkOption.NOFOLLOW_LINKS)) { return true; }
+        return walkFrom(root, cursor, 0, visitor);
+    }
+
+    private boolean walkFrom(Path dir, List<String> cursor, int depth, ScrubVisitor visitor) throws IOException {
+        // Entries are visited in order of names, so the cursor points at the same place in the next session:
+        List<Path> entries;
+        try (Stream<Path> stream = Files.list(dir)) {
+            entries = new ArrayList<>(stream.toList());
+        }
+        entries.sort(Comparator.comparing(entry -> entry.getFileName().toString()));
+        for (Path entry : entries) {
+            // Skipping entries before the cursor and the entry of the cursor itself:
+            List<String> entryCursor = null;
+            if (cursor != null && depth < cursor.size()) {
+                int order = entry.getFileName().toString().compareTo(cursor.get(depth));
+                if (order < 0 || (order == 0 && depth == cursor.size() - 1)) { continue; }
+                if (order == 0) { entryCursor = cursor; }
+            }
+            BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            if (attributes.isDirectory()) {
+                if (isNotProceedSubtree(entry)) { continue; }
+                if (!walkFrom(entry, entryCursor, depth + 1, visitor)) { return false; }
+            } else if (attributes.isRegularFile() && !isNotProceedFile(entry)) {
+                if (!visitor.visit(entry, attributes)) { return false; }
+            }
+        } return true;
+    }
+
+    public boolean isSessionOver() {
+        // Session of the limited length ends, next session continues from the cursor:
+        return scrubSessionTime > 0 && getActiveTime() - sessionStartTime >= scrubSessionTime;
+    }
+
+    public void scrubRead(long bytes) { scrubBucket.acquire(bytes, this::isInterrupted); }
+
+    // Repaired copies are verified and stored in the manifest:
+    @Override
+    public boolean isVerifiedCopy() { return true; }
+
+    public boolean isScrubRepair() { return isScrubRepair; }
+
+    public void setIsScrubRepair(boolean scrubRepair) {
+        // Checking if backup is not running:
+        if (isWorkingBackup()) { throw new IllegalStateException("Cannot modify flags during backup!"); }
+        isScrubRepair = scrubRepair;
+    }
+
+    public void setScrubSessionTime(long millis) {
+        // Checking if backup is not running:
+        if (isWorkingBackup()) { throw new IllegalStateException("Cannot modify flags during backup!"); }
+        scrubSessionTime = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    // Rate may be changed while scrub is running:
+    public void setScrubRate(long bytesPerSecond) { scrubBucket.setRate(bytesPerSecond); }
+
+    @Override
+    public void setOptions(Map<String, String> options) {
+        super.setOptions(options);
+        // Rate of reading destinations, given in megabytes per second:
+        setScrubRate(getPositiveOption(options, scrubRateOption, defaultScrubBytesPerSecond / bytesInMegabyte)
+                * bytesInMegabyte);
+        // Length of one session, given in minutes, without it the whole pass is done at once:
+        setScrubSessionTime(TimeUnit.MINUTES.toMillis(getPositiveOption(options, scrubSessionTimeOption, 0)));
+        // Damaged files are copied again from the source, unless profile disables it:
+        String scrubRepair = options.get(scrubRepairOption);
+        setIsScrubRepair(scrubRepair == null || scrubRepair.isBlank() || Boolean.parseBoolean(scrubRepair.strip()));
+    }
+
+    // Overriding backup task, destination is only read:
+    @Override
+    protected MirrorTask createTask(Path sourcePath, Path destinationPath,
+                                    BiFunction<Path, Path, Boolean> comparisonStrategy) {
+        return new ScrubMirrorTask(this, sourcePath, destinationPath, comparisonStrategy);
+    }
+
+    // Every path set has its own cursor and manifest:
+    @Override
+    protected boolean isFanOutCopy() { return false; }
+
+    // Backup name:
+    @Override
+    public String getBackupType() { return resourceBundle.getString("mirrorBackupScrub"); }
+}
@@ -0,0 +1,23 @@
+package Mirror;
+
+import java.nio.file.Path;
+import java.util.function.BiFunction;
+
+public class MirrorBackupSnapshot extends MirrorBackupModificationTime {
+
+    // Overriding backup task:
+    @Override
+    protected MirrorTask createTask(Path sourcePath, Path destinationPath,
+                                    BiFunction<Path, Path, Boolean> comparisonStrategy) {
+        // Creating a new dated snapshot linked to the previous one:
+        return new SnapshotMirrorTask(this, sourcePath, destinationPath, comparisonStrategy);
+    }
+
+    // Every destination links to its own previous snapshot:
+    @Override
+    protected boolean isFanOutCopy() { return false; }
+
+    // Backup name:
+    @Override
+    public String getBackupType() { return resourceBundle.getString("mirrorBackupSnapshot"); }
+}
@@ -0,0 +1,60 @@
+package Mirror;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+public class MirrorState {
+    protected final static Path stateDirectory = Path.of("TKZMirrorState");
+
+    @FunctionalInterface
+    public interface StateWriter { void write(DataOutputStream outputStream) throws IOException; }
+
+    @FunctionalInterface
+    public interface StateReader<T> { T read(DataInputStream inputStream) throws IOException; }
+
+    private MirrorState() { }
+
+    public static Path getPairFile(Path srcPath, Path dstPath, String name) throws IOException {
+        // Every path set has its own directory named by identifier derived from both paths:
+        Path pairDirectory = stateDirectory.resolve(UUID.nameUUIDFromBytes(
+                (srcPath.toAbsolutePath() + "\0" + dstPath.toAbsolutePath()).getBytes(
+                        StandardCharsets.UTF_8)).toString());
+        Files.createDirectories(pairDirectory);
+        return pairDirectory.resolve(name);
+    }
+
+    public static void write(Path file, StateWriter writer) throws IOException {
+        // Writing to temporary file and replacing the old state at once, so state is never half-written:
+        Path tmpFile = file.resolveSibling(file.getFileName() + GroupCommitWriter.temporaryFileSuffix);
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(tmpFile)))) {
+            writer.write(outputStream);
+        }
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static <T> T read(Path file, StateReader<T> reader) throws IOException {
+        // Reading state written by write():
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file)))) {
+            return reader.read(inputStream);
+        }
+    }
+
+    public static void writeString(DataOutputStream outputStream, String value) throws IOException {
+        // Strings are written with an integer length, because paths may exceed the limit of writeUTF():
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    public static String readString(DataInputStream inputStream) throws IOException {
+        byte[] bytes = new byte[inputStream.readInt()];
+        inputStream.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
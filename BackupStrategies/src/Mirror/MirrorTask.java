@@ -0,0 +1,553 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class MirrorTask {
+    protected final MirrorBackup backup;
+    protected final Path sourcePath;
+    protected final Path destinationPath;
+    protected final Path resolvedDestinationPath;
+    protected final Statistics statistics;
+    protected final BiFunction<Path, Path, Boolean> comparisonStrategy;
+    protected final GroupCommitWriter groupCommitWriter;
+    protected final FileVisitor<Path> fileCopyVisitor;
+    protected final FileVisitor<Path> fileRemoveVisitor;
+    private final LongAdder rangeProgress;
+    private final PathSetMetrics pathSetMetrics;
+    protected final IOThrottle.Device srcDevice;
+    protected final IOThrottle.Device dstDevice;
+    private RenameDetector renameDetector;
+    protected ChecksumManifest checksumManifest;
+
+    // Copy visitor:
+    private class CopyVisitor extends SimpleFileVisitor<Path> {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            // Decision if proceed with specified subtree:
+            if (backup.isNotProceedSubtree(dir) || isExcludedSubtree(dir)) { return FileVisitResult.SKIP_SUBTREE; }
+            // Mechanism of creating missing directories:
+            return createDirectory(dir);
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            // Decision if proceed with specified file:
+            if (backup.isNotProceedFile(file)) { return FileVisitResult.CONTINUE; }
+            // Mechanism of copying missing or different files:
+            return mirrorFile(file);
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            // Files that cannot be visited:
+            return visitFailed(file, exc);
+        }
+    }
+
+    // Removing visitor:
+    private class RemoveVisitor extends SimpleFileVisitor<Path> {
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            // Decision if proceed with specified subtree:
+            if (backup.isNotProceedSubtree(dir)) { return FileVisitResult.SKIP_SUBTREE; }
+            return super.preVisitDirectory(dir, attrs);
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            // Decision if proceed with specified file, temporary siblings of a crashed backup are swept:
+            if (backup.isNotProceedFile(file) && !GroupCommitWriter.isTemporaryFile(file)) {
+                return FileVisitResult.CONTINUE;
+            } return removeFile(file);
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            // Interrupt backup check:
+            if (backup.isInterrupted()) { return FileVisitResult.TERMINATE; }
+            // Throwing any exception if throws from other methods and finishing work:
+            else if (exc != null) { throw exc; }
+            return removeDirectory(dir);
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) { return visitFailed(file, exc); }
+    }
+
+    public MirrorTask(MirrorBackup mirrorBackup, Path srcPath, Path dstPath,
+                      BiFunction<Path, Path, Boolean> comparison) {
+        // Destination path with added source path directory name:
+        this(mirrorBackup, srcPath, dstPath, dstPath.resolve(srcPath.getFileName()), comparison);
+    }
+
+    protected MirrorTask(MirrorBackup mirrorBackup, Path srcPath, Path dstPath, Path resolvedDstPath,
+                         BiFunction<Path, Path, Boolean> comparison) {
+        // Global variables:
+        backup = mirrorBackup;
+        sourcePath = srcPath;
+        destinationPath = dstPath;
+        resolvedDestinationPath = resolvedDstPath;
+        comparisonStrategy = comparison;
+        // Current backup instance statistics:
+        statistics = new Statistics();
+        // Writer which copies files through temporary siblings and synchronizes them in groups:
+        groupCommitWriter = backup.isDurableCopy() ? new GroupCommitWriter(backup.logger, this::copyContent,
+                (file, dstFile) -> {
+                    statistics.increment(StatisticsEnum.COPIED_FILES);
+                    backup.setConsole(backup.resourceBundle.getString("fileCopy").formatted(file, dstFile));
+                }, (file, dstFile) -> {
+                    statistics.increment(StatisticsEnum.NOT_COPIED_FILE);
+                    backup.setConsole(backup.resourceBundle.getString("errorFileCopy").formatted(file, dstFile));
+                }) : null;
+        // Limits of source and destination devices:
+        srcDevice = backup.getThrottle().getDevice(srcPath);
+        dstDevice = backup.getThrottle().getDevice(dstPath);
+        // Progress already sent by ranges of parallel copies:
+        rangeProgress = new LongAdder();
+        // Counters of the path set, looked up once for all files of the task:
+        pathSetMetrics = backup.getPathSetMetrics(srcPath, dstPath);
+        // Visitors:
+        fileCopyVisitor = new CopyVisitor();
+        fileRemoveVisitor = new RemoveVisitor();
+    }
+
+    public Statistics run() {
+        try {
+            // Skipping path if it doesn't meet requirements:
+            if (backup.isNotProceedSubtree(sourcePath)) { return statistics; }
+            // Variable which stores information if there is a need to check for additional files in a destination path:
+            boolean isPureBackup = prepareDestination();
+            // Copying files:
+            Files.walkFileTree(sourcePath, fileCopyVisitor);
+            // Removing additional files:
+            finishDestination(isPureBackup);
+        } catch (IOException exc) {
+            // Any backup error catch:
+            reportFailure(exc);
+        } finally {
+            // Committing staged files and synchronizing directories changed by removals:
+            commit();
+        } return statistics;
+    }
+
+    protected boolean prepareDestination() throws IOException {
+        boolean isPureBackup = createDestination();
+        // Moving renamed entries of destination before copying, so they aren't copied again:
+        if (renameDetector != null) { renameDetector.detect(!isPureBackup); }
+        return isPureBackup;
+    }
+
+    protected boolean createDestination() throws IOException {
+        boolean isPureBackup = false;
+        // Creating directory of a source path last directory name:
+        if (!Files.isDirectory(resolvedDestinationPath, LinkOption.NOFOLLOW_LINKS)) {
+            isPureBackup = true;
+            try {
+                Files.createDirectory(resolvedDestinationPath);
+            } catch (FileAlreadyExistsException exc) {
+                backup.setConsole(backup.resourceBundle.getString("cannotCreateBackupDirectory").formatted(
+                        resolvedDestinationPath));
+                // Going to logging:
+                throw new IOException(exc);
+            }
+        }
+        // Rename history of source entries and checksums of verified copies of the previous backups:
+        renameDetector = createRenameDetector();
+        checksumManifest = createChecksumManifest();
+        return isPureBackup;
+    }
+
+    protected void finishDestination(boolean isPureBackup) throws IOException {
+        // Committing the last group of copied files before looking for additional ones:
+        commit();
+        // Removing files:
+        if (!isPureBackup) { Files.walkFileTree(resolvedDestinationPath, fileRemoveVisitor); }
+        // Storing identities of source entries for the next backup:
+        if (renameDetector != null && !backup.isInterrupted()) { renameDetector.saveHistory(); }
+        // Storing checksums, also of a stopped backup, entries describe files already copied:
+        saveChecksumManifest();
+    }
+
+    protected void reportFailure(IOException exc) {
+        statistics.increment(StatisticsEnum.NOT_CREATED_DIRECTORIES);
+        backup.setConsole(backup.resourceBundle.getString("cannotFinishBackup").formatted(
+                sourcePath, destinationPath));
+        backup.logger.log(Level.SEVERE, "Creating backup of: %s, %s".formatted(sourcePath, destinationPath), exc);
+    }
+
+    private RenameDetector createRenameDetector() {
+        if (!backup.isRenameDetection()) { return null; }
+        try {
+            return new RenameDetector(this, MirrorState.getPairFile(sourcePath, destinationPath,
+                    RenameDetector.historyFileName));
+        } catch (IOException exc) {
+            // Copying without rename detection if state cannot be stored:
+            backup.logger.log(Level.WARNING, "Preparing rename history of: %s, %s".formatted(
+                    sourcePath, destinationPath), exc);
+            return null;
+        }
+    }
+
+    protected ChecksumManifest createChecksumManifest() {
+        if (!backup.isVerifiedCopy()) { return null; }
+        try {
+            return new ChecksumManifest(MirrorState.getPairFile(sourcePath, destinationPath,
+                    ChecksumManifest.manifestFileName));
+        } catch (IOException exc) {
+            // Copies are still verified, only checksums aren't stored:
+            backup.logger.log(Level.WARNING, "Preparing checksum manifest of: %s, %s".formatted(
+                    sourcePath, destinationPath), exc);
+            return null;
+        }
+    }
+
+    protected void saveChecksumManifest() throws IOException {
+        if (checksumManifest != null) { checksumManifest.save(); }
+    }
+
+    public void commit() {
+        // Flushing staged files of durable copy:
+        if (groupCommitWriter != null) { groupCommitWriter.commit(); }
+    }
+
+    public Path toDestination(Path srcEntry) {
+        // Defining a path of the source entry in destination backup location:
+        return resolvedDestinationPath.resolve(sourcePath.relativize(srcEntry));
+    }
+
+    public Path toSource(Path dstEntry) {
+        // Defining a path of the destination entry in source backup location:
+        return sourcePath.resolve(resolvedDestinationPath.relativize(dstEntry));
+    }
+
+    public FileVisitResult createDirectory(Path dir) {
+        // Interrupt backup check:
+        if (backup.isInterrupted()) { return FileVisitResult.TERMINATE; }
+        // Defining a path of current directory in destination backup location:
+        Path dstDir = toDestination(dir);
+        // Creating if not exists:
+        if (!Files.isDirectory(dstDir, LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                dstDevice.operation();
+                Files.createDirectory(dstDir);
+                if (groupCommitWriter != null) { groupCommitWriter.registerDirectory(dstDir.getParent()); }
+                statistics.increment(StatisticsEnum.CREATED_DIRS);
+                backup.setConsole(backup.resourceBundle.getString("createDir").formatted(dstDir));
+            } catch (IOException exc) {
+                // Skipping subtree with information:
+                backup.logger.log(Level.SEVERE, "Creating directory: %s".formatted(dstDir), exc);
+                statistics.increment(StatisticsEnum.NOT_CREATED_DIRECTORIES);
+                backup.setConsole(backup.resourceBundle.getString("errorCreateDir").formatted(dstDir));
+                return FileVisitResult.SKIP_SUBTREE;
+            }
+        } return FileVisitResult.CONTINUE;
+    }
+
+    public FileVisitResult mirrorFile(Path file) {
+        // Interrupt backup check:
+        if (backup.isInterrupted()) { return FileVisitResult.TERMINATE; }
+        // Defining a path of the current file in destination backup location:
+        Path dstFile = toDestination(file);
+        long startTime = backup.getActiveTime();
+        // Only content comparisons and copies read or write content, other comparisons read attributes:
+        boolean isTransferred = comparisonStrategy == backup.contentComparison;
+        // Decision of copying file, small files are compared and copied in memory:
+        if (!mirrorSmallFile(file, dstFile)
+                && !(backup.isSameFileType(file, dstFile) && compareFiles(file, dstFile))) {
+            copyFile(file, dstFile);
+            isTransferred = true;
+        }
+        try {
+            long size = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).size();
+            // Measuring comparison and copy for concurrency of devices, skipped files would inflate throughput:
+            if (isTransferred) {
+                backup.recordOperation(sourcePath, destinationPath, size, backup.getActiveTime() - startTime);
+            }
+            // Adding path size to a global files size sum:
+            addProcessedSize(size);
+        } catch (IOException exc) {
+            // Only logging error:
+            backup.logger.log(Level.WARNING, "Getting file size: %s".formatted(file), exc);
+        } return FileVisitResult.CONTINUE;
+    }
+
+    protected void addProcessedSize(long size) {
+        // Every processed file is counted once, with its whole size:
+        pathSetMetrics.addFile(size);
+        // Adding size without the part sent by ranges of a parallel copy:
+        backup.addProcessedSize(size - rangeProgress.sumThenReset());
+    }
+
+    protected boolean compareFiles(Path file, Path otherFile) {
+        // Content comparison reads both files in parts within limits of devices, other ones only attributes:
+        if (comparisonStrategy == backup.contentComparison) {
+            return backup.compareContent(file, otherFile, srcDevice::read, dstDevice::read);
+        }
+        srcDevice.operation();
+        dstDevice.operation();
+        return comparisonStrategy.apply(file, otherFile);
+    }
+
+    protected boolean mirrorSmallFile(Path file, Path dstFile) {
+        // Only replacing content comparison and plain copy, durable copy stages files on its own:
+        if (comparisonStrategy != backup.contentComparison || groupCommitWriter != null) { return false; }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException exc) { return false; }
+        DirectBufferPool bufferPool = DirectBufferPool.getSmallFilesPool();
+        if (!attributes.isRegularFile() || attributes.size() >= bufferPool.getBufferSize()) { return false; }
+        // Destination which is not a regular file is replaced by the general path:
+        boolean isDstExists = Files.exists(dstFile, LinkOption.NOFOLLOW_LINKS);
+        if (isDstExists && !Files.isRegularFile(dstFile, LinkOption.NOFOLLOW_LINKS)) { return false; }
+        ByteBuffer[] buffers;
+        try {
+            // Waiting for buffers within the global memory budget:
+            buffers = bufferPool.acquire(2);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            // Reading the whole file with one read, file which has grown is copied by the general path:
+            ByteBuffer srcBuffer = buffers[0], dstBuffer = buffers[1];
+            srcDevice.read(attributes.size());
+            if (!readSmallFile(file, srcBuffer)) { return false; }
+            // Comparing content in memory:
+            if (isDstExists && Files.size(dstFile) == srcBuffer.remaining()) {
+                dstDevice.read(srcBuffer.remaining());
+                if (readSmallFile(dstFile, dstBuffer) && srcBuffer.equals(dstBuffer)) { return true; }
+            }
+            // Summing content before it is written:
+            ContentChecksum checksum = null;
+            if (backup.isVerifiedCopy()) {
+                checksum = new ContentChecksum(srcBuffer.remaining());
+                checksum.update(0, srcBuffer);
+            }
+            // Writing the whole file with one write into a new sibling, which replaces the target at once:
+            dstDevice.write(srcBuffer.remaining());
+            writeSmallFile(file, dstFile, srcBuffer, attributes, checksum);
+            addCopiedBytes(new SparseFileCopier.CopyResult(srcBuffer.limit(), srcBuffer.limit()));
+            statistics.increment(StatisticsEnum.COPIED_FILES);
+            backup.setConsole(backup.resourceBundle.getString("fileCopy").formatted(file, dstFile));
+        } catch (IOException exc) {
+            // Sending proper communicate if error:
+            backup.logger.log(Level.SEVERE, "Copying file %s to %s".formatted(file, dstFile), exc);
+            statistics.increment(StatisticsEnum.NOT_COPIED_FILE);
+            backup.setConsole(backup.resourceBundle.getString("errorFileCopy").formatted(file, dstFile));
+        } finally {
+            bufferPool.release(buffers);
+        } return true;
+    }
+
+    private void writeSmallFile(Path file, Path dstFile, ByteBuffer buffer, BasicFileAttributes attributes,
+                                ContentChecksum checksum) throws IOException {
+        // New file doesn't write through hard links of snapshots, nor into read-only targets:
+        Path tmpFile = GroupCommitWriter.getTemporaryFile(dstFile);
+        try {
+            // Sibling left by an interrupted backup is replaced:
+            Files.deleteIfExists(tmpFile);
+            try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) { channel.write(buffer); }
+            }
+            SparseFileCopier.copyAttributes(file, tmpFile, attributes);
+            if (checksum != null) { verifyCopy(file, tmpFile, checksum); }
+            // Target is left untouched if writing has failed:
+            Files.move(tmpFile, dstFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException exc) {
+            Files.deleteIfExists(tmpFile);
+            throw exc;
+        }
+    }
+
+    private static boolean readSmallFile(Path file, ByteBuffer buffer) throws IOException {
+        // Reading until end of file, false if the file doesn't fit into the buffer:
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    return true;
+                }
+            }
+        } return false;
+    }
+
+    protected void copyFile(Path file, Path dstFile) {
+        try {
+            // Staging file, statistics are updated when the group is committed:
+            if (groupCommitWriter != null) { addCopiedBytes(groupCommitWriter.stage(file, dstFile)); }
+            else {
+                // Copying file, very large files through temporary sibling renamed when all ranges are done:
+                if (isRangedCopy(file)) { addCopiedBytes(copyRangedAndRename(file, dstFile)); }
+                else { addCopiedBytes(copyContent(file, dstFile)); }
+                statistics.increment(StatisticsEnum.COPIED_FILES);
+                backup.setConsole(backup.resourceBundle.getString("fileCopy").formatted(file, dstFile));
+            }
+        } catch (IOException exc) {
+            // Sending proper communicate if error:
+            backup.logger.log(Level.SEVERE, "Copying file %s to %s".formatted(file, dstFile), exc);
+            statistics.increment(StatisticsEnum.NOT_COPIED_FILE);
+            backup.setConsole(backup.resourceBundle.getString("errorFileCopy").formatted(file, dstFile));
+        }
+    }
+
+    protected boolean isRangedCopy(Path file) throws IOException {
+        // Very large regular files are copied by many threads:
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        return attributes.isRegularFile() && attributes.size() >= backup.getParallelCopyThreshold();
+    }
+
+    protected SparseFileCopier.CopyResult copyContent(Path file, Path targetFile) throws IOException {
+        // Content of regular files is summed while it is copied, if copies are verified:
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        ContentChecksum checksum = backup.isVerifiedCopy() && attributes.isRegularFile()
+                ? new ContentChecksum(attributes.size()) : null;
+        SparseFileCopier.CopyResult copyResult;
+        // Copying directly into target file, zero ranges of large files are left as holes:
+        if (!isRangedCopy(file)) {
+            copyResult = SparseFileCopier.copy(file, targetFile, srcDevice, dstDevice, backup::isInterrupted,
+                    checksum);
+        } else {
+            copyResult = backup.getRangeCopier().copy(file, targetFile, srcDevice, dstDevice, bytes -> {
+                // Progress of every range:
+                rangeProgress.add(bytes);
+                backup.addProcessedSize(bytes);
+            }, backup::isInterrupted, checksum);
+        }
+        if (checksum != null) { verifyCopy(file, targetFile, checksum); }
+        return copyResult;
+    }
+
+    protected void verifyCopy(Path file, Path targetFile, ContentChecksum checksum) throws IOException {
+        // Reading the copy back once, source isn't read again:
+        long checksumValue = checksum.getValue();
+        if (ContentChecksum.read(targetFile, dstDevice::read, backup::isInterrupted) != checksumValue) {
+            // Corrupted copy is removed, so the next backup copies the file again:
+            statistics.increment(StatisticsEnum.NOT_VERIFIED_FILES);
+            Files.deleteIfExists(targetFile);
+            throw new IOException("Copy %s differs from source %s!".formatted(targetFile, file));
+        }
+        statistics.increment(StatisticsEnum.VERIFIED_FILES);
+        // Storing checksum with attributes of the copy, so it can be verified without the source:
+        if (checksumManifest != null) {
+            BasicFileAttributes attributes = Files.readAttributes(targetFile, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            checksumManifest.put(sourcePath.relativize(file).toString(), new ChecksumManifest.Entry(
+                    attributes.size(), ChecksumManifest.getModificationTime(attributes), checksumValue));
+        }
+    }
+
+    private SparseFileCopier.CopyResult copyRangedAndRename(Path file, Path dstFile) throws IOException {
+        // Old target is replaced only when the whole file has been copied:
+        Path tmpFile = GroupCommitWriter.getTemporaryFile(dstFile);
+        try {
+            SparseFileCopier.CopyResult copyResult = copyContent(file, tmpFile);
+            Files.move(tmpFile, dstFile, StandardCopyOption.ATOMIC_MOVE);
+            return copyResult;
+        } catch (IOException exc) {
+            Files.deleteIfExists(tmpFile);
+            throw exc;
+        }
+    }
+
+    protected void addCopiedBytes(SparseFileCopier.CopyResult copyResult) {
+        // Logical size of copied content and bytes really written:
+        statistics.add(StatisticsEnum.LOGICAL_BYTES, copyResult.logicalBytes());
+        statistics.add(StatisticsEnum.PHYSICAL_BYTES, copyResult.physicalBytes());
+    }
+
+    public FileVisitResult removeFile(Path file) {
+        // Interrupt backup check:
+        if (backup.isInterrupted()) { return FileVisitResult.TERMINATE; }
+        // Checking if a path of the current file exists in source backup location:
+        else if (isAdditionalFile(file)) {
+            try {
+                // Removing an additional file:
+                dstDevice.operation();
+                Files.delete(file);
+                if (groupCommitWriter != null) { groupCommitWriter.registerDirectory(file.getParent()); }
+                if (checksumManifest != null) {
+                    checksumManifest.remove(resolvedDestinationPath.relativize(file).toString());
+                }
+                statistics.increment(StatisticsEnum.REMOVED_FILES);
+                backup.setConsole(backup.resourceBundle.getString("removeFile").formatted(file));
+            } catch (IOException exc) {
+                // Sending proper communicate of exception:
+                backup.logger.log(Level.SEVERE, "Removing file: %s".formatted(file), exc);
+                statistics.increment(StatisticsEnum.NOT_REMOVED_FILES);
+                backup.setConsole(backup.resourceBundle.getString("errorRemoveFile").formatted(file));
+            }
+        } return FileVisitResult.CONTINUE;
+    }
+
+    protected boolean isAdditionalFile(Path file) {
+        // File is also additional if source has a directory in its place or a file in place of its parent:
+        Path srcFile = toSource(file);
+        return !Files.isDirectory(srcFile.getParent(), LinkOption.NOFOLLOW_LINKS)
+                || Files.notExists(srcFile, LinkOption.NOFOLLOW_LINKS)
+                || Files.isDirectory(srcFile, LinkOption.NOFOLLOW_LINKS);
+    }
+
+    public FileVisitResult removeDirectory(Path dir) {
+        // Checking if a path of the current directory exists in source backup location:
+        if (!Files.isDirectory(toSource(dir), LinkOption.NOFOLLOW_LINKS)) {
+            try {
+                // Removing additional directory:
+                dstDevice.operation();
+                Files.delete(dir);
+                if (groupCommitWriter != null) { groupCommitWriter.registerDirectory(dir.getParent()); }
+                statistics.increment(StatisticsEnum.REMOVED_DIRECTORIES);
+                backup.setConsole(backup.resourceBundle.getString("removeDir").formatted(dir));
+            } catch (IOException exception) {
+                // Sending proper communicate of exception:
+                backup.logger.log(Level.SEVERE, "Removing directory: %s".formatted(dir), exception);
+                statistics.increment(StatisticsEnum.NOT_REMOVED_DIRECTORIES);
+                backup.setConsole(backup.resourceBundle.getString("errorRemoveDir").formatted(dir));
+            }
+        } return FileVisitResult.CONTINUE;
+    }
+
+    public FileVisitResult visitFailed(Path file, IOException exc) {
+        // Interrupt backup check:
+        if (backup.isInterrupted()) { return FileVisitResult.TERMINATE; }
+        // Sending proper communicate:
+        backup.logger.log(Level.WARNING, "Failed visiting file: %s".formatted(file), exc);
+        if (Files.isDirectory(file, LinkOption.NOFOLLOW_LINKS)) {
+            statistics.increment(StatisticsEnum.NOT_VISITED_DIRS);
+            backup.setConsole(backup.resourceBundle.getString("errorVisitDir").formatted(file));
+        } else {
+            statistics.increment(StatisticsEnum.NOT_VISITED_FILES);
+            backup.setConsole(backup.resourceBundle.getString("errorVisitFile").formatted(file));
+        } return FileVisitResult.CONTINUE;
+    }
+
+    // Access to backup instance for tasks of other packages:
+
+    protected void setConsole(String bundleKey, Object... args) {
+        backup.setConsole(backup.resourceBundle.getString(bundleKey).formatted(args));
+    }
+
+    protected Logger getLogger() { return backup.logger; }
+
+    // Sources of other path sets may be excluded from the walked source:
+    protected boolean isExcludedSubtree(Path dir) { return backup.isExcludedSubtree(sourcePath, dir); }
+
+    protected boolean isInterrupted() { return backup.isInterrupted(); }
+
+    // Getters:
+    public Statistics getStatistics() { return statistics; }
+    protected RenameDetector getRenameDetector() { return renameDetector; }
+    public Path getSourcePath() { return sourcePath; }
+    public Path getResolvedDestinationPath() { return resolvedDestinationPath; }
+}
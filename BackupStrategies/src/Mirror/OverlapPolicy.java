@@ -0,0 +1,10 @@
+package Mirror;
+
+public enum OverlapPolicy {
+    // Path sets with nested sources are not accepted:
+    REJECT,
+    // Nested source is walked only by its own path set, outer path set leaves it out:
+    EXCLUDE,
+    // Nested source is walked once, by the walk of the outer source which copies it to all destinations:
+    MERGE
+}
@@ -0,0 +1,103 @@
+package Mirror;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongConsumer;
+
+public class ParallelRangeCopier {
+    public final static long defaultParallelCopyThreshold = 1024L * 1024 * 1024;
+    private final static long rangeSize = 64L * 1024 * 1024;
+    private final static int transferSize = 1024 * 1024;
+    // Several requests in flight are needed to saturate solid state drives:
+    private final static int rangeThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private final ExecutorService rangeExecutor;
+
+    public ParallelRangeCopier() {
+        // Pool shared by all files and path sets of a backup:
+        rangeExecutor = Executors.newFixedThreadPool(rangeThreads);
+    }
+
+    public SparseFileCopier.CopyResult copy(Path srcFile, Path dstFile, IOThrottle.Device srcDevice,
+                                            IOThrottle.Device dstDevice, LongConsumer progress,
+                                            BooleanSupplier isInterrupted, ContentChecksum checksum)
+            throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(srcFile, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        long size = attributes.size();
+        LongAdder physicalBytes = new LongAdder();
+        Files.deleteIfExists(dstFile);
+        // Ranges skip zero granules like the sparse copy, so large sparse files (e.g. images) keep their holes:
+        try (FileChannel srcChannel = FileChannel.open(srcFile, StandardOpenOption.READ);
+             FileChannel dstChannel = FileChannel.open(dstFile, StandardOpenOption.CREATE_NEW,
+                     StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+            // Copying ranges concurrently with positional reads and writes:
+            List<Future<?>> ranges = new ArrayList<>();
+            for (long rangeStart = 0; rangeStart < size; rangeStart += rangeSize) {
+                long start = rangeStart, end = Math.min(size, rangeStart + rangeSize);
+                ranges.add(rangeExecutor.submit(() -> {
+                    physicalBytes.add(copyRange(srcChannel, dstChannel, start, end, srcDevice, dstDevice, progress,
+                            isInterrupted, checksum));
+                    return null;
+                }));
+            }
+            waitForRanges(ranges);
+        }
+        // Setting the final length after ranges, so a hole at the end isn't allocated:
+        if (Files.size(dstFile) < size) { SparseFileCopier.extend(dstFile, size); }
+        SparseFileCopier.copyAttributes(srcFile, dstFile, attributes);
+        return new SparseFileCopier.CopyResult(size, physicalBytes.sum());
+    }
+
+    private static long copyRange(FileChannel srcChannel, FileChannel dstChannel, long start, long end,
+                                  IOThrottle.Device srcDevice, IOThrottle.Device dstDevice, LongConsumer progress,
+                                  BooleanSupplier isInterrupted, ContentChecksum checksum) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(transferSize);
+        long position = start, physicalBytes = 0;
+        while (position < end) {
+            // Stopping a long copy as soon as backup is interrupted:
+            if (isInterrupted.getAsBoolean()) { throw new InterruptedIOException("Backup interrupted!"); }
+            buffer.clear().limit((int) Math.min(transferSize, end - position));
+            srcDevice.read(buffer.limit());
+            while (buffer.hasRemaining()) {
+                if (srcChannel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("File has been truncated during copy!");
+                }
+            }
+            buffer.flip();
+            // Ranges and transfers are aligned to chunks, so every transfer is summed on its own:
+            if (checksum != null) { checksum.update(position, buffer); }
+            physicalBytes += SparseFileCopier.writeDataRuns(dstChannel, buffer, position, dstDevice);
+            position += buffer.limit();
+            // Progress of every range is sent separately:
+            progress.accept(buffer.limit());
+        } return physicalBytes;
+    }
+
+    private static void waitForRanges(List<Future<?>> ranges) throws IOException {
+        try {
+            for (Future<?> range : ranges) { range.get(); }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException exc) {
+            throw exc.getCause() instanceof IOException ioException ? ioException : new IOException(exc.getCause());
+        } finally {
+            // Cancelling remaining ranges after failure, channels are closed afterwards:
+            ranges.forEach(range -> range.cancel(false));
+        }
+    }
+
+    public void shutdown() { rangeExecutor.shutdown(); }
+}
@@ -0,0 +1,60 @@
+package Mirror;
+
+import Utils.SimplePair;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PathOverlaps {
+    public enum OverlapType {
+        // Source of the path set is inside of source of the other one:
+        NESTED_SOURCE,
+        // Source of the path set is inside of backup of the other one, or its backup is inside of the other source:
+        CROSSED,
+        // Backups of both path sets are written into the same tree:
+        CONFLICTED
+    }
+
+    public record Overlap(SimplePair<Path> pathSet, SimplePair<Path> otherPathSet, OverlapType type) { }
+
+    private record Mark(SimplePair<Path> pathSet, boolean isSource) { }
+
+    private PathOverlaps() { }
+
+    public static List<Overlap> find(List<SimplePair<Path>> pathSets) {
+        // Marking sources and backup directories of all path sets in one trie:
+        PathTrie<Mark> trie = new PathTrie<>();
+        for (SimplePair<Path> pathSet : pathSets) {
+            trie.put(pathSet.key(), new Mark(pathSet, true));
+            trie.put(getBackupPath(pathSet), new Mark(pathSet, false));
+        }
+        // Looking up ancestors of every path, so every pair of nested paths is found from its inner path:
+        List<Overlap> overlaps = new ArrayList<>();
+        for (SimplePair<Path> pathSet : pathSets) {
+            for (PathTrie.Match<Mark> match : trie.getMatches(pathSet.key())) {
+                SimplePair<Path> otherPathSet = match.value().pathSet();
+                if (otherPathSet.equals(pathSet)) { continue; }
+                if (!match.value().isSource()) {
+                    overlaps.add(new Overlap(pathSet, otherPathSet, OverlapType.CROSSED));
+                }
+                // Equal sources are read once by the fan-out copy:
+                else if (!match.isSamePath()) {
+                    overlaps.add(new Overlap(pathSet, otherPathSet, OverlapType.NESTED_SOURCE));
+                }
+            }
+            for (PathTrie.Match<Mark> match : trie.getMatches(getBackupPath(pathSet))) {
+                SimplePair<Path> otherPathSet = match.value().pathSet();
+                if (otherPathSet.equals(pathSet)) { continue; }
+                overlaps.add(new Overlap(pathSet, otherPathSet, match.value().isSource() ? OverlapType.CROSSED
+                        : OverlapType.CONFLICTED));
+            }
+        } return overlaps;
+    }
+
+    private static Path getBackupPath(SimplePair<Path> pathSet) {
+        // Directory of the source name in destination, which is written by the backup:
+        Path sourceName = pathSet.key().getFileName();
+        return sourceName == null ? pathSet.val() : pathSet.val().resolve(sourceName);
+    }
+}
@@ -0,0 +1,23 @@
+package Mirror;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters of one path set, kept between backups and summed only when metrics are read:
+public class PathSetMetrics {
+    private final LongAdder processedBytes;
+    private final LongAdder processedFiles;
+
+    public PathSetMetrics() {
+        processedBytes = new LongAdder();
+        processedFiles = new LongAdder();
+    }
+
+    public void addFile(long size) {
+        processedBytes.add(size);
+        processedFiles.increment();
+    }
+
+    // Getters:
+    public long getProcessedBytes() { return processedBytes.sum(); }
+    public long getProcessedFiles() { return processedFiles.sum(); }
+}
@@ -0,0 +1,49 @@
+package Mirror;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class PathTrie<T> {
+    private final Node<T> root;
+
+    public record Match<T>(T value, boolean isSamePath) { }
+
+    private static class Node<T> {
+        private final Map<String, Node<T>> children = new HashMap<>();
+        private final List<T> values = new ArrayList<>();
+    }
+
+    public PathTrie() { root = new Node<>(); }
+
+    public void put(Path path, T value) {
+        // Every name of the path is one level of the trie:
+        Node<T> node = root;
+        for (String name : getNames(path)) { node = node.children.computeIfAbsent(name, _ -> new Node<>()); }
+        node.values.add(value);
+    }
+
+    public List<Match<T>> getMatches(Path path) {
+        // Values of the path and of its ancestors, from the root, found in one descent:
+        List<Match<T>> matches = new ArrayList<>();
+        List<String> names = getNames(path);
+        Node<T> node = root;
+        for (int i = 0; i < names.size() && node != null; ++i) {
+            node = node.children.get(names.get(i));
+            if (node == null) { break; }
+            boolean isSamePath = i == names.size() - 1;
+            node.values.forEach(value -> matches.add(new Match<>(value, isSamePath)));
+        } return matches;
+    }
+
+    private static List<String> getNames(Path path) {
+        // Root of the path (e.g. drive letter) is the first level:
+        List<String> names = new ArrayList<>();
+        Path normalizedPath = path.toAbsolutePath().normalize();
+        names.add(String.valueOf(normalizedPath.getRoot()));
+        normalizedPath.forEach(name -> names.add(name.toString()));
+        return names;
+    }
+}
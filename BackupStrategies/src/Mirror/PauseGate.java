@@ -0,0 +1,50 @@
+package Mirror;
+
+import java.util.function.BooleanSupplier;
+
+// Safe point where workers park, keeping their state, while backup is paused:
+public class PauseGate {
+    private volatile boolean isPaused;
+    private long pauseStartTime;
+    private long pausedTime;
+
+    public synchronized void pause() {
+        if (isPaused) { return; }
+        isPaused = true;
+        pauseStartTime = System.nanoTime();
+    }
+
+    public synchronized void resume() {
+        // Counting pause time, so it isn't in measurements of operations:
+        if (isPaused) { pausedTime += System.nanoTime() - pauseStartTime; }
+        // Waking all parked workers:
+        isPaused = false;
+        notifyAll();
+    }
+
+    public synchronized long getActiveTime() {
+        // Monotonic time which stands still while backup is paused:
+        long now = System.nanoTime();
+        return now - pausedTime - (isPaused ? now - pauseStartTime : 0);
+    }
+
+    public synchronized void release() { notifyAll(); }
+
+    public void await(BooleanSupplier isStopped) {
+        // Checking without lock, the gate is passed by every file and every part of a large file:
+        if (!isPaused) { return; }
+        synchronized (this) {
+            // Stopping backup also releases parked workers:
+            while (isPaused && !isStopped.getAsBoolean()) {
+                try {
+                    wait();
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    public boolean isPaused() { return isPaused; }
+}
@@ -0,0 +1,88 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+
+public class PlannedMirrorTask extends MirrorTask {
+    private final Path planFile;
+
+    public PlannedMirrorTask(MirrorBackup mirrorBackup, Path srcPath, Path dstPath,
+                             BiFunction<Path, Path, Boolean> comparison, Path plan) {
+        super(mirrorBackup, srcPath, dstPath, comparison);
+        // Global variables:
+        planFile = plan;
+    }
+
+    @Override
+    public Statistics run() {
+        try {
+            // Plan is created by planning backup of the same path set:
+            if (!Files.isRegularFile(planFile)) {
+                setConsole("changePlanMissing", sourcePath, destinationPath);
+                statistics.increment(StatisticsEnum.NOT_CREATED_DIRECTORIES);
+                return statistics;
+            }
+            ChangePlan changePlan = ChangePlan.read(planFile);
+            setConsole("changePlanExecuted", planFile, changePlan.getChanges().size(), changePlan.getBytes());
+            // Checksums of verified copies of the previous backups:
+            checksumManifest = createChecksumManifest();
+            // Applying changes in order of the plan, without comparing files again:
+            for (ChangePlan.Change change : changePlan.getChanges()) {
+                if (isInterrupted()) { break; }
+                applyChange(change);
+            }
+            // Committing the last group of copied files:
+            commit();
+            // Storing checksums, also of a stopped backup:
+            saveChecksumManifest();
+            // Plan is executed only once, next run has to be planned again:
+            if (!isInterrupted() && statistics.isExceptionsNotRaised()) { Files.delete(planFile); }
+        } catch (IOException exc) {
+            // Any backup error catch:
+            statistics.increment(StatisticsEnum.NOT_CREATED_DIRECTORIES);
+            setConsole("cannotFinishBackup", sourcePath, destinationPath);
+            getLogger().log(Level.SEVERE, "Executing change plan of: %s, %s".formatted(
+                    sourcePath, destinationPath), exc);
+        } finally {
+            // Committing staged files and synchronizing directories changed by removals:
+            commit();
+        } return statistics;
+    }
+
+    private void applyChange(ChangePlan.Change change) {
+        Path dstEntry = resolvedDestinationPath.resolve(change.path());
+        switch (change.action()) {
+            case CREATE_DIRECTORY -> createPlannedDirectory(dstEntry);
+            case CREATE_FILE, UPDATE_FILE -> {
+                // Copying current content of the planned file:
+                copyFile(toSource(dstEntry), dstEntry);
+                addProcessedSize(change.size());
+            }
+            case DELETE_FILE -> {
+                // File removed since planning is skipped:
+                if (Files.exists(dstEntry, LinkOption.NOFOLLOW_LINKS)) { removeFile(dstEntry); }
+            }
+            case DELETE_DIRECTORY -> {
+                if (Files.isDirectory(dstEntry, LinkOption.NOFOLLOW_LINKS)) { removeDirectory(dstEntry); }
+            }
+        }
+    }
+
+    private void createPlannedDirectory(Path dstDir) {
+        // Directory created since planning is skipped:
+        if (Files.isDirectory(dstDir, LinkOption.NOFOLLOW_LINKS)) { return; }
+        try {
+            dstDevice.operation();
+            Files.createDirectory(dstDir);
+            if (groupCommitWriter != null) { groupCommitWriter.registerDirectory(dstDir.getParent()); }
+            statistics.increment(StatisticsEnum.CREATED_DIRS);
+            setConsole("createDir", dstDir);
+        } catch (IOException exc) {
+            getLogger().log(Level.SEVERE, "Creating directory: %s".formatted(dstDir), exc);
+            statistics.increment(StatisticsEnum.NOT_CREATED_DIRECTORIES);
+            setConsole("errorCreateDir", dstDir);
+        }
+    }
+}
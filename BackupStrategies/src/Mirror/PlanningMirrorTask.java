@@ -0,0 +1,166 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+
+public class PlanningMirrorTask extends MirrorTask {
+    private final static int maximumComparisonsInProgress = 64;
+    private final ExecutorService comparisonExecutor;
+    private final Semaphore comparisonsInProgress;
+    private final Phaser pendingComparisons;
+    private final ChangePlan changePlan;
+    private final Path planFile;
+    private final Path listingFile;
+
+    public PlanningMirrorTask(MirrorBackup mirrorBackup, Path srcPath, Path dstPath,
+                              BiFunction<Path, Path, Boolean> comparison, ExecutorService executor, Path plan,
+                              Path listing) {
+        super(mirrorBackup, srcPath, dstPath, comparison);
+        // Global variables:
+        comparisonExecutor = executor;
+        planFile = plan;
+        listingFile = listing;
+        changePlan = new ChangePlan(srcPath, dstPath);
+        // Limit of content comparisons queued at once:
+        comparisonsInProgress = new Semaphore(maximumComparisonsInProgress);
+        pendingComparisons = new Phaser(1);
+    }
+
+    @Override
+    public Statistics run() {
+        try {
+            // Skipping path if it doesn't meet requirements:
+            if (backup.isNotProceedSubtree(sourcePath)) { return statistics; }
+            try {
+                // Planning copies, additional files are looked for only if backup directory exists:
+                Files.walkFileTree(sourcePath, fileCopyVisitor);
+                if (Files.isDirectory(resolvedDestinationPath, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.walkFileTree(resolvedDestinationPath, fileRemoveVisitor);
+                }
+            } finally {
+                // Waiting for content comparisons, even if walking has failed:
+                pendingComparisons.arriveAndAwaitAdvance();
+            }
+            // Storing plan only if it is complete:
+            if (!isInterrupted()) {
+                changePlan.sort();
+                changePlan.write(planFile);
+                changePlan.exportListing(listingFile);
+                setConsole("changePlanCreated", sourcePath, destinationPath,
+                        changePlan.getCount(ChangePlan.Action.CREATE_DIRECTORY),
+                        changePlan.getCount(ChangePlan.Action.CREATE_FILE),
+                        changePlan.getCount(ChangePlan.Action.UPDATE_FILE),
+                        changePlan.getCount(ChangePlan.Action.DELETE_FILE),
+                        changePlan.getCount(ChangePlan.Action.DELETE_DIRECTORY), changePlan.getBytes(), listingFile);
+            }
+        } catch (IOException exc) {
+            // Any planning error catch:
+            statistics.increment(StatisticsEnum.NOT_CREATED_DIRECTORIES);
+            setConsole("cannotFinishBackup", sourcePath, destinationPath);
+            getLogger().log(Level.SEVERE, "Planning backup of: %s, %s".formatted(sourcePath, destinationPath), exc);
+        } return statistics;
+    }
+
+    @Override
+    public FileVisitResult createDirectory(Path dir) {
+        // Interrupt backup check:
+        if (isInterrupted()) { return FileVisitResult.TERMINATE; }
+        // Only recording missing directory:
+        Path dstDir = toDestination(dir);
+        if (!Files.isDirectory(dstDir, LinkOption.NOFOLLOW_LINKS)) {
+            changePlan.add(ChangePlan.Action.CREATE_DIRECTORY, toPlanPath(dstDir), 0);
+        } return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult mirrorFile(Path file) {
+        // Interrupt backup check:
+        if (isInterrupted()) { return FileVisitResult.TERMINATE; }
+        Path dstFile = toDestination(file);
+        try {
+            BasicFileAttributes srcAttributes = Files.readAttributes(file, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            srcDevice.operation();
+            dstDevice.operation();
+            // Comparing in cascade, content is read only if metadata cannot decide, a file replacing parent is missing:
+            if (!Files.exists(dstFile, LinkOption.NOFOLLOW_LINKS)) {
+                changePlan.add(ChangePlan.Action.CREATE_FILE, toPlanPath(dstFile), srcAttributes.size());
+            } else {
+                BasicFileAttributes dstAttributes = Files.readAttributes(dstFile, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                if (srcAttributes.isRegularFile() != dstAttributes.isRegularFile()
+                        || srcAttributes.isSymbolicLink() != dstAttributes.isSymbolicLink()
+                        || srcAttributes.size() != dstAttributes.size()) {
+                    changePlan.add(ChangePlan.Action.UPDATE_FILE, toPlanPath(dstFile), srcAttributes.size());
+                } else if (srcAttributes.lastModifiedTime().to(TimeUnit.MICROSECONDS)
+                        != dstAttributes.lastModifiedTime().to(TimeUnit.MICROSECONDS)) {
+                    compareContent(file, dstFile, srcAttributes.size());
+                }
+            }
+            // Adding file size to a global files size sum:
+            addProcessedSize(srcAttributes.size());
+        } catch (IOException exc) {
+            // Files which cannot be compared are planned to copy:
+            getLogger().log(Level.WARNING, "Planning file: %s, %s".formatted(file, dstFile), exc);
+            changePlan.add(ChangePlan.Action.UPDATE_FILE, toPlanPath(dstFile), 0);
+        } return FileVisitResult.CONTINUE;
+    }
+
+    private void compareContent(Path file, Path dstFile, long size) {
+        // Comparing files of the same size but different modification time in parallel:
+        try {
+            comparisonsInProgress.acquire();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        pendingComparisons.register();
+        try {
+            comparisonExecutor.execute(() -> {
+                try {
+                    if (!compareFiles(file, dstFile)) {
+                        changePlan.add(ChangePlan.Action.UPDATE_FILE, toPlanPath(dstFile), size);
+                    }
+                } finally {
+                    comparisonsInProgress.release();
+                    pendingComparisons.arriveAndDeregister();
+                }
+            });
+        } catch (RejectedExecutionException exc) {
+            // Executor has been shut down, planning is finishing:
+            comparisonsInProgress.release();
+            pendingComparisons.arriveAndDeregister();
+        }
+    }
+
+    @Override
+    public FileVisitResult removeFile(Path file) {
+        // Interrupt backup check:
+        if (isInterrupted()) { return FileVisitResult.TERMINATE; }
+        // Only recording additional file:
+        if (isAdditionalFile(file)) {
+            changePlan.add(ChangePlan.Action.DELETE_FILE, toPlanPath(file), 0);
+        } return FileVisitResult.CONTINUE;
+    }
+
+    @Override
+    public FileVisitResult removeDirectory(Path dir) {
+        // Only recording additional directory:
+        if (!Files.isDirectory(toSource(dir), LinkOption.NOFOLLOW_LINKS)) {
+            changePlan.add(ChangePlan.Action.DELETE_DIRECTORY, toPlanPath(dir), 0);
+        } return FileVisitResult.CONTINUE;
+    }
+
+    private String toPlanPath(Path dstEntry) {
+        // Paths in plan are relative to the backup directory in destination:
+        return resolvedDestinationPath.relativize(dstEntry).toString();
+    }
+}
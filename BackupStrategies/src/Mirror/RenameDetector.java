@@ -0,0 +1,222 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+public class RenameDetector {
+    public final static String historyFileName = "RenameHistory";
+    private final MirrorTask task;
+    private final Path historyFile;
+    // Relative paths of source entries by their file keys (device and inode), from the previous and this backup:
+    private final Map<String, String> previousPaths;
+    private final Map<String, String> currentPaths;
+    // Orphaned destination files by size and modification time, collected only when history cannot decide:
+    private Map<String, Deque<Path>> orphanedFiles;
+
+    public RenameDetector(MirrorTask mirrorTask, Path history) {
+        // Global variables:
+        task = mirrorTask;
+        historyFile = history;
+        currentPaths = new HashMap<>();
+        previousPaths = new HashMap<>();
+        try {
+            if (Files.isRegularFile(historyFile)) {
+                MirrorState.read(historyFile, inputStream -> {
+                    for (int i = inputStream.readInt(); i > 0; --i) {
+                        previousPaths.put(MirrorState.readString(inputStream), MirrorState.readString(inputStream));
+                    }
+                    return null;
+                });
+            }
+        } catch (IOException exc) {
+            // Only size and modification time are used without history:
+            previousPaths.clear();
+            task.backup.logger.log(Level.WARNING, "Loading rename history: %s".formatted(historyFile), exc);
+        }
+    }
+
+    public void detect(boolean isMatching) throws IOException { detect(task.sourcePath, Map.of(this, isMatching)); }
+
+    public static void detect(Path sourcePath, Map<RenameDetector, Boolean> detectors) throws IOException {
+        // Subtree excluded from the source of a destination:
+        Map<RenameDetector, Path> skippedSubtrees = new HashMap<>();
+        // Walking source once before copying, also for all destinations of a fan-out group:
+        Files.walkFileTree(sourcePath, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                boolean isNeeded = false;
+                for (Map.Entry<RenameDetector, Boolean> detector : detectors.entrySet()) {
+                    MirrorTask task = detector.getKey().task;
+                    // Sources nested deeper are reached through this directory:
+                    if (task.sourcePath.startsWith(dir) && !task.sourcePath.equals(dir)) {
+                        isNeeded = true;
+                        continue;
+                    }
+                    if (!isVisiting(detector.getKey(), dir)) { continue; }
+                    if (task.backup.isNotProceedSubtree(dir) || task.isExcludedSubtree(dir)) {
+                        skippedSubtrees.put(detector.getKey(), dir);
+                        continue;
+                    }
+                    if (detector.getKey().visitEntry(dir, attrs, detector.getValue()) == FileVisitResult.TERMINATE) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                    isNeeded = true;
+                } return isNeeded ? FileVisitResult.CONTINUE : FileVisitResult.SKIP_SUBTREE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                for (Map.Entry<RenameDetector, Boolean> detector : detectors.entrySet()) {
+                    if (!isVisiting(detector.getKey(), file)
+                            || detector.getKey().task.backup.isNotProceedFile(file)) { continue; }
+                    if (detector.getKey().visitEntry(file, attrs, detector.getValue()) == FileVisitResult.TERMINATE) {
+                        return FileVisitResult.TERMINATE;
+                    }
+                } return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                // Leaving skipped subtrees:
+                skippedSubtrees.values().removeIf(dir::equals);
+                return FileVisitResult.CONTINUE;
+            }
+
+            // Errors are reported by the copying walk:
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) { return FileVisitResult.CONTINUE; }
+
+            private boolean isVisiting(RenameDetector detector, Path srcEntry) {
+                // Entries of the source of the destination which aren't in its skipped subtree:
+                Path skippedSubtree = skippedSubtrees.get(detector);
+                return srcEntry.startsWith(detector.task.sourcePath)
+                        && (skippedSubtree == null || !srcEntry.startsWith(skippedSubtree));
+            }
+        });
+    }
+
+    private FileVisitResult visitEntry(Path srcEntry, BasicFileAttributes attributes, boolean isMatching) {
+        // Interrupt backup check:
+        if (task.isInterrupted()) { return FileVisitResult.TERMINATE; }
+        // Remembering identity of the entry for the next backup:
+        if (attributes.fileKey() != null) {
+            currentPaths.put(attributes.fileKey().toString(), task.sourcePath.relativize(srcEntry).toString());
+        }
+        Path dstEntry = task.toDestination(srcEntry);
+        if (!isMatching || Files.exists(dstEntry, LinkOption.NOFOLLOW_LINKS)) { return FileVisitResult.CONTINUE; }
+        // Looking for the entry at its previous place, then among orphaned files of the same size and time:
+        Path orphanedEntry = findByHistory(attributes);
+        if (orphanedEntry == null && attributes.isRegularFile() && attributes.size() > 0) {
+            orphanedEntry = findBySizeAndTime(srcEntry, attributes);
+        }
+        if (orphanedEntry != null) { move(orphanedEntry, dstEntry); }
+        return FileVisitResult.CONTINUE;
+    }
+
+    private Path findByHistory(BasicFileAttributes attributes) {
+        if (attributes.fileKey() == null) { return null; }
+        String previousPath = previousPaths.get(attributes.fileKey().toString());
+        if (previousPath == null) { return null; }
+        Path previousEntry = task.resolvedDestinationPath.resolve(previousPath);
+        // Entry must still be an orphan of the same type:
+        if (previousEntry.equals(task.resolvedDestinationPath) || !isOrphaned(previousEntry)
+                || attributes.isDirectory() != Files.isDirectory(previousEntry, LinkOption.NOFOLLOW_LINKS)) {
+            return null;
+        } return previousEntry;
+    }
+
+    private Path findBySizeAndTime(Path srcFile, BasicFileAttributes attributes) {
+        if (orphanedFiles == null) { collectOrphanedFiles(); }
+        Deque<Path> candidates = orphanedFiles.get(getFileSignature(attributes));
+        if (candidates == null) { return null; }
+        // Taking the first candidate which hasn't been moved yet and has the same content:
+        Iterator<Path> candidatesIterator = candidates.iterator();
+        while (candidatesIterator.hasNext()) {
+            Path candidate = candidatesIterator.next();
+            if (!isOrphaned(candidate)) {
+                candidatesIterator.remove();
+                continue;
+            }
+            // Different files may share size and time, comparators of metadata would never copy a wrong move:
+            boolean isSameContent = task.backup.compareContent(srcFile, candidate, task.srcDevice::read,
+                    task.dstDevice::read);
+            // Stopped comparison doesn't decide:
+            if (task.isInterrupted()) { return null; }
+            if (isSameContent) {
+                candidatesIterator.remove();
+                return candidate;
+            }
+        } return null;
+    }
+
+    private void collectOrphanedFiles() {
+        // Walking destination once, for all files without history:
+        orphanedFiles = new HashMap<>();
+        try {
+            Files.walkFileTree(task.resolvedDestinationPath, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && attrs.size() > 0 && isOrphaned(file)) {
+                        orphanedFiles.computeIfAbsent(getFileSignature(attrs), _ -> new ArrayDeque<>()).add(file);
+                    } return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) { return FileVisitResult.CONTINUE; }
+            });
+        } catch (IOException exc) {
+            task.backup.logger.log(Level.WARNING, "Looking for moved files in: %s".formatted(
+                    task.resolvedDestinationPath), exc);
+        }
+    }
+
+    private boolean isOrphaned(Path dstEntry) {
+        // Destination entry whose source entry doesn't exist anymore:
+        return Files.exists(dstEntry, LinkOption.NOFOLLOW_LINKS)
+                && Files.notExists(task.toSource(dstEntry), LinkOption.NOFOLLOW_LINKS);
+    }
+
+    private static String getFileSignature(BasicFileAttributes attributes) {
+        // Copied files keep modification time only with microseconds:
+        return attributes.size() + ":" + attributes.lastModifiedTime().to(TimeUnit.MICROSECONDS);
+    }
+
+    private void move(Path orphanedEntry, Path dstEntry) {
+        // Directory cannot be moved into itself:
+        if (dstEntry.startsWith(orphanedEntry)) { return; }
+        try {
+            // Moving within destination instead of copying again and removing the old entry:
+            Files.createDirectories(dstEntry.getParent());
+            task.dstDevice.operation();
+            Files.move(orphanedEntry, dstEntry);
+            if (task.groupCommitWriter != null) {
+                task.groupCommitWriter.registerDirectory(orphanedEntry.getParent());
+                task.groupCommitWriter.registerDirectory(dstEntry.getParent());
+            }
+            task.statistics.increment(StatisticsEnum.MOVED_ENTRIES);
+            task.setConsole("moveEntry", orphanedEntry, dstEntry);
+        } catch (IOException exc) {
+            // Entry is copied by the copying walk:
+            task.backup.logger.log(Level.WARNING, "Moving %s to %s".formatted(orphanedEntry, dstEntry), exc);
+        }
+    }
+
+    public void saveHistory() {
+        try {
+            // Storing identities of this backup's source entries:
+            MirrorState.write(historyFile, outputStream -> {
+                outputStream.writeInt(currentPaths.size());
+                for (Map.Entry<String, String> entry : currentPaths.entrySet()) {
+                    MirrorState.writeString(outputStream, entry.getKey());
+                    MirrorState.writeString(outputStream, entry.getValue());
+                }
+            });
+        } catch (IOException exc) {
+            task.backup.logger.log(Level.WARNING, "Storing rename history: %s".formatted(historyFile), exc);
+        }
+    }
+}
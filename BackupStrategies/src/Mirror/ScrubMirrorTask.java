@@ -0,0 +1,162 @@
+package Mirror;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+
+public class ScrubMirrorTask extends MirrorTask {
+    public final static String cursorFileName = "ScrubCursor";
+    // Cursor is stored regularly, so a crash doesn't lose much of the pass:
+    private final static long cursorSaveTime = TimeUnit.SECONDS.toMillis(30);
+    private final MirrorBackupScrub scrubBackup;
+    private List<String> cursor;
+    private long lastSaveTime;
+
+    public ScrubMirrorTask(MirrorBackupScrub mirrorBackupScrub, Path srcPath, Path dstPath,
+                           BiFunction<Path, Path, Boolean> comparison) {
+        super(mirrorBackupScrub, srcPath, dstPath, comparison);
+        scrubBackup = mirrorBackupScrub;
+    }
+
+    public static List<String> readCursor(Path srcPath, Path dstPath) throws IOException {
+        // Names of the last scrubbed file, no cursor means a new pass:
+        Path cursorFile = MirrorState.getPairFile(srcPath, dstPath, cursorFileName);
+        if (!Files.exists(cursorFile)) { return null; }
+        return MirrorState.read(cursorFile, inputStream -> {
+            List<String> names = new ArrayList<>();
+            for (int i = inputStream.readInt(); i > 0; --i) { names.add(MirrorState.readString(inputStream)); }
+            return names;
+        });
+    }
+
+    @Override
+    public Statistics run() {
+        boolean isPassFinished = false;
+        try {
+            // Skipping path if it doesn't meet requirements:
+            if (backup.isNotProceedSubtree(sourcePath)) { return statistics; }
+            checksumManifest = new ChecksumManifest(MirrorState.getPairFile(sourcePath, destinationPath,
+                    ChecksumManifest.manifestFileName));
+            cursor = readCursor(sourcePath, destinationPath);
+            lastSaveTime = System.currentTimeMillis();
+            // Scrubbing files from the cursor until the pass, the session or the backup ends:
+            isPassFinished = scrubBackup.walkFrom(resolvedDestinationPath, cursor, this::scrubFile);
+        } catch (InterruptedIOException exc) {
+            // Stopped in the middle of a file, which is scrubbed again in the next session:
+            backup.logger.log(Level.FINE, "Scrub stopped: %s, %s".formatted(sourcePath, destinationPath), exc);
+        } catch (IOException exc) {
+            // Any scrub error catch:
+            reportFailure(exc);
+        } finally {
+            // Committing repaired files of durable copy and storing the place where the next session continues:
+            commit();
+            saveState(isPassFinished);
+            if (!isPassFinished && cursor != null) {
+                setConsole("scrubSessionStopped", resolvedDestinationPath, String.join("/", cursor));
+            }
+        } return statistics;
+    }
+
+    private boolean scrubFile(Path dstFile, BasicFileAttributes dstAttributes) throws IOException {
+        // Ending at the file boundary, when backup is stopped or the session is over:
+        if (isInterrupted() || scrubBackup.isSessionOver()) { return false; }
+        String relativePath = resolvedDestinationPath.relativize(dstFile).toString();
+        Path srcFile = toSource(dstFile);
+        try {
+            ChecksumManifest.Entry entry = checksumManifest.get(relativePath);
+            if (entry != null && entry.size() == dstAttributes.size()
+                    && entry.modificationTime() == ChecksumManifest.getModificationTime(dstAttributes)) {
+                // Comparing with the stored checksum, source isn't needed:
+                if (readChecksum(dstFile, dstDevice) == entry.checksum()) { markVerified(); }
+                else { repair(srcFile, dstFile, entry); }
+            } else if (isSameAttributes(srcFile, dstAttributes)) {
+                // Without a checksum, copy is compared with the source, which looks unchanged:
+                long checksum = readChecksum(dstFile, dstDevice);
+                if (readChecksum(srcFile, srcDevice) == checksum) {
+                    checksumManifest.put(relativePath, new ChecksumManifest.Entry(dstAttributes.size(),
+                            ChecksumManifest.getModificationTime(dstAttributes), checksum));
+                    markVerified();
+                } else { repair(srcFile, dstFile, null); }
+            }
+            // Other files have changed since the last backup, which copies them again:
+        } catch (InterruptedIOException exc) {
+            throw exc;
+        } catch (IOException exc) {
+            // Sending proper communicate if error:
+            backup.logger.log(Level.SEVERE, "Scrubbing file: %s".formatted(dstFile), exc);
+            statistics.increment(StatisticsEnum.NOT_VISITED_FILES);
+            setConsole("errorScrubFile", dstFile);
+        }
+        addProcessedSize(dstAttributes.size());
+        // Moving the cursor behind the scrubbed file:
+        cursor = new ArrayList<>();
+        resolvedDestinationPath.relativize(dstFile).forEach(name -> cursor.add(name.toString()));
+        if (System.currentTimeMillis() - lastSaveTime >= cursorSaveTime) { saveState(false); }
+        return true;
+    }
+
+    private void repair(Path srcFile, Path dstFile, ChecksumManifest.Entry entry) throws IOException {
+        statistics.increment(StatisticsEnum.NOT_VERIFIED_FILES);
+        setConsole("scrubMismatch", dstFile);
+        if (!scrubBackup.isScrubRepair()) { return; }
+        // Source is copied only if it still has the content which was backed up:
+        if (entry != null && !(isSameAttributes(srcFile, entry.size(), entry.modificationTime())
+                && readChecksum(srcFile, srcDevice) == entry.checksum())) {
+            setConsole("scrubCannotRepair", dstFile, srcFile);
+            return;
+        }
+        copyFile(srcFile, dstFile);
+    }
+
+    private long readChecksum(Path file, IOThrottle.Device device) throws IOException {
+        // Reading within the scrub rate and limits of the device:
+        return ContentChecksum.read(file, bytes -> {
+            scrubBackup.scrubRead(bytes);
+            device.read(bytes);
+        }, backup::isInterrupted);
+    }
+
+    private void markVerified() { statistics.increment(StatisticsEnum.VERIFIED_FILES); }
+
+    private static boolean isSameAttributes(Path srcFile, BasicFileAttributes dstAttributes) throws IOException {
+        return isSameAttributes(srcFile, dstAttributes.size(),
+                ChecksumManifest.getModificationTime(dstAttributes));
+    }
+
+    private static boolean isSameAttributes(Path srcFile, long size, long modificationTime) throws IOException {
+        // Missing or changed source cannot confirm content of the copy:
+        if (!Files.isRegularFile(srcFile, LinkOption.NOFOLLOW_LINKS)) { return false; }
+        BasicFileAttributes srcAttributes = Files.readAttributes(srcFile, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        return srcAttributes.size() == size
+                && ChecksumManifest.getModificationTime(srcAttributes) == modificationTime;
+    }
+
+    private void saveState(boolean isPassFinished) {
+        lastSaveTime = System.currentTimeMillis();
+        try {
+            if (checksumManifest != null) { checksumManifest.save(); }
+            Path cursorFile = MirrorState.getPairFile(sourcePath, destinationPath, cursorFileName);
+            if (isPassFinished) {
+                // Next scrub starts a new pass:
+                Files.deleteIfExists(cursorFile);
+                setConsole("scrubPassFinished", resolvedDestinationPath);
+            } else if (cursor != null) {
+                List<String> names = cursor;
+                MirrorState.write(cursorFile, outputStream -> {
+                    outputStream.writeInt(names.size());
+                    for (String name : names) { MirrorState.writeString(outputStream, name); }
+                });
+            }
+        } catch (IOException exc) {
+            backup.logger.log(Level.WARNING, "Storing scrub state of: %s, %s".formatted(
+                    sourcePath, destinationPath), exc);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package Mirror;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+public class SnapshotMirrorTask extends MirrorTask {
+    public final static DateTimeFormatter snapshotFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+    protected final static Pattern snapshotPattern = Pattern.compile("\\d{4}-\\d{2}-\\d{2}_\\d{2}-\\d{2}-\\d{2}");
+    protected final static String partialSnapshotSuffix = ".partial";
+    private final Path snapshotPath;
+    private final Path previousSnapshotPath;
+
+    public SnapshotMirrorTask(MirrorBackup mirrorBackup, Path srcPath, Path dstPath,
+                              BiFunction<Path, Path, Boolean> comparison) {
+        // Snapshot is written to partial directory, renamed when the whole tree has been processed:
+        this(mirrorBackup, srcPath, dstPath, dstPath.resolve(srcPath.getFileName()), comparison,
+                LocalDateTime.now().format(snapshotFormatter));
+    }
+
+    private SnapshotMirrorTask(MirrorBackup mirrorBackup, Path srcPath, Path dstPath, Path snapshotsPath,
+                               BiFunction<Path, Path, Boolean> comparison, String snapshotName) {
+        super(mirrorBackup, srcPath, dstPath, snapshotsPath.resolve(snapshotName + partialSnapshotSuffix),
+                comparison);
+        // Global variables:
+        snapshotPath = snapshotsPath.resolve(snapshotName);
+        previousSnapshotPath = findLastSnapshot(snapshotsPath).orElse(null);
+    }
+
+    public static Optional<Path> findLastSnapshot(Path snapshotsPath) {
+        // The newest complete snapshot has the greatest name:
+        if (!Files.isDirectory(snapshotsPath, LinkOption.NOFOLLOW_LINKS)) { return Optional.empty(); }
+        try (Stream<Path> snapshots = Files.list(snapshotsPath)) {
+            return snapshots.filter(path -> snapshotPattern.matcher(path.getFileName().toString()).matches()
+                    && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)).max(Path::compareTo);
+        } catch (IOException exc) { return Optional.empty(); }
+    }
+
+    @Override
+    public Statistics run() {
+        try {
+            // Skipping path if it doesn't meet requirements:
+            if (backup.isNotProceedSubtree(sourcePath)) { return statistics; }
+            // Snapshot with the same name already exists (more than one backup in a second):
+            if (Files.exists(snapshotPath, LinkOption.NOFOLLOW_LINKS)) {
+                throw new FileAlreadyExistsException(snapshotPath.toString());
+            }
+            // Creating directory of the new snapshot:
+            Files.createDirectories(resolvedDestinationPath);
+            // Checksums of verified copies of the previous snapshots:
+            checksumManifest = createChecksumManifest();
+            if (previousSnapshotPath != null) {
+                backup.setConsole(backup.resourceBundle.getString("previousSnapshot").formatted(
+                        previousSnapshotPath));
+            }
+            // Copying changed and linking unchanged files, snapshot never contains additional files:
+            Files.walkFileTree(sourcePath, fileCopyVisitor);
+            commit();
+            // Storing checksums, also of a stopped backup:
+            saveChecksumManifest();
+            // Publishing the snapshot if it is complete:
+            if (!backup.isInterrupted()) {
+                Files.move(resolvedDestinationPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE);
+                backup.setConsole(backup.resourceBundle.getString("snapshotCreated").formatted(snapshotPath));
+            }
+        } catch (IOException exc) {
+            // Any backup error catch:
+            reportFailure(exc);
+        } finally {
+            commit();
+        } return statistics;
+    }
+
+    @Override
+    public FileVisitResult mirrorFile(Path file) {
+        // Interrupt backup check:
+        if (backup.isInterrupted()) { return FileVisitResult.TERMINATE; }
+        Path dstFile = toDestination(file);
+        long startTime = backup.getActiveTime();
+        // Linking file of the previous snapshot if it hasn't changed, otherwise copying it:
+        if (!linkPreviousFile(file, dstFile)) { copyFile(file, dstFile); }
+        try {
+            long size = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).size();
+            // Measuring comparison and copy for concurrency of devices:
+            backup.recordOperation(sourcePath, destinationPath, size,
+                    backup.getActiveTime() - startTime);
+            // Adding path size to a global files size sum:
+            addProcessedSize(size);
+        } catch (IOException exc) {
+            // Only logging error:
+            backup.logger.log(Level.WARNING, "Getting file size: %s".formatted(file), exc);
+        } return FileVisitResult.CONTINUE;
+    }
+
+    private boolean linkPreviousFile(Path file, Path dstFile) {
+        if (previousSnapshotPath == null) { return false; }
+        // Symbolic links are always copied, because hard links to them are not portable:
+        if (Files.isSymbolicLink(file)) { return false; }
+        Path previousFile = previousSnapshotPath.resolve(sourcePath.relativize(file));
+        // Comparing with file of the previous snapshot:
+        if (!(backup.isSameFileType(file, previousFile) && compareFiles(file, previousFile))) {
+            return false;
+        }
+        try {
+            Files.createLink(dstFile, previousFile);
+            if (groupCommitWriter != null) { groupCommitWriter.registerDirectory(dstFile.getParent()); }
+            statistics.increment(StatisticsEnum.LINKED_FILES);
+            return true;
+        } catch (IOException | UnsupportedOperationException exc) {
+            // Falling back to copy, e.g. when link count limit has been reached:
+            backup.logger.log(Level.WARNING, "Linking file %s to %s".formatted(dstFile, previousFile), exc);
+            return false;
+        }
+    }
+
+    // Getters:
+    public Path getSnapshotPath() { return snapshotPath; }
+    public Optional<Path> getPreviousSnapshotPath() { return Optional.ofNullable(previousSnapshotPath); }
+}
@@ -0,0 +1,131 @@
+package Mirror;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.function.BooleanSupplier;
+
+public class SparseFileCopier {
+    // Smaller files are copied by the platform, which may use kernel copy:
+    public final static long sparseCopyThreshold = 1024 * 1024;
+    // Zero runs shorter than a file system block cannot become holes:
+    private final static int holeGranularity = 4096;
+    private final static int bufferSize = 1024 * 1024;
+    private final static ByteBuffer zeros = ByteBuffer.allocate(holeGranularity).asReadOnlyBuffer();
+
+    // Bytes of file content (logical) and bytes really written to the destination (physical):
+    public record CopyResult(long logicalBytes, long physicalBytes) { }
+
+    private SparseFileCopier() { }
+
+    public static CopyResult copy(Path srcFile, Path dstFile, IOThrottle.Device srcDevice,
+                                  IOThrottle.Device dstDevice, BooleanSupplier isInterrupted) throws IOException {
+        return copy(srcFile, dstFile, srcDevice, dstDevice, isInterrupted, null);
+    }
+
+    public static CopyResult copy(Path srcFile, Path dstFile, IOThrottle.Device srcDevice,
+                                  IOThrottle.Device dstDevice, BooleanSupplier isInterrupted,
+                                  ContentChecksum checksum) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(srcFile, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        // Content which is summed has to pass through the buffer, even if the file is small:
+        if (!attributes.isRegularFile() || (attributes.size() < sparseCopyThreshold && checksum == null)) {
+            // Limits are applied before the platform copy, which cannot be divided:
+            srcDevice.read(attributes.size());
+            dstDevice.write(attributes.size());
+            Files.copy(srcFile, dstFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES,
+                    LinkOption.NOFOLLOW_LINKS);
+            return new CopyResult(attributes.size(), attributes.size());
+        }
+        // Removing the old target, so skipped ranges become holes instead of keeping old content:
+        Files.deleteIfExists(dstFile);
+        long logicalBytes = 0, physicalBytes = 0;
+        // Sparse option marks the new file as sparse on file systems which need it (e.g. NTFS):
+        try (FileChannel srcChannel = FileChannel.open(srcFile, StandardOpenOption.READ);
+             FileChannel dstChannel = FileChannel.open(dstFile, StandardOpenOption.CREATE_NEW,
+                     StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+            byte[] data = buffer.array();
+            while (true) {
+                // Every part is a safe point for stopping and pausing a long copy:
+                if (isInterrupted.getAsBoolean()) { throw new InterruptedIOException("Backup interrupted!"); }
+                // Filling the buffer:
+                buffer.clear();
+                srcDevice.read(buffer.capacity());
+                while (buffer.hasRemaining()) {
+                    if (srcChannel.read(buffer, logicalBytes + buffer.position()) < 0) { break; }
+                }
+                int length = buffer.position();
+                if (length == 0) { break; }
+                // Summing content while it is streamed to the destination:
+                if (checksum != null) { checksum.update(logicalBytes, data, 0, length); }
+                buffer.flip();
+                physicalBytes += writeDataRuns(dstChannel, buffer, logicalBytes, dstDevice);
+                logicalBytes += length;
+                if (length < data.length) { break; }
+            }
+            // Keeping logical size, also when the file ends with a hole (channels cannot extend files):
+            if (dstChannel.size() < logicalBytes) { extend(dstFile, logicalBytes); }
+        } catch (InterruptedIOException exc) {
+            // Not leaving a truncated copy of stopped backup:
+            Files.deleteIfExists(dstFile);
+            throw exc;
+        }
+        copyAttributes(srcFile, dstFile, attributes);
+        return new CopyResult(logicalBytes, physicalBytes);
+    }
+
+    static void extend(Path file, long size) throws IOException {
+        // Extending doesn't allocate, so the end of the file stays a hole:
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file.toFile(), "rw")) {
+            randomAccessFile.setLength(size);
+        }
+    }
+
+    static long writeDataRuns(FileChannel channel, ByteBuffer data, long offset, IOThrottle.Device dstDevice)
+            throws IOException {
+        // Writing only runs of granules which contain data, zero granules are skipped over and become holes:
+        long physicalBytes = 0;
+        int start = data.position(), length = data.limit() - start, runStart = -1;
+        for (int granuleStart = 0; granuleStart < length; granuleStart += holeGranularity) {
+            int granuleLength = Math.min(holeGranularity, length - granuleStart);
+            boolean isZero = data.slice(start + granuleStart, granuleLength).mismatch(
+                    zeros.slice(0, granuleLength)) == -1;
+            if (!isZero && runStart < 0) { runStart = granuleStart; }
+            else if (isZero && runStart >= 0) {
+                physicalBytes += writeRange(channel, data, start, runStart, granuleStart, offset, dstDevice);
+                runStart = -1;
+            }
+        }
+        if (runStart >= 0) {
+            physicalBytes += writeRange(channel, data, start, runStart, length, offset, dstDevice);
+        } return physicalBytes;
+    }
+
+    private static int writeRange(FileChannel channel, ByteBuffer data, int dataStart, int start, int end,
+                                  long offset, IOThrottle.Device dstDevice) throws IOException {
+        dstDevice.write(end - start);
+        ByteBuffer range = data.slice(dataStart + start, end - start);
+        while (range.hasRemaining()) { channel.write(range, offset + start + range.position()); }
+        return end - start;
+    }
+
+    static void copyAttributes(Path srcFile, Path dstFile, BasicFileAttributes attributes)
+            throws IOException {
+        // Copying the same attributes as Files.copy() with COPY_ATTRIBUTES:
+        PosixFileAttributeView srcPosixView = Files.getFileAttributeView(srcFile, PosixFileAttributeView.class,
+                LinkOption.NOFOLLOW_LINKS);
+        PosixFileAttributeView dstPosixView = Files.getFileAttributeView(dstFile, PosixFileAttributeView.class);
+        if (srcPosixView != null && dstPosixView != null) {
+            dstPosixView.setPermissions(srcPosixView.readAttributes().permissions());
+        }
+        Files.getFileAttributeView(dstFile, BasicFileAttributeView.class).setTimes(attributes.lastModifiedTime(),
+                attributes.lastAccessTime(), attributes.creationTime());
+    }
+}
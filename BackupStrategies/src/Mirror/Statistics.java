@@ -13,11 +13,18 @@ public class Statistics {
         resourceBundle = ResourceBundle.getBundle("MirrorBundles.Statistics");
     }
 
-    public void increment(StatisticsEnum type) {
-        // Incrementing specified statistic:
+    public synchronized void increment(StatisticsEnum type) {
+        // Incrementing specified statistic (tasks may update it from many threads):
         ++stats[type.ordinal()];
     }
 
+    public synchronized void add(StatisticsEnum type, long value) {
+        // Adding value to specified statistic:
+        stats[type.ordinal()] += value;
+    }
+
+    public synchronized long get(StatisticsEnum type) { return stats[type.ordinal()]; }
+
     public static Statistics merge(Statistics statistics1, Statistics statistics2) {
         // If statistics are not present, creating empty statistics:
         if (statistics1 == null) { statistics1 = new Statistics(); }
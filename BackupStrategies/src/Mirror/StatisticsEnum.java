@@ -2,6 +2,11 @@ package Mirror;
 
 public enum StatisticsEnum {
     COPIED_FILES("copiedFiles", false), NOT_COPIED_FILE("notCopiedFiles", true),
+    LINKED_FILES("linkedFiles", false),
+    LOGICAL_BYTES("logicalBytes", false), PHYSICAL_BYTES("physicalBytes", false),
+    STORED_CHUNKS("storedChunks", false), REUSED_CHUNKS("reusedChunks", false),
+    MOVED_ENTRIES("movedEntries", false),
+    VERIFIED_FILES("verifiedFiles", false), NOT_VERIFIED_FILES("notVerifiedFiles", true),
     CREATED_DIRS("createdDirs", false),
     NOT_CREATED_DIRECTORIES("notCreatedDirectories", true),
     REMOVED_FILES("removedFiles", false),
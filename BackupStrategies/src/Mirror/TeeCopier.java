@@ -0,0 +1,268 @@
+package Mirror;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+public class TeeCopier {
+    private final static int chunkSize = 1024 * 1024;
+    // Chunks waiting for one destination, which bound memory and the lead of faster destinations:
+    private final static int maximumQueuedChunks = 16;
+    // Time the reader waits for a full destination, then the destination reads the rest of the file on its own:
+    private final static long detachTime = TimeUnit.SECONDS.toMillis(2);
+    private final static long pollTime = 100;
+    private final static ByteBuffer endOfFile = ByteBuffer.allocate(0);
+    private final ExecutorService writersExecutor;
+
+    // Copied bytes of one destination, or the error which has left it out:
+    public record TargetResult(SparseFileCopier.CopyResult copyResult, IOException error) { }
+
+    // Destination of a file and its queue of chunks read from the source:
+    private static class Target {
+        private final Path file;
+        // New sibling written instead of the target, which replaces it when the whole file has been copied:
+        private final Path tmpFile;
+        private final IOThrottle.Device device;
+        private final BlockingQueue<ByteBuffer> chunks;
+        private volatile boolean isDetached;
+        private Future<?> writer;
+        // Written only by the writer, read after it has finished:
+        private long logicalBytes;
+        private long physicalBytes;
+
+        private Target(Path dstFile, IOThrottle.Device dstDevice) {
+            // Global variables:
+            file = dstFile;
+            tmpFile = GroupCommitWriter.getTemporaryFile(dstFile);
+            device = dstDevice;
+            chunks = new ArrayBlockingQueue<>(maximumQueuedChunks);
+        }
+    }
+
+    public TeeCopier() {
+        // Writers of all destinations of all files being copied:
+        writersExecutor = Executors.newCachedThreadPool();
+    }
+
+    public boolean[] findDifferent(Path srcFile, List<Path> dstFiles, IOThrottle.Device srcDevice,
+                                   List<IOThrottle.Device> dstDevices, BooleanSupplier isInterrupted)
+            throws IOException {
+        // Files which are missing, of other type or size differ without reading:
+        long size = Files.size(srcFile);
+        boolean[] isDifferent = new boolean[dstFiles.size()];
+        FileChannel[] dstChannels = new FileChannel[dstFiles.size()];
+        try (FileChannel srcChannel = FileChannel.open(srcFile, StandardOpenOption.READ)) {
+            int comparedFiles = 0;
+            for (int i = 0; i < dstFiles.size(); ++i) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(dstFiles.get(i), BasicFileAttributes.class,
+                            LinkOption.NOFOLLOW_LINKS);
+                    isDifferent[i] = !attributes.isRegularFile() || attributes.size() != size;
+                    if (!isDifferent[i]) {
+                        dstChannels[i] = FileChannel.open(dstFiles.get(i), StandardOpenOption.READ);
+                        ++comparedFiles;
+                    }
+                } catch (IOException exc) { isDifferent[i] = true; }
+            }
+            // Reading source once, every part is compared with all destinations which are still equal:
+            ByteBuffer srcBuffer = ByteBuffer.allocate(chunkSize), dstBuffer = ByteBuffer.allocate(chunkSize);
+            while (comparedFiles > 0) {
+                if (isInterrupted.getAsBoolean()) { throw new InterruptedIOException("Backup interrupted!"); }
+                srcDevice.read(chunkSize);
+                int length = readFully(srcChannel, srcBuffer.clear());
+                srcBuffer.flip();
+                for (int i = 0; i < dstChannels.length; ++i) {
+                    if (dstChannels[i] == null) { continue; }
+                    boolean isEqual;
+                    try {
+                        dstDevices.get(i).read(length);
+                        isEqual = readFully(dstChannels[i], dstBuffer.clear().limit(length)) == length
+                                && srcBuffer.equals(dstBuffer.flip());
+                    } catch (IOException exc) { isEqual = false; }
+                    if (!isEqual || length < chunkSize) {
+                        isDifferent[i] = !isEqual;
+                        dstChannels[i].close();
+                        dstChannels[i] = null;
+                        --comparedFiles;
+                    }
+                }
+            }
+        } finally {
+            for (FileChannel channel : dstChannels) { if (channel != null) { channel.close(); } }
+        } return isDifferent;
+    }
+
+    public TargetResult[] copy(Path srcFile, List<Path> dstFiles, IOThrottle.Device srcDevice,
+                               List<IOThrottle.Device> dstDevices, BooleanSupplier isInterrupted,
+                               ContentChecksum checksum) throws IOException {
+        IOException[] errors = new IOException[dstFiles.size()];
+        AtomicBoolean isCancelled = new AtomicBoolean();
+        List<Target> targets = new ArrayList<>();
+        BasicFileAttributes attributes = Files.readAttributes(srcFile, BasicFileAttributes.class,
+                LinkOption.NOFOLLOW_LINKS);
+        for (int i = 0; i < dstFiles.size(); ++i) {
+            Target target = new Target(dstFiles.get(i), dstDevices.get(i));
+            targets.add(target);
+            try {
+                // Entry of other type is removed as by a copy of one destination, a non-empty directory fails it:
+                if (Files.exists(target.file, LinkOption.NOFOLLOW_LINKS)
+                        && !Files.isRegularFile(target.file, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.delete(target.file);
+                }
+                // Sibling left by an interrupted backup is replaced:
+                Files.deleteIfExists(target.tmpFile);
+                target.writer = writersExecutor.submit(() -> {
+                    write(target, srcFile, srcDevice, isInterrupted, isCancelled);
+                    return null;
+                });
+            } catch (IOException exc) { errors[i] = exc; }
+        }
+        try (FileChannel srcChannel = FileChannel.open(srcFile, StandardOpenOption.READ)) {
+            for (long position = 0; ; position += chunkSize) {
+                // Every part is a safe point for stopping and pausing:
+                if (isInterrupted.getAsBoolean()) { throw new InterruptedIOException("Backup interrupted!"); }
+                ByteBuffer chunk = ByteBuffer.allocate(chunkSize);
+                srcDevice.read(chunkSize);
+                int length = readFully(srcChannel, chunk);
+                chunk.flip();
+                // Content is summed once, for all destinations:
+                if (checksum != null) { checksum.update(position, chunk); }
+                // Sharing the chunk, destination which stays full is detached and reads the rest itself:
+                for (Target target : targets) { offer(target, chunk.asReadOnlyBuffer()); }
+                if (length < chunkSize) { break; }
+            }
+            for (Target target : targets) { offer(target, endOfFile); }
+        } catch (IOException exc) {
+            // Stopping all writers, source cannot be read:
+            isCancelled.set(true);
+            awaitWriters(targets, errors);
+            deletePartialFiles(targets, errors);
+            throw exc;
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            isCancelled.set(true);
+            awaitWriters(targets, errors);
+            deletePartialFiles(targets, errors);
+            throw new InterruptedIOException();
+        }
+        awaitWriters(targets, errors);
+        TargetResult[] results = new TargetResult[targets.size()];
+        for (int i = 0; i < targets.size(); ++i) {
+            Target target = targets.get(i);
+            try {
+                // Old target is replaced at once, hard links of snapshots keep their content:
+                if (errors[i] == null) {
+                    SparseFileCopier.copyAttributes(srcFile, target.tmpFile, attributes);
+                    Files.move(target.tmpFile, target.file, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException exc) { errors[i] = exc; }
+            if (errors[i] != null) { deletePartialFile(target, errors, i); }
+            results[i] = new TargetResult(errors[i] == null ? new SparseFileCopier.CopyResult(target.logicalBytes,
+                    target.physicalBytes) : null, errors[i]);
+        } return results;
+    }
+
+    private static void offer(Target target, ByteBuffer chunk) throws InterruptedException {
+        // Failed and detached destinations don't get chunks anymore:
+        if (target.writer == null || target.writer.isDone() || target.isDetached) { return; }
+        if (!target.chunks.offer(chunk, detachTime, TimeUnit.MILLISECONDS)) { target.isDetached = true; }
+    }
+
+    private static void write(Target target, Path srcFile, IOThrottle.Device srcDevice, BooleanSupplier isInterrupted,
+                              AtomicBoolean isCancelled) throws IOException, InterruptedException {
+        // Sparse option marks the new file as sparse on file systems which need it (e.g. NTFS):
+        try (FileChannel dstChannel = FileChannel.open(target.tmpFile, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE, StandardOpenOption.SPARSE)) {
+            while (true) {
+                if (isCancelled.get()) { throw new InterruptedIOException("Copy cancelled!"); }
+                ByteBuffer chunk = target.chunks.poll(pollTime, TimeUnit.MILLISECONDS);
+                if (chunk == null) {
+                    // Queue is drained after detaching, continuing from the last written byte:
+                    if (target.isDetached) {
+                        copyRest(srcFile, dstChannel, target, srcDevice, isInterrupted);
+                        break;
+                    } continue;
+                }
+                if (chunk == endOfFile) { break; }
+                // Zero granules are skipped over and become holes, as by a sparse copy of one destination:
+                int length = chunk.remaining();
+                target.physicalBytes += SparseFileCopier.writeDataRuns(dstChannel, chunk, target.logicalBytes,
+                        target.device);
+                target.logicalBytes += length;
+            }
+            // Keeping logical size, also when the file ends with a hole:
+            if (dstChannel.size() < target.logicalBytes) {
+                SparseFileCopier.extend(target.tmpFile, target.logicalBytes);
+            }
+        }
+    }
+
+    private static void copyRest(Path srcFile, FileChannel dstChannel, Target target, IOThrottle.Device srcDevice,
+                                 BooleanSupplier isInterrupted) throws IOException {
+        // Reading the source on its own, faster destinations aren't waiting for this one:
+        try (FileChannel srcChannel = FileChannel.open(srcFile, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+            srcChannel.position(target.logicalBytes);
+            while (true) {
+                if (isInterrupted.getAsBoolean()) { throw new InterruptedIOException("Backup interrupted!"); }
+                srcDevice.read(chunkSize);
+                int length = readFully(srcChannel, buffer.clear());
+                buffer.flip();
+                target.physicalBytes += SparseFileCopier.writeDataRuns(dstChannel, buffer, target.logicalBytes,
+                        target.device);
+                target.logicalBytes += length;
+                if (length < chunkSize) { return; }
+            }
+        }
+    }
+
+    private static void awaitWriters(List<Target> targets, IOException[] errors) {
+        for (int i = 0; i < targets.size(); ++i) {
+            Future<?> writer = targets.get(i).writer;
+            if (writer == null) { continue; }
+            try {
+                writer.get();
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                errors[i] = new InterruptedIOException();
+            } catch (ExecutionException exc) {
+                errors[i] = exc.getCause() instanceof IOException ioException ? ioException
+                        : new IOException(exc.getCause());
+            }
+        }
+    }
+
+    private static void deletePartialFiles(List<Target> targets, IOException[] errors) {
+        // Not leaving truncated copies, targets themselves are untouched:
+        for (int i = 0; i < targets.size(); ++i) { deletePartialFile(targets.get(i), errors, i); }
+    }
+
+    private static void deletePartialFile(Target target, IOException[] errors, int index) {
+        // Only destinations which writer has started have a sibling:
+        if (target.writer == null) { return; }
+        try {
+            Files.deleteIfExists(target.tmpFile);
+        } catch (IOException exc) {
+            if (errors[index] == null) { errors[index] = exc; }
+            else { errors[index].addSuppressed(exc); }
+        }
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        // Filling buffer until the end of file:
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) { break; }
+        } return buffer.position();
+    }
+
+    public void shutdown() { writersExecutor.shutdown(); }
+}
@@ -0,0 +1,59 @@
+package Mirror;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public class TokenBucket {
+    // Longest single sleep, so changed rates and interruption are noticed quickly:
+    private final static long maximumSleepTime = TimeUnit.MILLISECONDS.toNanos(100);
+    private long rate;
+    private double tokens;
+    private long lastRefillTime;
+
+    public TokenBucket(long tokensPerSecond) {
+        // Bucket starts full, capacity is one second of tokens:
+        rate = tokensPerSecond;
+        tokens = tokensPerSecond;
+        lastRefillTime = System.nanoTime();
+    }
+
+    public synchronized void setRate(long tokensPerSecond) {
+        refill();
+        rate = tokensPerSecond;
+        tokens = Math.min(tokens, rate);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(rate, tokens + (now - lastRefillTime) * rate / (double) TimeUnit.SECONDS.toNanos(1));
+        lastRefillTime = now;
+    }
+
+    public void acquire(long count, BooleanSupplier isInterrupted) {
+        long sleepTime;
+        synchronized (this) {
+            // Zero rate means no limit:
+            if (rate <= 0) { return; }
+            // Taking tokens in advance, requests bigger than capacity are paid off by waiting:
+            refill();
+            tokens -= count;
+            if (tokens >= 0) { return; }
+            sleepTime = (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / rate);
+        }
+        // Waiting until the debt is paid off:
+        while (sleepTime > 0 && !isInterrupted.getAsBoolean()) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(Math.min(sleepTime, maximumSleepTime));
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            synchronized (this) {
+                // Limit may have been removed or changed in the meantime:
+                if (rate <= 0) { return; }
+                refill();
+                sleepTime = tokens >= 0 ? 0 : (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / rate);
+            }
+        }
+    }
+}
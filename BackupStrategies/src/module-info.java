@@ -2,5 +2,9 @@ module BackupsStrategies {
     requires APIUtils;
     requires java.desktop;
     requires java.logging;
-    provides API.BackupStrategy with Mirror.MirrorBackup, Mirror.MirrorBackupModificationTime;
+    requires jdk.unsupported;
+    provides API.BackupStrategy with Mirror.MirrorBackup, Mirror.MirrorBackupModificationTime,
+            Mirror.MirrorBackupContinuous, Mirror.MirrorBackupIndexed, Mirror.MirrorBackupSnapshot,
+            Mirror.MirrorBackupPlanning, Mirror.MirrorBackupPlanned, Mirror.MirrorBackupScrub,
+            Deduplication.ChunkStoreBackup, Archive.ArchiveBackup;
 }
\ No newline at end of file
@@ -1,18 +1,24 @@
 package CustomComponents;
 
 import API.IconsManager;
+import CustomComponents.PathTableModel.PathStatus;
 import Utils.SimplePair;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableCellEditor;
 import javax.swing.table.TableCellRenderer;
 import java.awt.*;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.event.ActionEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 public class PathJTable extends JTable {
     // Const variables:
@@ -22,6 +28,9 @@ public class PathJTable extends JTable {
     public final static int minimalRowSize = 15;
     public final static int startRowSize = 25;
     public final static int numberFrameSize = 20;
+    public final static int statusIconSize = 10;
+    // Separator of source and destination path in pasted and imported lines (as copied from spreadsheets):
+    public final static String pathsSeparator = "\t";
 
     // Resize variables:
     private int draggingRow = -1;
@@ -30,11 +39,73 @@ public class PathJTable extends JTable {
 
     // Managers:
     protected final IconsManager iconsManager;
-    protected final DefaultTableModel tableModel;
+    protected final ResourceBundle resourceBundle;
+    protected final PathTableModel tableModel;
+    protected final PathValidator pathValidator;
     // Popup menu:
     protected final JPopupMenu popupMenu;
     protected final JMenuItem addMenuItem;
     protected final JMenuItem removeMenuItem;
+    protected final JMenuItem pasteMenuItem;
+    protected final JMenuItem importMenuItem;
+
+    private record StatusIcon(Color color) implements Icon {
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            // Drawing a filled circle of status color:
+            Graphics2D graphics = (Graphics2D) g.create();
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setColor(color);
+            graphics.fillOval(x, y, statusIconSize, statusIconSize);
+            graphics.dispose();
+        }
+
+        @Override
+        public int getIconWidth() { return statusIconSize; }
+
+        @Override
+        public int getIconHeight() { return statusIconSize; }
+    }
+
+    private class statusCellRenderer extends DefaultTableCellRenderer {
+        private final Map<PathStatus, Icon> statusIcons;
+
+        public statusCellRenderer() {
+            statusIcons = new EnumMap<>(Map.of(
+                    PathStatus.PENDING, new StatusIcon(Color.LIGHT_GRAY),
+                    PathStatus.VALID, new StatusIcon(new Color(0x2E9E44)),
+                    PathStatus.INCOMPLETE, new StatusIcon(new Color(0xE0A000)),
+                    PathStatus.NOT_EXIST, new StatusIcon(new Color(0xD03030)),
+                    PathStatus.LOOPED, new StatusIcon(new Color(0xD03030)),
+                    PathStatus.OVERLAPPED, new StatusIcon(new Color(0xE0A000))));
+            setHorizontalAlignment(SwingConstants.CENTER);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(
+                JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            // Empty rows have no status:
+            SimplePair<String> pair = tableModel.getPair(row);
+            if (pair.key().isEmpty() && pair.val().isEmpty()) {
+                setIcon(null);
+                setToolTipText(null);
+                return this;
+            }
+            // Status of the row next to its number:
+            PathStatus status = tableModel.getStatus(row);
+            setIcon(statusIcons.get(status));
+            setToolTipText(switch (status) {
+                case PENDING -> resourceBundle.getString("pathsPending");
+                case VALID -> resourceBundle.getString("pathsValid");
+                case INCOMPLETE -> resourceBundle.getString("pathsIncomplete");
+                case NOT_EXIST -> resourceBundle.getString("pathsNotExist");
+                case LOOPED -> resourceBundle.getString("pathsLooped");
+                case OVERLAPPED -> resourceBundle.getString("pathsOverlapped");
+            });
+            return this;
+        }
+    }
 
     private class resizeableMotionListener extends MouseAdapter {
         @Override
@@ -141,30 +212,36 @@ public class PathJTable extends JTable {
     public PathJTable(ResourceBundle bundle, IconsManager iconsManagement) {
         // Icons manager initialization:
         iconsManager = iconsManagement;
+        resourceBundle = bundle;
         // Popup Menu:
         popupMenu = new JPopupMenu();
         addMenuItem = new JMenuItem(bundle.getString("add"), iconsManager.getIcon("add"));
         removeMenuItem = new JMenuItem(bundle.getString("remove"), iconsManager.getIcon("remove"));
+        pasteMenuItem = new JMenuItem(bundle.getString("paste"), iconsManager.getIcon("paste"));
+        importMenuItem = new JMenuItem(bundle.getString("importPaths"), iconsManager.getIcon("open"));
         popupMenu.add(addMenuItem);
         popupMenu.add(removeMenuItem);
+        popupMenu.addSeparator();
+        popupMenu.add(pasteMenuItem);
+        popupMenu.add(importMenuItem);
         addMenuItem.addActionListener(_ -> addRow());
-        removeMenuItem.addActionListener(_ -> {
-            int row;
-            while ((row = getSelectedRow()) >= 0) { removeRow(row); }
+        removeMenuItem.addActionListener(_ -> removeSelectedRows());
+        pasteMenuItem.addActionListener(_ -> pastePaths());
+        importMenuItem.addActionListener(_ -> importPaths());
+        // Pasting path lists with keyboard shortcut instead of default pasting to one cell:
+        getActionMap().put(TransferHandler.getPasteAction().getValue(Action.NAME), new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) { pastePaths(); }
         });
         // Setting a table model:
-        // Disabling number column edition:
-        tableModel = new DefaultTableModel() {
-            @Override
-            public boolean isCellEditable(int row, int column) { return column != 0; }
-        };
+        tableModel = new PathTableModel(bundle.getString("number"), bundle.getString("sourcePath"),
+                bundle.getString("destinationPath"));
         setModel(tableModel);
-        // Adding headers:
-        for (String iter : new String[] {
-                bundle.getString("number"),
-                bundle.getString("sourcePath"),
-                bundle.getString("destinationPath")
-        }) { tableModel.addColumn(iter); }
+        // Validating paths in the background after every change, except changes of statuses:
+        pathValidator = new PathValidator(tableModel);
+        tableModel.addTableModelListener(e -> {
+            if (e.getColumn() != PathTableModel.numberColumn) { pathValidator.validate(); }
+        });
         // Customization:
         getTableHeader().setFont(getTableHeader().getFont().deriveFont(Font.BOLD | Font.ITALIC, headerTextSize));
         setFont(getFont().deriveFont(Font.PLAIN, contentTextSize));
@@ -174,10 +251,8 @@ public class PathJTable extends JTable {
         for (int col = 1; col < 3; ++col) {
             getColumnModel().getColumn(col).setCellEditor(cellEditor);
         }
-        // Aligning content of number column to center:
-        DefaultTableCellRenderer centerCellRenderer = new DefaultTableCellRenderer();
-        centerCellRenderer.setHorizontalAlignment(SwingConstants.CENTER);
-        getColumnModel().getColumn(0).setCellRenderer(centerCellRenderer);
+        // Aligning content of number column to center and adding status of paths:
+        getColumnModel().getColumn(0).setCellRenderer(new statusCellRenderer());
         // Adding resizable rows:
         addMouseListener(new resizeableMouseListener());
         addMouseMotionListener(new resizeableMotionListener());
@@ -186,7 +261,7 @@ public class PathJTable extends JTable {
         Component comp = headerRenderer.getTableCellRendererComponent(
                 this, getColumnModel().getColumn(0).getHeaderValue(),
                 false, false, 0, 0);
-        int headerWidth = comp.getPreferredSize().width + numberFrameSize;
+        int headerWidth = comp.getPreferredSize().width + numberFrameSize + statusIconSize;
         getColumnModel().getColumn(0).setMaxWidth(headerWidth);
     }
 
@@ -196,29 +271,61 @@ public class PathJTable extends JTable {
         removeMenuItem.setEnabled(getSelectedRow() != -1);
     }
 
-    public void addRow(Object... row) {
-        Vector<Object> vRow = new Vector<>(List.of(row));
-        vRow.addFirst(null);
-        tableModel.addRow(vRow);
-        // Adding number to row:
-        tableModel.setValueAt(getRowCount(), getRowCount() - 1, 0);
+    public void addRow() { tableModel.addRows(List.of(new SimplePair<>("", ""))); }
+
+    public void removeSelectedRows() {
+        // Finishing edition, edited row may be removed:
+        if (isEditing()) { getCellEditor().cancelCellEditing(); }
+        tableModel.removeRows(getSelectedRows());
     }
 
-    public void removeRow(int row) {
-        tableModel.removeRow(row);
-        // Decrementing number for each row > deleted row:
-        for (int rowIter = row; rowIter < getRowCount(); ++rowIter) {
-            tableModel.setValueAt(((int) tableModel.getValueAt(rowIter, 0)) - 1, rowIter, 0);
+    public void pastePaths() {
+        try {
+            // Adding lines of clipboard text as path sets:
+            String text = (String) Toolkit.getDefaultToolkit().getSystemClipboard().getData(DataFlavor.stringFlavor);
+            tableModel.addRows(parsePaths(text));
+        } catch (UnsupportedFlavorException | IOException | IllegalStateException exc) {
+            // Clipboard without text or unavailable:
+            Toolkit.getDefaultToolkit().beep();
         }
     }
 
+    public void importPaths() {
+        JFileChooser fileChooser = new JFileChooser(System.getProperty("user.home"));
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) { return; }
+        // Reading the list in the background, it may be large or stored on a slow drive:
+        new SwingWorker<List<SimplePair<String>>, Void>() {
+            @Override
+            protected List<SimplePair<String>> doInBackground() throws IOException {
+                return parsePaths(Files.readString(fileChooser.getSelectedFile().toPath()));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    tableModel.addRows(get());
+                } catch (ExecutionException | InterruptedException exc) {
+                    JOptionPane.showMessageDialog(PathJTable.this, resourceBundle.getString("importError")
+                            .formatted(fileChooser.getSelectedFile()), resourceBundle.getString("error"),
+                            JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    public static List<SimplePair<String>> parsePaths(String text) {
+        // Every not blank line is a path set, a line without separator is a source path only:
+        List<SimplePair<String>> paths = new ArrayList<>();
+        text.lines().filter(line -> !line.isBlank()).forEach(line -> {
+            String[] fields = line.split(pathsSeparator, 2);
+            paths.add(new SimplePair<>(fields[0].strip(), fields.length > 1 ? fields[1].strip() : ""));
+        });
+        return paths;
+    }
+
     public Optional<List<SimplePair<String>>> getPaths() {
         List<SimplePair<String>> values = new ArrayList<>();
-        for (int row = 0; row < tableModel.getRowCount(); ++row) {
-            // Creating a pair of source path - destination paths;
-            SimplePair<String> pair = new SimplePair<>(Objects.requireNonNullElse(
-                    (String) tableModel.getValueAt(row, 1), ""), Objects.requireNonNullElse((String)
-                    tableModel.getValueAt(row, 2), ""));
+        for (SimplePair<String> pair : tableModel.getPairs()) {
             // If the row is empty:
             if (pair.key().isEmpty() && pair.val().isEmpty()) { continue; }
             // If paths are incomplete:
@@ -228,9 +335,7 @@ public class PathJTable extends JTable {
     }
 
     public void setPaths(List<SimplePair<String>> paths) {
-        // Clearing table:
-        tableModel.setRowCount(0);
-        // Adding every row to the table:
-        paths.forEach(row -> addRow(row.key(), row.val()));
+        // Replacing content of the table at once:
+        tableModel.setRows(paths);
     }
 }
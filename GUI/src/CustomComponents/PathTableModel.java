@@ -0,0 +1,119 @@
+package CustomComponents;
+
+import Utils.SimplePair;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+public class PathTableModel extends AbstractTableModel {
+    public final static int numberColumn = 0;
+    public final static int sourceColumn = 1;
+    public final static int destinationColumn = 2;
+    private final String[] columnNames;
+    private final List<Row> rows;
+
+    public enum PathStatus { PENDING, VALID, INCOMPLETE, NOT_EXIST, LOOPED, OVERLAPPED }
+
+    private static class Row {
+        private String source;
+        private String destination;
+        private PathStatus status;
+
+        private Row(String source, String destination) {
+            this.source = Objects.requireNonNullElse(source, "");
+            this.destination = Objects.requireNonNullElse(destination, "");
+            status = PathStatus.PENDING;
+        }
+    }
+
+    public PathTableModel(String numberName, String sourceName, String destinationName) {
+        columnNames = new String[] { numberName, sourceName, destinationName };
+        rows = new ArrayList<>();
+    }
+
+    @Override
+    public int getRowCount() { return rows.size(); }
+
+    @Override
+    public int getColumnCount() { return columnNames.length; }
+
+    @Override
+    public String getColumnName(int column) { return columnNames[column]; }
+
+    // Disabling number column edition:
+    @Override
+    public boolean isCellEditable(int row, int column) { return column != numberColumn; }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        // Numbers are computed from positions, so removing rows doesn't renumber following rows:
+        return switch (column) {
+            case numberColumn -> row + 1;
+            case sourceColumn -> rows.get(row).source;
+            case destinationColumn -> rows.get(row).destination;
+            default -> throw new IndexOutOfBoundsException(column);
+        };
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        String path = Objects.requireNonNullElse((String) value, "");
+        Row changedRow = rows.get(row);
+        switch (column) {
+            case sourceColumn -> changedRow.source = path;
+            case destinationColumn -> changedRow.destination = path;
+            default -> { return; }
+        }
+        // Edited paths have to be validated again:
+        changedRow.status = PathStatus.PENDING;
+        fireTableRowsUpdated(row, row);
+    }
+
+    public void addRows(List<SimplePair<String>> paths) {
+        if (paths.isEmpty()) { return; }
+        // Adding all rows with one event, so imports of thousands of paths are not repainted row by row:
+        int firstRow = rows.size();
+        paths.forEach(pair -> rows.add(new Row(pair.key(), pair.val())));
+        fireTableRowsInserted(firstRow, rows.size() - 1);
+    }
+
+    public void removeRows(int[] removedRows) {
+        // Removing from the end, every continuous range with one event:
+        int[] sortedRows = removedRows.clone();
+        Arrays.sort(sortedRows);
+        for (int i = sortedRows.length - 1; i >= 0; ) {
+            int lastRow = sortedRows[i];
+            int firstRow = lastRow;
+            while (--i >= 0 && sortedRows[i] == firstRow - 1) { firstRow = sortedRows[i]; }
+            rows.subList(firstRow, lastRow + 1).clear();
+            fireTableRowsDeleted(firstRow, lastRow);
+        }
+    }
+
+    public void setRows(List<SimplePair<String>> paths) {
+        // Replacing the whole content with one event:
+        rows.clear();
+        paths.forEach(pair -> rows.add(new Row(pair.key(), pair.val())));
+        fireTableDataChanged();
+    }
+
+    public SimplePair<String> getPair(int row) {
+        return new SimplePair<>(rows.get(row).source, rows.get(row).destination);
+    }
+
+    public List<SimplePair<String>> getPairs() {
+        return rows.stream().map(row -> new SimplePair<>(row.source, row.destination)).toList();
+    }
+
+    public PathStatus getStatus(int row) { return rows.get(row).status; }
+
+    public void setStatus(int row, SimplePair<String> pair, PathStatus status) {
+        // Results of validation are ignored if the row has been changed in the meantime:
+        if (row >= rows.size() || !getPair(row).equals(pair) || rows.get(row).status == status) { return; }
+        rows.get(row).status = status;
+        fireTableCellUpdated(row, numberColumn);
+    }
+}
@@ -0,0 +1,146 @@
+package CustomComponents;
+
+import CustomComponents.PathTableModel.PathStatus;
+import Utils.SimplePair;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PathValidator {
+    // Results of existence checks are reused for a while, so edits don't touch drives again:
+    private final static long existenceCacheTime = TimeUnit.SECONDS.toNanos(5);
+    // Several checks at once, so one unmounted drive doesn't hold results of other paths:
+    private final static int existenceThreads = 4;
+    // Edits following quickly one after another are validated together:
+    private final static int validationDelay = 200;
+    private final PathTableModel tableModel;
+    private final ExecutorService planExecutor;
+    private final ExecutorService existenceExecutor;
+    private final Map<Path, CachedExistence> existenceCache;
+    private final Queue<Result> results;
+    private final AtomicBoolean isFlushScheduled;
+    private final Timer validationTimer;
+    private volatile long generation;
+
+    private record CachedExistence(CompletableFuture<Boolean> isDirectory, long checkTime) { }
+
+    private record Result(long generation, int row, SimplePair<String> pair, PathStatus status) { }
+
+    public PathValidator(PathTableModel pathTableModel) {
+        tableModel = pathTableModel;
+        // Validation threads don't keep the application alive:
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "PathValidator");
+            thread.setDaemon(true);
+            return thread;
+        };
+        planExecutor = Executors.newSingleThreadExecutor(threadFactory);
+        existenceExecutor = Executors.newFixedThreadPool(existenceThreads, threadFactory);
+        existenceCache = new ConcurrentHashMap<>();
+        results = new ConcurrentLinkedQueue<>();
+        isFlushScheduled = new AtomicBoolean(false);
+        validationTimer = new Timer(validationDelay, _ -> startValidation());
+        validationTimer.setRepeats(false);
+        generation = 0;
+    }
+
+    // Called from event dispatch thread after every change of paths:
+    public void validate() { validationTimer.restart(); }
+
+    private void startValidation() {
+        // Copy of paths is validated, table may be edited in the meantime:
+        long validationGeneration = ++generation;
+        List<SimplePair<String>> pairs = tableModel.getPairs();
+        planExecutor.execute(() -> plan(validationGeneration, pairs));
+    }
+
+    private void plan(long validationGeneration, List<SimplePair<String>> pairs) {
+        // Forgetting old results of existence checks:
+        long now = System.nanoTime();
+        existenceCache.values().removeIf(cached -> cached.isDirectory().isDone()
+                && now - cached.checkTime() >= existenceCacheTime);
+        // Converting paths, rows with missing or invalid paths are finished here:
+        List<SimplePair<Path>> paths = new ArrayList<>(Collections.nCopies(pairs.size(), null));
+        Set<Path> sources = new HashSet<>();
+        Set<Path> destinations = new HashSet<>();
+        for (int row = 0; row < pairs.size(); ++row) {
+            SimplePair<String> pair = pairs.get(row);
+            if (pair.key().isEmpty() && pair.val().isEmpty()) {
+                publish(validationGeneration, row, pair, PathStatus.PENDING);
+            } else if (pair.key().isEmpty() || pair.val().isEmpty()) {
+                publish(validationGeneration, row, pair, PathStatus.INCOMPLETE);
+            } else {
+                try {
+                    SimplePair<Path> pathPair = new SimplePair<>(Path.of(pair.key()).toAbsolutePath().normalize(),
+                            Path.of(pair.val()).toAbsolutePath().normalize());
+                    paths.set(row, pathPair);
+                    sources.add(pathPair.key());
+                    destinations.add(pathPair.val());
+                } catch (InvalidPathException exc) {
+                    publish(validationGeneration, row, pair, PathStatus.NOT_EXIST);
+                }
+            }
+        }
+        for (int row = 0; row < pairs.size(); ++row) {
+            SimplePair<Path> pathPair = paths.get(row);
+            if (pathPair == null) { continue; }
+            SimplePair<String> pair = pairs.get(row);
+            // If paths include themselves:
+            if (pathPair.key().startsWith(pathPair.val()) || pathPair.val().startsWith(pathPair.key())) {
+                publish(validationGeneration, row, pair, PathStatus.LOOPED);
+            }
+            // If paths include paths of other sets, ancestors are looked up instead of comparing every set:
+            else if (isAncestorIn(pathPair.val(), sources) || isAncestorIn(pathPair.key(), destinations)) {
+                publish(validationGeneration, row, pair, PathStatus.OVERLAPPED);
+            } else {
+                // Existence is checked without waiting, result is published when both paths are checked:
+                int resultRow = row;
+                CompletableFuture<Boolean> isSourceDirectory = isDirectory(pathPair.key());
+                CompletableFuture<Boolean> isDestinationDirectory = isDirectory(pathPair.val());
+                isSourceDirectory.thenCombine(isDestinationDirectory, Boolean::logicalAnd).thenAccept(isExisting ->
+                        publish(validationGeneration, resultRow, pair,
+                                isExisting ? PathStatus.VALID : PathStatus.NOT_EXIST));
+            }
+        }
+    }
+
+    private static boolean isAncestorIn(Path path, Set<Path> paths) {
+        for (Path ancestor = path; ancestor != null; ancestor = ancestor.getParent()) {
+            if (paths.contains(ancestor)) { return true; }
+        } return false;
+    }
+
+    private CompletableFuture<Boolean> isDirectory(Path path) {
+        // Every path is checked once, rows sharing it wait for the same check:
+        return existenceCache.compute(path, (_, cached) -> {
+            if (cached != null && (!cached.isDirectory().isDone()
+                    || System.nanoTime() - cached.checkTime() < existenceCacheTime)) { return cached; }
+            return new CachedExistence(CompletableFuture.supplyAsync(() ->
+                    Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS), existenceExecutor), System.nanoTime());
+        }).isDirectory();
+    }
+
+    private void publish(long validationGeneration, int row, SimplePair<String> pair, PathStatus status) {
+        // Results are passed to event dispatch thread in batches, not one event per row:
+        results.add(new Result(validationGeneration, row, pair, status));
+        if (isFlushScheduled.compareAndSet(false, true)) { SwingUtilities.invokeLater(this::flush); }
+    }
+
+    private void flush() {
+        isFlushScheduled.set(false);
+        Result result;
+        while ((result = results.poll()) != null) {
+            // Results of older validations may point to rows which have been moved:
+            if (result.generation() == generation) {
+                tableModel.setStatus(result.row(), result.pair(), result.status());
+            }
+        }
+    }
+}
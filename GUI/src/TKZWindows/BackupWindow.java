@@ -6,6 +6,7 @@ import CustomComponents.ConsoleLog;
 import CustomComponents.ShutdownDialog;
 import Utils.ExtendedPair;
 import Utils.ListenersTypes;
+import Utils.ThrottleSettings;
 
 import javax.swing.*;
 import java.awt.*;
@@ -14,22 +15,24 @@ import java.awt.event.WindowEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.ResourceBundle;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
-import java.util.function.Supplier;
 import java.util.Queue;
 
 public class BackupWindow {
     private final static int clockRefreshTime = 1000;
-    private final static int flushRefreshTime = 100;
-    private final static int maximumProgressBarDataBufferSize = (int) Math.pow(2, 10);
+    // Updates of components are coalesced and applied once per frame:
+    private final static int flushRefreshTime = 1000 / 60;
     private final static int maximumConsoleLogDataBufferSize = (int) Math.pow(2, 20);
+    // Progress cell without a value waiting for the flush:
+    private final static int noProgress = -1;
     private final static DateTimeFormatter clockFormatter = DateTimeFormatter.ofPattern("HH:mm:ss");
     private final static double xWindowPattern = 1680.;
     private final static double yWindowPattern = 1050.;
@@ -37,15 +40,27 @@ public class BackupWindow {
     private final static double yWindowProp = 600.;
     private final static int xWindowBorderProp = 12;
     private final static int yWindowBorderProp = 10;
+    private final static int bytesInMegabyte = 1024 * 1024;
+    private final static int maximumBandwidthLimit = 100000;
+    private final static int maximumOperationsLimit = 1000000;
     private LocalTime clock;
     private JLabel labelClock;
+    private JLabel labelEstimatedTime;
+    private JProgressBar jProgressBar;
     private JButton returnButton;
     private JButton stopButton;
+    private JButton pauseButton;
     private JButton startButton;
+    private JSpinner readLimitSpinner;
+    private JSpinner writeLimitSpinner;
+    private JSpinner operationsLimitSpinner;
+    private JSpinner unthrottledFromSpinner;
+    private JSpinner unthrottledToSpinner;
     private Timer clockTimer;
     private Timer flushUpdatesGuiTimer;
     private boolean windowStatus;
     private boolean isStopped;
+    private boolean isPaused;
     private final ShutdownDialog shutdownDialog;
     private volatile boolean isClosingWindow;
     protected boolean isShutdown;
@@ -67,7 +82,8 @@ public class BackupWindow {
         shutdownDialog = new ShutdownDialog(jFrame, resourceBundle, this::shutdownStrategy);
         windowStatus = false;
         isStopped = false;
-        // Flag informing is window closing (For avoiding deadlock with InvokeAndWait() method in PropertyChange):
+        isPaused = false;
+        // Flag informing is window closing (updates of closing window are rejected):
         isClosingWindow = false;
         // Building gui:
         execGui();
@@ -89,23 +105,53 @@ public class BackupWindow {
         JPanel clockPanel = new JPanel();
         clockPanel.setLayout(new BoxLayout(clockPanel, BoxLayout.X_AXIS));
         labelClock = new JLabel();
+        labelEstimatedTime = new JLabel();
+        clockPanel.add(labelEstimatedTime);
         clockPanel.add(Box.createHorizontalGlue());
         clockPanel.add(labelClock);
         mainPanel.add(Box.createVerticalStrut(yWindowBorder));
         mainPanel.add(clockPanel);
         // Progress Bar:
-        JProgressBar jProgressBar = new JProgressBar(0, 100);
+        jProgressBar = new JProgressBar(0, 100);
         jProgressBar.setStringPainted(true);
         mainPanel.add(Box.createVerticalStrut(yWindowBorder));
         mainPanel.add(jProgressBar);
+        // Limits of devices (zero means no limit), applied also during backup:
+        readLimitSpinner = new JSpinner(new SpinnerNumberModel(0, 0, maximumBandwidthLimit, 1));
+        writeLimitSpinner = new JSpinner(new SpinnerNumberModel(0, 0, maximumBandwidthLimit, 1));
+        operationsLimitSpinner = new JSpinner(new SpinnerNumberModel(0, 0, maximumOperationsLimit, 10));
+        unthrottledFromSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 23, 1));
+        unthrottledToSpinner = new JSpinner(new SpinnerNumberModel(0, 0, 23, 1));
+        JButton applyThrottleButton = new JButton(rBundle.getString("applyThrottle"));
+        JPanel throttlePanel = new JPanel();
+        throttlePanel.setLayout(new BoxLayout(throttlePanel, BoxLayout.X_AXIS));
+        throttlePanel.setToolTipText(rBundle.getString("throttleToolTip"));
+        for (ExtendedPair<String, JSpinner> labeledSpinner : Arrays.asList(
+                new ExtendedPair<>("throttleReadLimit", readLimitSpinner),
+                new ExtendedPair<>("throttleWriteLimit", writeLimitSpinner),
+                new ExtendedPair<>("throttleOperationsLimit", operationsLimitSpinner),
+                new ExtendedPair<>("unthrottledFrom", unthrottledFromSpinner),
+                new ExtendedPair<>("unthrottledTo", unthrottledToSpinner))) {
+            throttlePanel.add(new JLabel(rBundle.getString(labeledSpinner.key())));
+            throttlePanel.add(Box.createHorizontalStrut(xWindowBorder / 2));
+            throttlePanel.add(labeledSpinner.val());
+            throttlePanel.add(Box.createHorizontalStrut(xWindowBorder));
+        }
+        throttlePanel.add(Box.createHorizontalGlue());
+        throttlePanel.add(applyThrottleButton);
+        mainPanel.add(Box.createVerticalStrut(yWindowBorder));
+        mainPanel.add(throttlePanel);
         // Buttons;
         returnButton = new JButton(rBundle.getString("return"), iManager.getIcon("return"));
         stopButton = new JButton(rBundle.getString("stop"), iManager.getIcon("stop"));
+        pauseButton = new JButton(rBundle.getString("pause"), iManager.getIcon("pause"));
         startButton = new JButton(rBundle.getString("start"), iManager.getIcon("run"));
         JPanel buttonsPanel = new JPanel();
         buttonsPanel.setLayout(new BoxLayout(buttonsPanel, BoxLayout.X_AXIS));
         buttonsPanel.add(returnButton);
         buttonsPanel.add(Box.createHorizontalGlue());
+        buttonsPanel.add(pauseButton);
+        buttonsPanel.add(Box.createHorizontalStrut(xWindowBorder));
         buttonsPanel.add(stopButton);
         buttonsPanel.add(Box.createHorizontalStrut(xWindowBorder));
         buttonsPanel.add(startButton);
@@ -140,16 +186,34 @@ public class BackupWindow {
         stopButton.addActionListener(_ -> {
             // Setting stop flag:
             isStopped = true;
-            // Disabling button to prevent multiple stop signals:
+            // Disabling buttons to prevent multiple stop signals:
             stopButton.setEnabled(false);
+            pauseButton.setEnabled(false);
             // Stopping backup:
             backupStrategy.stop();
         });
+        pauseButton.addActionListener(_ -> {
+            // Pausing or resuming backup, clock doesn't count pause time, so it isn't in estimated time:
+            if (isPaused) {
+                backupStrategy.resume();
+                clockTimer.start();
+            } else {
+                backupStrategy.pause();
+                clockTimer.stop();
+            }
+            setPaused(!isPaused);
+        });
+        applyThrottleButton.addActionListener(_ -> {
+            // Changing limits of running or next backup:
+            if (backupStrategy != null) { backupStrategy.setThrottle(getThrottleSettings()); }
+        });
         startButton.addActionListener(_ -> {
             // Resetting stop flag:
             isStopped = false;
             // Switching a window to running state:
             switchWindowStatus();
+            // Resetting pause state:
+            setPaused(false);
             // Executing backup:
             backupStrategy.execute();
         });
@@ -169,6 +233,8 @@ public class BackupWindow {
             progressBarStrategiesPair.val().run();
             consoleLogStrategiesPair.val().run();
         });
+        // Ticks missed while EDT is busy are merged into one:
+        flushUpdatesGuiTimer.setCoalesce(true);
         // Declaring clock timer:
         clockTimer = new Timer(clockRefreshTime, _ -> updateClock());
         // Backup finish strategy:
@@ -230,81 +296,58 @@ public class BackupWindow {
     }
 
     private ExtendedPair<PropertyChangeListener, Runnable> createProgressBarListenerFactory(JProgressBar progressBar) {
-        // Declaring buffer:
-        Queue<Integer> percentageBuffer = new ConcurrentLinkedQueue<>();
-        // Declaring function which determines whether buffer is overflowed:
-        Supplier<Boolean> isPercentageBufferOverflow = () -> percentageBuffer.size() > maximumProgressBarDataBufferSize;
+        // Declaring cell of the latest value, intermediate values are never shown:
+        AtomicInteger latestPercentage = new AtomicInteger(noProgress);
         // Declaring function which applying gathered data (flush) to gui:
-        Runnable flushPercentageBuffer = () -> {
-            // Checking if buffer has already been flushed:
-            if (percentageBuffer.isEmpty()) { return; }
-            Integer value;
-            // Taking only elements which are currently in buffer:
-            for (int s = percentageBuffer.size(); s > 0; --s) {
-                // Retrieving element:
-                value = percentageBuffer.poll();
-                // In case some other task retrieves data from buffer:
-                if (value == null) { throw new IndexOutOfBoundsException("Buffer index out of bounds!"); }
-                // Updating progress bar:
-                progressBar.setValue(value);
-            }
+        Runnable flushPercentage = () -> {
+            int value = latestPercentage.getAndSet(noProgress);
+            // Checking if value has already been flushed:
+            if (value != noProgress) { progressBar.setValue(value); }
         };
-        // Declaring function which updates component directly:
-        Consumer<PropertyChangeEvent> updateGuiStrategy =
-                evt -> progressBar.setValue((int) evt.getNewValue());
-        // Declaring function which saves data in buffer:
-        Consumer<PropertyChangeEvent> storeInBuffer =
-                evt -> percentageBuffer.add((int) evt.getNewValue());
         // Crating custom property change listener:
-        return new ExtendedPair<>(updateGUIListenerFactory(updateGuiStrategy, isPercentageBufferOverflow,
-                flushPercentageBuffer, storeInBuffer), flushPercentageBuffer);
+        return new ExtendedPair<>(updateGUIListenerFactory(evt -> latestPercentage.set((int) evt.getNewValue())),
+                flushPercentage);
     }
 
     private ExtendedPair<PropertyChangeListener, Runnable> createConsoleLogListenerFactory(ConsoleLog consoleLog) {
-        // Declaring buffer:
-        StringBuffer consoleBuffer = new StringBuffer();
-        // Declaring function which determines whether buffer is overflowed:
-        Supplier<Boolean> isConsoleBufferOverflowed = () -> consoleBuffer.length() > maximumConsoleLogDataBufferSize;
+        // Declaring lock-free buffer, bounded by number of its characters:
+        Queue<String> consoleBuffer = new ConcurrentLinkedQueue<>();
+        AtomicInteger consoleBufferSize = new AtomicInteger();
+        // Lines which didn't fit in the buffer while gui was busy:
+        LongAdder droppedLines = new LongAdder();
         // Declaring function which applying gathered data (flush) to gui:
         Runnable flushConsoleBuffer = () -> {
-            // Setting pointer to current end buffer data:
-            int consoleBufferSize = consoleBuffer.length();
+            // Joining lines which are currently in buffer, console is updated once:
+            StringBuilder lines = new StringBuilder();
+            String line;
+            while ((line = consoleBuffer.poll()) != null) {
+                consoleBufferSize.addAndGet(-line.length());
+                lines.append(line);
+            }
+            long dropped = droppedLines.sumThenReset();
+            if (dropped > 0) { lines.append(rBundle.getString("droppedLines").formatted(dropped)).append('\n'); }
             // Checking if buffer has already been flushed:
-            if (consoleBufferSize == 0) { return; }
-            // Updating console log with the elements which are currently in buffer:
-            consoleLog.addLines(consoleBuffer.substring(0, consoleBufferSize));
-            // Clearing used data:
-            consoleBuffer.delete(0, consoleBufferSize);
+            if (!lines.isEmpty()) { consoleLog.addLines(lines.toString()); }
+        };
+        // Declaring function which saves data in buffer, without waiting for gui:
+        Consumer<PropertyChangeEvent> storeInBuffer = evt -> {
+            String line = (String) evt.getNewValue();
+            if (consoleBufferSize.addAndGet(line.length()) > maximumConsoleLogDataBufferSize) {
+                consoleBufferSize.addAndGet(-line.length());
+                droppedLines.increment();
+            } else { consoleBuffer.add(line); }
         };
-        // Declaring function which updates component directly:
-        Consumer<PropertyChangeEvent> updateGuiStrategy =
-                evt -> consoleLog.addLines((String) evt.getNewValue());
-        // Declaring function which saves data in buffer:
-        Consumer<PropertyChangeEvent> storeInBuffer =
-                evt -> consoleBuffer.append((String) evt.getNewValue());
         // Crating custom property change listener:
-        return new ExtendedPair<>(updateGUIListenerFactory(updateGuiStrategy, isConsoleBufferOverflowed,
-                flushConsoleBuffer, storeInBuffer), flushConsoleBuffer);
+        return new ExtendedPair<>(updateGUIListenerFactory(storeInBuffer), flushConsoleBuffer);
     }
 
-    private PropertyChangeListener updateGUIListenerFactory(
-            Consumer<PropertyChangeEvent> updateGuiStrategy, Supplier<Boolean> isBufferOverflowed,
-            Runnable flushStrategy, Consumer<PropertyChangeEvent> storeInBuffer) {
-        // Returning custom property change listener:
+    private PropertyChangeListener updateGUIListenerFactory(Consumer<PropertyChangeEvent> storeInBuffer) {
+        // Returning custom property change listener, backup threads never wait for gui:
         return evt -> {
             // Rejecting updating gui if window is closing:
             if (isClosingWindow) { return; }
-            // Checking if caller is EDT, and updating GUI directly:
-            if (SwingUtilities.isEventDispatchThread()) { updateGuiStrategy.accept(evt); }
-            try {
-                // Storing new data in buffer:
-                storeInBuffer.accept(evt);
-                // Checking if buffer overflows:
-                if (isBufferOverflowed.get()) {
-                    // Waiting for EDT thread:
-                    SwingUtilities.invokeAndWait(flushStrategy);
-                }
-            } catch (InterruptedException | InvocationTargetException exc) { throw new RuntimeException(exc); }
+            // Storing new data in buffer, timer flushes it once per frame:
+            storeInBuffer.accept(evt);
         };
     }
 
@@ -316,7 +359,8 @@ public class BackupWindow {
         } catch (IOException exc) { throw new RuntimeException(exc); }
     }
 
-    protected void show(BackupStrategy bStrategy, boolean isShutdownBefore, boolean isCopyHiddenElements) {
+    protected void show(BackupStrategy bStrategy, boolean isShutdownBefore, boolean isCopyHiddenElements,
+                        boolean isDurableCopy, boolean isVerifiedCopy) {
         // Initializing shutdown variable:
         isShutdown = isShutdownBefore;
         // Declaring backup strategy:
@@ -329,10 +373,23 @@ public class BackupWindow {
         backupStrategy.addPropertyListener(ListenersTypes.FINISH, finishBackupListener);
         // Setting copy hidden element flag:
         backupStrategy.setIsCopyHiddenElements(isCopyHiddenElements);
+        // Setting durable copy flag:
+        backupStrategy.setIsDurableCopy(isDurableCopy);
+        // Setting verified copy flag:
+        backupStrategy.setIsVerifiedCopy(isVerifiedCopy);
+        // Setting limits of devices:
+        backupStrategy.setThrottle(getThrottleSettings());
         // Executing backup:
         startButton.doClick();
     }
 
+    private ThrottleSettings getThrottleSettings() {
+        // Converting values of spinners, bandwidth is given in megabytes per second:
+        return new ThrottleSettings((long) (int) readLimitSpinner.getValue() * bytesInMegabyte,
+                (long) (int) writeLimitSpinner.getValue() * bytesInMegabyte, (int) operationsLimitSpinner.getValue(),
+                (int) unthrottledFromSpinner.getValue(), (int) unthrottledToSpinner.getValue());
+    }
+
     private void switchWindowStatus() {
         // Starting/stopping clocks:
         if (windowStatus) {
@@ -351,14 +408,35 @@ public class BackupWindow {
         startButton.setEnabled(windowStatus);
         returnButton.setEnabled(windowStatus);
         stopButton.setEnabled(!windowStatus);
+        pauseButton.setEnabled(!windowStatus);
         windowStatus = !windowStatus;
     }
 
+    private void setPaused(boolean paused) {
+        // Switching pause button between pausing and resuming:
+        isPaused = paused;
+        pauseButton.setText(rBundle.getString(isPaused ? "resume" : "pause"));
+        pauseButton.setIcon(iManager.getIcon(isPaused ? "run" : "pause"));
+    }
+
     private void updateClock() {
         // Incrementing clock of specified milliseconds:
         clock = clock.plus(clockRefreshTime, ChronoUnit.MILLIS);
         // Updating gui:
         labelClock.setText(clock.format(clockFormatter));
+        updateEstimatedTime();
+    }
+
+    private void updateEstimatedTime() {
+        // Estimating from progress and running time, the clock is stopped while backup is paused:
+        int progress = jProgressBar.getValue();
+        if (progress <= 0 || progress >= 100) {
+            labelEstimatedTime.setText("");
+            return;
+        }
+        long remainingSeconds = (long) clock.toSecondOfDay() * (100 - progress) / progress;
+        labelEstimatedTime.setText(rBundle.getString("estimatedTime").formatted(LocalTime.ofSecondOfDay(
+                Math.min(remainingSeconds, LocalTime.MAX.toSecondOfDay())).format(clockFormatter)));
     }
 
     private void resetClock() {
@@ -366,6 +444,7 @@ public class BackupWindow {
         clock = LocalTime.of(0, 0, 0);
         // Updating GUI:
         labelClock.setText(clock.format(clockFormatter));
+        labelEstimatedTime.setText("");
         // Resetting clock:
         clockTimer.restart();
     }
@@ -20,6 +20,7 @@ import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 public class MainWindow {
     private final static double xWindowProp = 800.;
@@ -30,6 +31,8 @@ public class MainWindow {
     private final static int yWindowBorderProp = 10;
     private final static String shutdownAttributeName = "ShutDown";
     private final static String hiddenAttributeName = "Hidden";
+    private final static String durableAttributeName = "Durable";
+    private final static String verifiedAttributeName = "Verified";
     private final static String backupStrategyAttributeName = "BackupStrategy";
     protected final ResourceBundle contentsResourceBundle;
     protected final ProfileManager profileManager;
@@ -37,6 +40,8 @@ public class MainWindow {
     protected final BackupWindow backupWindow;
     protected final JFrame jFrame;
     protected final BackupStrategy[] availableBackups;
+    // Attributes of the opened profile, options which aren't edited in the window are kept when it's saved:
+    private Map<String, String> profileAttributes;
 
     public MainWindow(IconsManager iconsManagerStrategy, ProfileManager profileManagerStrategy,
                       BackupStrategy[] availableBackupsStrategies) {
@@ -45,6 +50,7 @@ public class MainWindow {
         iconsManager = iconsManagerStrategy;
         profileManager = profileManagerStrategy;
         availableBackups = availableBackupsStrategies;
+        profileAttributes = Map.of();
         // Loading language resource bundle:
         try {
             contentsResourceBundle = ResourceBundle.getBundle("WindowContents");
@@ -113,6 +119,14 @@ public class MainWindow {
         JCheckBox hiddenFilesCheckBox = new JCheckBox(contentsResourceBundle.getString("hiddenFiles"));
         checkBoxPanel.add(hiddenFilesCheckBox);
         checkBoxPanel.add(Box.createHorizontalGlue());
+        // Durable copy checkbox:
+        JCheckBox durableCopyCheckBox = new JCheckBox(contentsResourceBundle.getString("durableCopy"));
+        checkBoxPanel.add(durableCopyCheckBox);
+        checkBoxPanel.add(Box.createHorizontalGlue());
+        // Verified copy checkbox:
+        JCheckBox verifiedCopyCheckBox = new JCheckBox(contentsResourceBundle.getString("verifiedCopy"));
+        checkBoxPanel.add(verifiedCopyCheckBox);
+        checkBoxPanel.add(Box.createHorizontalGlue());
         mainPanel.add(checkBoxPanel);
         // JButton:
         JButton execBackupButton = new JButton(contentsResourceBundle.getString("execute"),
@@ -139,7 +153,7 @@ public class MainWindow {
         // Opening last used profile if exists:
         profileManager.openLastUsedFile().ifPresent(fileContent ->
                 setContentFromProfileManager(fileContent, jTable, backUpTypesModel, turnOffCheckBox,
-                        hiddenFilesCheckBox));
+                        hiddenFilesCheckBox, durableCopyCheckBox, verifiedCopyCheckBox));
         // Connections:
         // Popup Menu:
         jScrollPane.addMouseListener(new MouseAdapter() {
@@ -152,12 +166,14 @@ public class MainWindow {
         // Menu items:
         saveMenuItem.addActionListener(_ -> saveStrategy(false, jTable,
                 (String) Objects.requireNonNull(backUpTypes.getSelectedItem()), turnOffCheckBox.isSelected(),
-                hiddenFilesCheckBox.isSelected(), jFrame));
+                hiddenFilesCheckBox.isSelected(), durableCopyCheckBox.isSelected(), verifiedCopyCheckBox.isSelected(),
+                jFrame));
         saveAsMenuItem.addActionListener(_ -> saveStrategy(true, jTable,
                 (String) Objects.requireNonNull(backUpTypes.getSelectedItem()), turnOffCheckBox.isSelected(),
-                hiddenFilesCheckBox.isSelected(), jFrame));
+                hiddenFilesCheckBox.isSelected(), durableCopyCheckBox.isSelected(), verifiedCopyCheckBox.isSelected(),
+                jFrame));
         openMenuItem.addActionListener(_ -> openProfile(jTable, turnOffCheckBox, hiddenFilesCheckBox,
-                backUpTypesModel, jFrame));
+                durableCopyCheckBox, verifiedCopyCheckBox, backUpTypesModel, jFrame));
         aboutMenuItem.addActionListener(_ -> openDocumentation());
         // Button:
         execBackupButton.addActionListener(_ -> {
@@ -168,19 +184,46 @@ public class MainWindow {
             }
             // Getting chosen backup:
             BackupStrategy chosenBackup = availableBackups[backUpTypes.getSelectedIndex()];
+            Map<String, String> options = getAttributes((String) Objects.requireNonNull(
+                    backUpTypes.getSelectedItem()), turnOffCheckBox.isSelected(), hiddenFilesCheckBox.isSelected(),
+                    durableCopyCheckBox.isSelected(), verifiedCopyCheckBox.isSelected());
             jTable.getPaths().ifPresentOrElse(paths -> {
-                try {
-                    // Setting paths from JTable:
-                    chosenBackup.setPaths(paths);
-                    // Switching prepared backup instance to BackupWindow:
-                    backupWindow.show(chosenBackup, turnOffCheckBox.isSelected(), hiddenFilesCheckBox.isSelected());
-                    // Hiding window:
-                    jFrame.setVisible(false);
-                } catch (BadPathsException exc) {
-                    // Exceptions to bad paths:
-                    JOptionPane.showMessageDialog(jFrame, exc.getMessage(),
-                            contentsResourceBundle.getString("error"), JOptionPane.ERROR_MESSAGE);
-                }
+                // Paths are checked in the background, they may point to slow or unmounted drives:
+                execBackupButton.setEnabled(false);
+                new SwingWorker<Void, Void>() {
+                    @Override
+                    protected Void doInBackground() throws BadPathsException {
+                        // Setting options of the backup type saved in the profile:
+                        chosenBackup.setOptions(options);
+                        // Setting paths from JTable:
+                        chosenBackup.setPaths(paths);
+                        return null;
+                    }
+
+                    @Override
+                    protected void done() {
+                        execBackupButton.setEnabled(true);
+                        try {
+                            get();
+                            // Switching prepared backup instance to BackupWindow:
+                            backupWindow.show(chosenBackup, turnOffCheckBox.isSelected(),
+                                    hiddenFilesCheckBox.isSelected(), durableCopyCheckBox.isSelected(),
+                                    verifiedCopyCheckBox.isSelected());
+                            // Hiding window:
+                            jFrame.setVisible(false);
+                        } catch (ExecutionException exc) {
+                            if (!(exc.getCause() instanceof BadPathsException)
+                                    && !(exc.getCause() instanceof IllegalArgumentException)) {
+                                throw new RuntimeException(exc.getCause());
+                            }
+                            // Exceptions to bad paths and wrong options of the profile:
+                            JOptionPane.showMessageDialog(jFrame, exc.getCause().getMessage(),
+                                    contentsResourceBundle.getString("error"), JOptionPane.ERROR_MESSAGE);
+                        } catch (InterruptedException exc) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }.execute();
                 // Exceptions to incomplete paths (during reading paths from JTable):
             }, () -> JOptionPane.showMessageDialog(jFrame, contentsResourceBundle.getString("incompleteError"),
                     contentsResourceBundle.getString("error"), JOptionPane.ERROR_MESSAGE));
@@ -222,12 +265,12 @@ public class MainWindow {
     }
 
     private void saveStrategy(boolean isSaveAs, PathJTable jTable, String backupType,
-                              Boolean isShutdown, Boolean isHidden, Component parent) {
+                              Boolean isShutdown, Boolean isHidden, Boolean isDurable, Boolean isVerified,
+                              Component parent) {
         jTable.getPaths().ifPresentOrElse(paths -> {
             try {
                 // Preparing attributes:
-                Map<String, String> attr = Map.of(shutdownAttributeName, isShutdown.toString(),
-                        hiddenAttributeName, isHidden.toString(), backupStrategyAttributeName, backupType);
+                Map<String, String> attr = getAttributes(backupType, isShutdown, isHidden, isDurable, isVerified);
                 // Invoking proper method from profileManager:
                 Optional<File> file = isSaveAs ? profileManager.saveAs(paths, attr)
                         : profileManager.save(paths, attr);
@@ -248,13 +291,13 @@ public class MainWindow {
     }
 
     private void openProfile(PathJTable jTable, JCheckBox shutdownCheckBox, JCheckBox hiddenFilesCheckBox,
+                             JCheckBox durableCopyCheckBox, JCheckBox verifiedCopyCheckBox,
                              DefaultComboBoxModel<String> comboBoxModel, Component parent) {
         // Getting content from a window:
         Optional<List<SimplePair<String>>> content = jTable.getPaths();
         String backupType = (String) Objects.requireNonNull(comboBoxModel.getSelectedItem());
-        Map<String, String> attr = Map.of(shutdownAttributeName, Boolean.toString(shutdownCheckBox.isSelected()),
-                hiddenAttributeName, Boolean.toString(hiddenFilesCheckBox.isSelected()),
-                backupStrategyAttributeName, backupType);
+        Map<String, String> attr = getAttributes(backupType, shutdownCheckBox.isSelected(),
+                hiddenFilesCheckBox.isSelected(), durableCopyCheckBox.isSelected(), verifiedCopyCheckBox.isSelected());
         // Checking if content is equals to save in file:
         if (content.isEmpty() || !profileManager.isContentIdentical(content.get(), attr)) {
             // Asking user for saving modified content:
@@ -263,13 +306,15 @@ public class MainWindow {
                     contentsResourceBundle.getString("question"), JOptionPane.YES_NO_CANCEL_OPTION);
             // Saving content if necessary:
             if (choice == JOptionPane.YES_OPTION) { saveStrategy(false, jTable, backupType,
-                    shutdownCheckBox.isSelected(), hiddenFilesCheckBox.isSelected(), parent); }
+                    shutdownCheckBox.isSelected(), hiddenFilesCheckBox.isSelected(),
+                    durableCopyCheckBox.isSelected(), verifiedCopyCheckBox.isSelected(), parent); }
             else if (choice == JOptionPane.CANCEL_OPTION) { return; }
         }
         try {
             // Opening a selected file and prints it's content to window:
             profileManager.open().ifPresent(pair -> setContentFromProfileManager(
-                    pair, jTable, comboBoxModel, shutdownCheckBox, hiddenFilesCheckBox));
+                    pair, jTable, comboBoxModel, shutdownCheckBox, hiddenFilesCheckBox, durableCopyCheckBox,
+                    verifiedCopyCheckBox));
         } catch (FileFormatException exc) {
             // Exceptions to selecting a wrong file:
             JOptionPane.showMessageDialog(parent, contentsResourceBundle.getString("wrongFileSelection"),
@@ -282,9 +327,24 @@ public class MainWindow {
         }
     }
 
-    private static void setContentFromProfileManager(
+    private Map<String, String> getAttributes(String backupType, boolean isShutdown, boolean isHidden,
+                                              boolean isDurable, boolean isVerified) {
+        // Attributes of the window replace the ones of the opened profile, other options are kept:
+        Map<String, String> attr = new HashMap<>(profileAttributes);
+        attr.put(shutdownAttributeName, Boolean.toString(isShutdown));
+        attr.put(hiddenAttributeName, Boolean.toString(isHidden));
+        attr.put(durableAttributeName, Boolean.toString(isDurable));
+        attr.put(verifiedAttributeName, Boolean.toString(isVerified));
+        attr.put(backupStrategyAttributeName, backupType);
+        return attr;
+    }
+
+    private void setContentFromProfileManager(
             ExtendedPair<List<SimplePair<String>>, Map<String, String>> pair, PathJTable jTable,
-            DefaultComboBoxModel<String> comboBoxModel, JCheckBox isShutdownCheckBox, JCheckBox isHiddenCheckBox) {
+            DefaultComboBoxModel<String> comboBoxModel, JCheckBox isShutdownCheckBox, JCheckBox isHiddenCheckBox,
+            JCheckBox isDurableCheckBox, JCheckBox isVerifiedCheckBox) {
+        // Remembering all attributes, also options which aren't shown in the window:
+        profileAttributes = pair.val();
         // Setting paths to JTable:
         jTable.setPaths(pair.key());
         // Setting backup strategy combobox:
@@ -295,6 +355,10 @@ public class MainWindow {
         isShutdownCheckBox.setSelected(Boolean.parseBoolean(pair.val().get(shutdownAttributeName)));
         // Setting is hidden checkbox:
         isHiddenCheckBox.setSelected(Boolean.parseBoolean(pair.val().get(hiddenAttributeName)));
+        // Setting is durable copy checkbox:
+        isDurableCheckBox.setSelected(Boolean.parseBoolean(pair.val().get(durableAttributeName)));
+        // Setting is verified copy checkbox:
+        isVerifiedCheckBox.setSelected(Boolean.parseBoolean(pair.val().get(verifiedAttributeName)));
     }
 
     protected void show() { jFrame.setVisible(true); }
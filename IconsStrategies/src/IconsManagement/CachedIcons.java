@@ -0,0 +1,123 @@
+package IconsManagement;
+
+import API.IconsManager;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.awt.image.ImageObserver;
+import java.io.IOException;
+import java.net.URL;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class CachedIcons implements IconsManager {
+    // Icons of the application, loaded before windows are built:
+    private final static List<String> preloadedIcons = List.of("about", "add", "browse", "copy", "cut", "down",
+            "execute", "open", "paste", "pause", "remove", "return", "run", "save", "save-as", "stop", "up");
+    // Suffix of stored variants for scaled screens, e.g. "save@2x":
+    private final static String variantSuffix = "@%dx";
+    private final static int placeholderSize = 16;
+    private final Map<String, CompletableFuture<ImageIcon>> icons;
+    private final List<Double> screenScales;
+    private final Logger logger;
+
+    // Shared instance cannot be changed by one of its users:
+    private static class SharedImageIcon extends ImageIcon {
+        private SharedImageIcon(Image image) { super(image); }
+
+        @Override
+        public void setImage(Image image) { throw new UnsupportedOperationException("Icon is shared!"); }
+
+        @Override
+        public void setDescription(String description) {
+            throw new UnsupportedOperationException("Icon is shared!");
+        }
+
+        @Override
+        public void setImageObserver(ImageObserver observer) {
+            throw new UnsupportedOperationException("Icon is shared!");
+        }
+    }
+
+    public CachedIcons() {
+        logger = Logger.getLogger("IconsStrategies.IconsManagement.CachedIcons");
+        icons = new ConcurrentHashMap<>();
+        // Scales of connected screens, every icon gets a variant for each of them:
+        screenScales = getScreenScales();
+        // Decoding all icons in parallel, windows later take them from the cache:
+        preloadedIcons.forEach(this::getFuture);
+    }
+
+    @Override
+    public ImageIcon getIcon(String name) { return getFuture(name).join(); }
+
+    private CompletableFuture<ImageIcon> getFuture(String name) {
+        // Every icon is decoded once, by the first request of it:
+        return icons.computeIfAbsent(name, _ -> CompletableFuture.supplyAsync(() -> loadIcon(name)));
+    }
+
+    private ImageIcon loadIcon(String name) {
+        try {
+            BufferedImage image = readImage(name);
+            if (image == null) {
+                // Missing icon doesn't break building of a window:
+                logger.log(Level.WARNING, "Icon: %s not found!".formatted(name));
+                return new SharedImageIcon(new BufferedImage(placeholderSize, placeholderSize,
+                        BufferedImage.TYPE_INT_ARGB));
+            }
+            // Base image and variants of scaled screens, stored variant is used if exists:
+            List<Image> variants = new ArrayList<>(List.of(image));
+            for (double scale : screenScales) {
+                BufferedImage storedVariant = scale == Math.rint(scale) ? readImage(
+                        name + variantSuffix.formatted((int) scale)) : null;
+                variants.add(storedVariant != null ? storedVariant : scale(image, scale));
+            }
+            variants.sort(Comparator.comparingInt(variant -> variant.getWidth(null)));
+            return new SharedImageIcon(new BaseMultiResolutionImage(variants.toArray(Image[]::new)));
+        } catch (IOException exc) {
+            logger.log(Level.WARNING, "Decoding icon: %s".formatted(name), exc);
+            return new SharedImageIcon(new BufferedImage(placeholderSize, placeholderSize,
+                    BufferedImage.TYPE_INT_ARGB));
+        }
+    }
+
+    private BufferedImage readImage(String name) throws IOException {
+        // Preparing a path for specified icon:
+        URL url = getClass().getResource("/icons/" + name);
+        if (url == null) { return null; }
+        // Decoding into premultiplied pixels, which are drawn without conversion:
+        BufferedImage image = ImageIO.read(url);
+        if (image == null) { throw new IOException("Unsupported format of icon: " + name); }
+        return scale(image, 1);
+    }
+
+    private static BufferedImage scale(BufferedImage image, double scale) {
+        // Drawing image in a new size with smooth interpolation:
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage scaledImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D graphics = scaledImage.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.drawImage(image, 0, 0, width, height, null);
+        graphics.dispose();
+        return scaledImage;
+    }
+
+    private static List<Double> getScreenScales() {
+        // Scales different from 1, without screens there are none:
+        Set<Double> scales = new TreeSet<>();
+        if (GraphicsEnvironment.isHeadless()) { return List.of(); }
+        for (GraphicsDevice device : GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices()) {
+            double scale = device.getDefaultConfiguration().getDefaultTransform().getScaleX();
+            if (scale != 1) { scales.add(scale); }
+        } return List.copyOf(scales);
+    }
+}
@@ -1,5 +1,6 @@
 module IconsStrategies {
     requires transitive APIUtils;
     requires java.desktop;
+    requires java.logging;
     exports IconsManagement;
 }
\ No newline at end of file
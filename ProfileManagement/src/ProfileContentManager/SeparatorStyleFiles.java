@@ -41,16 +41,22 @@ public class SeparatorStyleFiles implements ProfileManager {
 
     private void writeStrategy(File file, List<SimplePair<String>> paths,
                                Map<String, String> attributes) throws IOException {
+        // Writing content in the format of the manager:
+        writeContent(file, paths, attributes);
+        // Writing to log the new default file:
+        setDefaultFileLog(file.toPath());
+        // Setting default file:
+        usingFile = file;
+    }
+
+    protected void writeContent(File file, List<SimplePair<String>> paths,
+                                Map<String, String> attributes) throws IOException {
         try (PrintWriter writer = new PrintWriter(new FileWriter(file, false))) {
             // Adding backup paths to file:
             paths.forEach(pair -> writer.println(String.join(pathsSeparator, pair.key(), pair.val())));
             // Adding attributes to file (such as isShutdown ..., backupType):
             attributes.forEach((key, val) -> writer.println(String.join(attributesSeparator, key, val)));
         }
-        // Writing to log the new default file:
-        setDefaultFileLog(file.toPath());
-        // Setting default file:
-        usingFile = file;
     }
 
     private static void setDefaultFileLog(Path pathToSet) throws IOException {
@@ -78,7 +84,7 @@ public class SeparatorStyleFiles implements ProfileManager {
         } return Optional.empty();
     }
 
-    private static ExtendedPair<List<SimplePair<String>>,
+    protected ExtendedPair<List<SimplePair<String>>,
             Map<String, String>> getFileContent(Path file) throws IOException, FileFormatException {
         // Extracting all lines from specified file:
         List<String> fileContent = Files.readAllLines(file);
@@ -0,0 +1,171 @@
+package ProfileContentManager;
+
+import Utils.ExtendedPair;
+import Utils.FileFormatException;
+import Utils.SimplePair;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+public class StructuredProfileFiles extends SeparatorStyleFiles {
+    // First line of the format, files without it are read as profiles of the older format:
+    protected final static String formatHeader = "TKZProfile\t2";
+    private final static char fieldSeparator = '\t';
+    private final static char optionSeparator = '=';
+    private final static String attributeRecord = "attribute";
+    private final static String pairRecord = "pair";
+    // Options of path sets are only carried through: backups don't read them and editing doesn't change them,
+    // they are written back when the profile is saved, so profiles of newer versions don't lose them:
+    private final Map<SimplePair<String>, Map<String, String>> pairOptions;
+    // Parsed content of the last read file and its identity on disk:
+    private Path cachedFile;
+    private FileTime cachedModificationTime;
+    private long cachedSize;
+    private ExtendedPair<List<SimplePair<String>>, Map<String, String>> cachedContent;
+
+    public StructuredProfileFiles() { pairOptions = new HashMap<>(); }
+
+    @Override
+    protected ExtendedPair<List<SimplePair<String>>, Map<String, String>> getFileContent(Path file)
+            throws IOException, FileFormatException {
+        // Parsing again only when the file has been changed on disk:
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        if (file.equals(cachedFile) && attributes.lastModifiedTime().equals(cachedModificationTime)
+                && attributes.size() == cachedSize) { return cachedContent; }
+        ExtendedPair<List<SimplePair<String>>, Map<String, String>> content = readContent(file);
+        cache(file, attributes, content);
+        return content;
+    }
+
+    private ExtendedPair<List<SimplePair<String>>, Map<String, String>> readContent(Path file)
+            throws IOException, FileFormatException {
+        List<SimplePair<String>> paths = new ArrayList<>();
+        Map<String, String> attr = new TreeMap<>();
+        Map<SimplePair<String>, Map<String, String>> options = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            // Profiles of the older format, they are saved in this format next time:
+            String line = reader.readLine();
+            if (!formatHeader.equals(line)) {
+                pairOptions.clear();
+                return super.getFileContent(file);
+            }
+            // Reading records line by line, without holding the whole file:
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) { continue; }
+                List<String> fields = splitFields(line);
+                switch (fields.getFirst()) {
+                    case attributeRecord -> {
+                        if (fields.size() != 3) { throw new FileFormatException(); }
+                        attr.put(fields.get(1), fields.get(2));
+                    }
+                    case pairRecord -> {
+                        if (fields.size() < 3) { throw new FileFormatException(); }
+                        SimplePair<String> pair = new SimplePair<>(fields.get(1), fields.get(2));
+                        paths.add(pair);
+                        // Options follow paths as key=value fields:
+                        for (String option : fields.subList(3, fields.size())) {
+                            int separatorIndex = option.indexOf(optionSeparator);
+                            if (separatorIndex < 0) { throw new FileFormatException(); }
+                            options.computeIfAbsent(pair, _ -> new TreeMap<>()).put(
+                                    option.substring(0, separatorIndex), option.substring(separatorIndex + 1));
+                        }
+                    }
+                    // Records of newer versions are skipped:
+                    default -> { }
+                }
+            }
+        }
+        // Options of the read file replace options of the previous one:
+        pairOptions.clear();
+        pairOptions.putAll(options);
+        return new ExtendedPair<>(List.copyOf(paths), Collections.unmodifiableMap(attr));
+    }
+
+    @Override
+    protected void writeContent(File file, List<SimplePair<String>> paths,
+                                Map<String, String> attributes) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath())) {
+            writer.write(formatHeader);
+            writer.newLine();
+            // Adding attributes to file (such as isShutdown ..., backupType):
+            for (Map.Entry<String, String> attribute : new TreeMap<>(attributes).entrySet()) {
+                writeRecord(writer, List.of(attributeRecord, attribute.getKey(), attribute.getValue()));
+            }
+            // Adding backup paths with their options:
+            for (SimplePair<String> pair : paths) {
+                List<String> fields = new ArrayList<>(List.of(pairRecord, pair.key(), pair.val()));
+                pairOptions.getOrDefault(pair, Map.of()).forEach((key, value) -> fields.add(
+                        key + optionSeparator + value));
+                writeRecord(writer, fields);
+            }
+        }
+        // Written content is the model of the file, it isn't parsed again:
+        pairOptions.keySet().retainAll(new HashSet<>(paths));
+        cache(file.toPath(), Files.readAttributes(file.toPath(), BasicFileAttributes.class),
+                new ExtendedPair<>(List.copyOf(paths), Collections.unmodifiableMap(new TreeMap<>(attributes))));
+    }
+
+    private void cache(Path file, BasicFileAttributes attributes,
+                       ExtendedPair<List<SimplePair<String>>, Map<String, String>> content) {
+        cachedFile = file;
+        cachedModificationTime = attributes.lastModifiedTime();
+        cachedSize = attributes.size();
+        cachedContent = content;
+    }
+
+    private static void writeRecord(BufferedWriter writer, List<String> fields) throws IOException {
+        // Fields are separated by tabulators, which are escaped inside of fields:
+        for (int i = 0; i < fields.size(); ++i) {
+            if (i > 0) { writer.write(fieldSeparator); }
+            String field = fields.get(i);
+            for (int j = 0; j < field.length(); ++j) {
+                char character = field.charAt(j);
+                switch (character) {
+                    case '\\' -> writer.write("\\\\");
+                    case '\t' -> writer.write("\\t");
+                    case '\n' -> writer.write("\\n");
+                    case '\r' -> writer.write("\\r");
+                    default -> writer.write(character);
+                }
+            }
+        }
+        writer.newLine();
+    }
+
+    private static List<String> splitFields(String line) throws FileFormatException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < line.length(); ++i) {
+            char character = line.charAt(i);
+            if (character == fieldSeparator) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (character == '\\') {
+                // Escaped characters:
+                if (++i == line.length()) { throw new FileFormatException(); }
+                switch (line.charAt(i)) {
+                    case '\\' -> field.append('\\');
+                    case 't' -> field.append('\t');
+                    case 'n' -> field.append('\n');
+                    case 'r' -> field.append('\r');
+                    default -> throw new FileFormatException();
+                }
+            } else { field.append(character); }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    public synchronized ExtendedPair<List<SimplePair<String>>, Map<String, String>> read(Path file)
+            throws IOException, FileFormatException {
+        // Reading a profile without dialogs, e.g. by scheduled backups:
+        return getFileContent(file);
+    }
+}
@@ -0,0 +1,461 @@
+package ApplicationExecution;
+
+import API.BackupStrategy;
+import ProfileContentManager.StructuredProfileFiles;
+import Utils.BadPathsException;
+import Utils.ExtendedPair;
+import Utils.FileFormatException;
+import Utils.ListenersTypes;
+import Utils.MetricsWriter;
+import Utils.SimplePair;
+import com.sun.net.httpserver.HttpServer;
+
+import java.beans.PropertyChangeListener;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class BackupDaemon {
+    // Socket of the user, the same for the daemon and clients started in any working directory:
+    public final static Path socketPath = Path.of(System.getProperty("user.home"), ".TKZDaemon.socket");
+    // Idle strategies are kept warm (threads, learnt concurrency, directory indexes of indexed backups),
+    // the least recently used ones are disposed with everything they keep:
+    private final static int cachedStrategiesLimit = 8;
+    private final static long idleDisposeTime = TimeUnit.HOURS.toMillis(1);
+    private final static long disposeCheckTime = TimeUnit.MINUTES.toMillis(10);
+    // Lines waiting for a slow watcher, console lines above the limit are dropped:
+    private final static int watcherQueueSize = 1024;
+    // Period of rewriting the metrics file, shorter than usual scrape intervals of textfile collectors:
+    private final static long metricsFileTime = TimeUnit.SECONDS.toMillis(15);
+    private final static String metricsContentType = "text/plain; version=0.0.4; charset=utf-8";
+    // Attributes of profiles saved by the main window:
+    private final static String hiddenAttributeName = "Hidden";
+    private final static String durableAttributeName = "Durable";
+    private final static String verifiedAttributeName = "Verified";
+    private final static String backupStrategyAttributeName = "BackupStrategy";
+    private final Logger logger;
+    private final StructuredProfileFiles profileFiles;
+    private final Map<String, ServiceLoader.Provider<BackupStrategy>> providers;
+    private final LinkedHashMap<Path, CachedStrategy> strategies;
+    private final Map<Path, ProfileRun> runs;
+    private final Map<Path, Boolean> lastResults;
+    private final Map<Path, Long> lastSuccessTimes;
+    private final Set<SimplePair<FileStore>> busyDevices;
+    private final Set<Path> pendingProfiles;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService clientsExecutor;
+    private volatile HttpServer metricsServer;
+    private boolean isShutdown;
+
+    private record CachedStrategy(BackupStrategy strategy, long lastUseTime) { }
+
+    // Running backup of a profile and clients watching it:
+    private class ProfileRun {
+        private final Path profile;
+        private final BackupStrategy strategy;
+        private final Set<SimplePair<FileStore>> devices;
+        private final List<BlockingQueue<String>> watchers;
+        private final Map<ListenersTypes, PropertyChangeListener> listeners;
+        private volatile int progress;
+
+        private ProfileRun(Path profilePath, BackupStrategy backupStrategy, Set<SimplePair<FileStore>> runDevices) {
+            profile = profilePath;
+            strategy = backupStrategy;
+            devices = runDevices;
+            watchers = new CopyOnWriteArrayList<>();
+            listeners = new EnumMap<>(ListenersTypes.class);
+            listeners.put(ListenersTypes.PROGRESS, event -> {
+                progress = (int) event.getNewValue();
+                notifyWatchers("progress " + progress, false);
+            });
+            listeners.put(ListenersTypes.CONSOLE, event -> notifyWatchers("console " + ((String) event.getNewValue())
+                    .strip().replace('\n', ' '), false));
+            listeners.put(ListenersTypes.FINISH, event -> finish(this, (boolean) event.getNewValue()));
+            listeners.forEach(strategy::addPropertyListener);
+        }
+
+        private void notifyWatchers(String line, boolean isRequired) {
+            for (BlockingQueue<String> watcher : watchers) {
+                // Slow watcher loses console lines, but never the end of the run:
+                if (!watcher.offer(line) && isRequired) {
+                    watcher.clear();
+                    watcher.offer(line);
+                }
+            }
+        }
+    }
+
+    public BackupDaemon() {
+        logger = Logger.getLogger("ApplicationExecution.BackupDaemon");
+        // Parsed profiles are cached, they are read again only when they change:
+        profileFiles = new StructuredProfileFiles();
+        // Providers by names of their backups, the same names are saved in profiles:
+        providers = new HashMap<>();
+        ServiceLoader.load(BackupStrategy.class).stream().forEach(provider -> providers.put(
+                provider.get().getBackupType(), provider));
+        strategies = new LinkedHashMap<>(16, 0.75f, true);
+        runs = new HashMap<>();
+        lastResults = new TreeMap<>();
+        lastSuccessTimes = new TreeMap<>();
+        busyDevices = new HashSet<>();
+        pendingProfiles = new LinkedHashSet<>();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        clientsExecutor = Executors.newCachedThreadPool();
+        // Disposing strategies which haven't been used for a long time:
+        scheduler.scheduleWithFixedDelay(this::disposeIdleStrategies, disposeCheckTime, disposeCheckTime,
+                TimeUnit.MILLISECONDS);
+    }
+
+    public void schedule(Path profile, long intervalMinutes) {
+        // First run starts with the daemon:
+        Path profilePath = profile.toAbsolutePath().normalize();
+        scheduler.scheduleWithFixedDelay(() -> {
+            // Exception leaving the task would cancel all next runs of the profile:
+            try {
+                logger.log(Level.INFO, "Scheduled run of %s: %s".formatted(profilePath, requestRun(profilePath)));
+            } catch (RuntimeException exc) {
+                logger.log(Level.SEVERE, "Scheduled run of: %s".formatted(profilePath), exc);
+            }
+        }, 0, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    public synchronized String requestRun(Path profile) {
+        Path profilePath = profile.toAbsolutePath().normalize();
+        if (isShutdown) { return "error daemon is shutting down"; }
+        if (runs.containsKey(profilePath)) { return "running"; }
+        try {
+            ExtendedPair<List<SimplePair<String>>, Map<String, String>> content = profileFiles.read(profilePath);
+            // Runs never overlap on the same devices, the profile waits for the running one:
+            Set<SimplePair<FileStore>> devices = getDevices(content.key());
+            if (!Collections.disjoint(busyDevices, devices)) {
+                pendingProfiles.add(profilePath);
+                return "queued";
+            }
+            BackupStrategy strategy = getStrategy(profilePath, content.val().get(backupStrategyAttributeName));
+            // Options of the backup type saved in the profile, cached strategy gets defaults of missing ones,
+            // they are set before paths, which are validated with them (e.g. nested sources):
+            strategy.setOptions(content.val());
+            strategy.setPaths(content.key());
+            strategy.setIsCopyHiddenElements(Boolean.parseBoolean(content.val().get(hiddenAttributeName)));
+            strategy.setIsDurableCopy(Boolean.parseBoolean(content.val().get(durableAttributeName)));
+            strategy.setIsVerifiedCopy(Boolean.parseBoolean(content.val().get(verifiedAttributeName)));
+            // Registering the run before it starts, so its end is always noticed:
+            pendingProfiles.remove(profilePath);
+            busyDevices.addAll(devices);
+            ProfileRun run = new ProfileRun(profilePath, strategy, devices);
+            runs.put(profilePath, run);
+            try {
+                strategy.execute();
+            } catch (Throwable exc) {
+                // Run which hasn't started doesn't keep the profile running and its devices busy:
+                run.listeners.forEach(strategy::removePropertyListener);
+                runs.remove(profilePath);
+                busyDevices.removeAll(devices);
+                throw exc;
+            }
+            return "started";
+        } catch (IOException | FileFormatException | BadPathsException | RuntimeException exc) {
+            logger.log(Level.SEVERE, "Starting backup of profile: %s".formatted(profilePath), exc);
+            return "error " + Objects.requireNonNullElse(exc.getMessage(), exc.getClass().getSimpleName());
+        }
+    }
+
+    private static Set<SimplePair<FileStore>> getDevices(List<SimplePair<String>> paths) throws IOException {
+        Set<SimplePair<FileStore>> devices = new HashSet<>();
+        for (SimplePair<String> pathSet : paths) {
+            devices.add(new SimplePair<>(Files.getFileStore(Path.of(pathSet.key())),
+                    Files.getFileStore(Path.of(pathSet.val()))));
+        } return devices;
+    }
+
+    private BackupStrategy getStrategy(Path profile, String backupType) {
+        // Strategy of the profile is reused, if the profile still uses the same backup:
+        CachedStrategy cachedStrategy = strategies.get(profile);
+        if (cachedStrategy == null || !cachedStrategy.strategy().getBackupType().equals(backupType)) {
+            ServiceLoader.Provider<BackupStrategy> provider = providers.get(backupType);
+            if (provider == null) { throw new IllegalArgumentException("Unknown backup: " + backupType); }
+            if (cachedStrategy != null) { dispose(cachedStrategy.strategy()); }
+            cachedStrategy = new CachedStrategy(provider.get(), 0);
+        }
+        strategies.put(profile, new CachedStrategy(cachedStrategy.strategy(), System.currentTimeMillis()));
+        // Disposing the least recently used idle strategies above the limit:
+        Iterator<Map.Entry<Path, CachedStrategy>> iterator = strategies.entrySet().iterator();
+        while (strategies.size() > cachedStrategiesLimit && iterator.hasNext()) {
+            Map.Entry<Path, CachedStrategy> entry = iterator.next();
+            if (runs.containsKey(entry.getKey()) || entry.getKey().equals(profile)) { continue; }
+            dispose(entry.getValue().strategy());
+            iterator.remove();
+        } return cachedStrategy.strategy();
+    }
+
+    private synchronized void disposeIdleStrategies() {
+        long now = System.currentTimeMillis();
+        strategies.entrySet().removeIf(entry -> {
+            if (runs.containsKey(entry.getKey()) || now - entry.getValue().lastUseTime() < idleDisposeTime) {
+                return false;
+            }
+            dispose(entry.getValue().strategy());
+            return true;
+        });
+    }
+
+    private void dispose(BackupStrategy strategy) {
+        // Releasing threads of an idle strategy:
+        try {
+            strategy.joinAndDispose();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void finish(ProfileRun run, boolean isNoErrors) {
+        run.listeners.forEach(run.strategy::removePropertyListener);
+        runs.remove(run.profile);
+        busyDevices.removeAll(run.devices);
+        lastResults.put(run.profile, isNoErrors);
+        if (isNoErrors) { lastSuccessTimes.put(run.profile, System.currentTimeMillis()); }
+        run.notifyWatchers("finish " + isNoErrors, true);
+        logger.log(Level.INFO, "Finished run of %s, without errors: %b".formatted(run.profile, isNoErrors));
+        // Starting profiles which have been waiting for the devices:
+        for (Path profile : List.copyOf(pendingProfiles)) {
+            logger.log(Level.INFO, "Queued run of %s: %s".formatted(profile, requestRun(profile)));
+        }
+    }
+
+    public synchronized String stop(Path profile) {
+        ProfileRun run = runs.get(profile.toAbsolutePath().normalize());
+        if (run == null) { return "idle"; }
+        run.strategy.stop();
+        return "stopping";
+    }
+
+    public synchronized List<String> getStatus() {
+        // Running, queued and finished profiles:
+        List<String> status = new ArrayList<>();
+        runs.values().forEach(run -> status.add("running %d %s".formatted(run.progress, run.profile)));
+        pendingProfiles.forEach(profile -> status.add("queued %s".formatted(profile)));
+        lastResults.forEach((profile, isNoErrors) -> status.add("finished %b %s".formatted(isNoErrors, profile)));
+        return status;
+    }
+
+    public String getMetrics() {
+        MetricsWriter writer = new MetricsWriter();
+        Map<Path, BackupStrategy> profileStrategies = new TreeMap<>();
+        synchronized (this) {
+            // State of every known profile, one of the states is set:
+            Set<Path> profiles = new TreeSet<>(lastResults.keySet());
+            profiles.addAll(runs.keySet());
+            profiles.addAll(pendingProfiles);
+            for (Path profile : profiles) {
+                String state = runs.containsKey(profile) ? "running" : pendingProfiles.contains(profile) ? "queued"
+                        : "idle";
+                for (String possibleState : List.of("running", "queued", "idle")) {
+                    writer.gauge("tkz_profile_state", "State of a profile in the daemon.",
+                            state.equals(possibleState) ? 1 : 0, "profile", profile.toString(), "state",
+                            possibleState);
+                }
+            }
+            lastResults.forEach((profile, isNoErrors) -> writer.gauge("tkz_profile_last_run_success",
+                    "Whether the last finished run of a profile had no errors.", isNoErrors ? 1 : 0,
+                    "profile", profile.toString()));
+            lastSuccessTimes.forEach((profile, time) -> writer.gauge("tkz_profile_last_success_timestamp_seconds",
+                    "Time of the last run of a profile finished without errors.", time / 1000.,
+                    "profile", profile.toString()));
+            strategies.forEach((profile, cachedStrategy) -> profileStrategies.put(profile,
+                    cachedStrategy.strategy()));
+        }
+        // Strategies are read without the lock, their finishing backups take it:
+        profileStrategies.forEach((profile, strategy) -> strategy.writeMetrics(writer.withLabel(
+                "profile", profile.toString())));
+        return writer.toString();
+    }
+
+    public void serveMetrics(int port) throws IOException {
+        // Metrics are available only from the local machine:
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            try (exchange) {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                byte[] body = getMetrics().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", metricsContentType);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        });
+        server.setExecutor(clientsExecutor);
+        server.start();
+        metricsServer = server;
+        logger.log(Level.INFO, "Metrics are served on: http://%s:%d/metrics".formatted(
+                server.getAddress().getHostString(), server.getAddress().getPort()));
+    }
+
+    public void writeMetricsFile(Path file) {
+        // File for the textfile collector is replaced at once, so a half written file is never read:
+        Path metricsPath = file.toAbsolutePath().normalize();
+        Path temporaryPath = metricsPath.resolveSibling(metricsPath.getFileName() + ".tmp");
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                Files.writeString(temporaryPath, getMetrics(), StandardCharsets.UTF_8);
+                Files.move(temporaryPath, metricsPath, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException exc) {
+                logger.log(Level.WARNING, "Writing metrics file: %s".formatted(metricsPath), exc);
+            } catch (RuntimeException exc) {
+                // Exception leaving the task would stop all next writes of the file:
+                logger.log(Level.SEVERE, "Writing metrics file: %s".formatted(metricsPath), exc);
+            }
+        }, 0, metricsFileTime, TimeUnit.MILLISECONDS);
+    }
+
+    public void serve() throws IOException {
+        // Socket of another running daemon isn't taken over, socket of a crashed one is removed:
+        if (Files.exists(socketPath)) {
+            try (SocketChannel _ = SocketChannel.open(UnixDomainSocketAddress.of(socketPath))) {
+                throw new IllegalStateException("Daemon is already running: " + socketPath.toAbsolutePath());
+            } catch (IOException exc) { Files.delete(socketPath); }
+        }
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            logger.log(Level.INFO, "Daemon is listening on: %s".formatted(socketPath.toAbsolutePath()));
+            while (!Thread.currentThread().isInterrupted()) {
+                SocketChannel client = server.accept();
+                clientsExecutor.execute(() -> handle(client));
+            }
+        } finally { Files.deleteIfExists(socketPath); }
+    }
+
+    private void handle(SocketChannel client) {
+        // One command per connection, connection is closed after the reply:
+        try (client; BufferedReader reader = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(Channels.newWriter(client, StandardCharsets.UTF_8), true)) {
+            String[] command = Objects.requireNonNullElse(reader.readLine(), "").split(" ", 2);
+            switch (command[0]) {
+                case "run" -> writer.println(command.length < 2 ? "error missing profile"
+                        : requestRun(Path.of(command[1])));
+                case "stop" -> writer.println(command.length < 2 ? "error missing profile"
+                        : stop(Path.of(command[1])));
+                case "status" -> getStatus().forEach(writer::println);
+                case "watch" -> {
+                    if (command.length < 2) { writer.println("error missing profile"); }
+                    else { watch(Path.of(command[1]), writer); }
+                }
+                default -> writer.println("error unknown command");
+            }
+        } catch (IOException exc) {
+            logger.log(Level.WARNING, "Handling client of daemon", exc);
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException exc) {
+            // Client gets no reply, the daemon keeps serving others:
+            logger.log(Level.SEVERE, "Handling client of daemon", exc);
+        }
+    }
+
+    private void watch(Path profile, PrintWriter writer) throws InterruptedException {
+        BlockingQueue<String> watcher = new ArrayBlockingQueue<>(watcherQueueSize);
+        ProfileRun run;
+        synchronized (this) {
+            run = runs.get(profile.toAbsolutePath().normalize());
+            if (run == null) {
+                writer.println("idle");
+                return;
+            }
+            run.watchers.add(watcher);
+            watcher.offer("progress " + run.progress);
+        }
+        try {
+            // Sending lines until the run ends or the client disconnects:
+            while (true) {
+                String line = watcher.take();
+                writer.println(line);
+                if (writer.checkError() || line.startsWith("finish ")) { return; }
+            }
+        } finally { run.watchers.remove(watcher); }
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        if (metricsServer != null) { metricsServer.stop(0); }
+        clientsExecutor.shutdownNow();
+        List<BackupStrategy> disposedStrategies;
+        synchronized (this) {
+            // Finishing runs don't start queued profiles anymore:
+            isShutdown = true;
+            runs.values().forEach(run -> run.strategy.stop());
+            disposedStrategies = strategies.values().stream().map(CachedStrategy::strategy).toList();
+            strategies.clear();
+        }
+        // Strategies are joined without the lock, their finishing backups take it:
+        disposedStrategies.forEach(this::dispose);
+        // Serving thread is blocked in accept, so the socket is removed here:
+        try {
+            Files.deleteIfExists(socketPath);
+        } catch (IOException exc) {
+            logger.log(Level.WARNING, "Removing socket of daemon: %s".formatted(socketPath), exc);
+        }
+    }
+
+    public static int restore(Path profile, Path targetPath, PrintStream output) {
+        // Restoring runs without the daemon, with a new strategy of the profile:
+        Path profilePath = profile.toAbsolutePath().normalize();
+        try {
+            ExtendedPair<List<SimplePair<String>>, Map<String, String>> content = new StructuredProfileFiles().read(
+                    profilePath);
+            String backupType = content.val().get(backupStrategyAttributeName);
+            Optional<BackupStrategy> strategy = ServiceLoader.load(BackupStrategy.class).stream().map(
+                    ServiceLoader.Provider::get).filter(provider -> provider.getBackupType().equals(backupType))
+                    .findFirst();
+            if (strategy.isEmpty()) {
+                output.println("error unknown backup " + backupType);
+                return 1;
+            }
+            if (!strategy.get().isRestorable()) {
+                output.println("error backup cannot be restored " + backupType);
+                return 1;
+            }
+            strategy.get().restore(content.key(), targetPath.toAbsolutePath().normalize());
+            output.println("restored " + targetPath.toAbsolutePath().normalize());
+            return 0;
+        } catch (IOException | FileFormatException exc) {
+            Logger.getLogger("ApplicationExecution.BackupDaemon").log(Level.SEVERE,
+                    "Restoring profile: %s".formatted(profilePath), exc);
+            output.println("error " + Objects.requireNonNullElse(exc.getMessage(), exc.getClass().getSimpleName()));
+            return 1;
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            return 1;
+        }
+    }
+
+    public static int sendCommand(String command, PrintStream output) throws IOException {
+        // Client of the control socket, prints replies of the daemon:
+        try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+             BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+             PrintWriter writer = new PrintWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), true)) {
+            writer.println(command);
+            int exitCode = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.println(line);
+                if (line.startsWith("error ") || line.equals("finish false")) { exitCode = 1; }
+            } return exitCode;
+        }
+    }
+}
@@ -1,13 +1,86 @@
 package ApplicationExecution;
 
-import IconsManagement.StoredIcons;
-import ProfileContentManager.SeparatorStyleFiles;
+import IconsManagement.CachedIcons;
+import ProfileContentManager.StructuredProfileFiles;
 import TKZWindows.LoadingScreen;
 
 import javax.swing.*;
+import java.io.IOException;
+import java.nio.file.Path;
 
 public class Main {
+    private final static String usage = """
+            Usage:
+              (no arguments)                         graphical interface
+              --daemon [options] <minutes> <profile>...
+                                                     run profiles every <minutes> and listen for commands
+                --metrics-port <port>                serve Prometheus metrics on http://127.0.0.1:<port>/metrics
+                --metrics-file <file>                keep Prometheus metrics in <file> for a textfile collector
+              --run <profile>                        start a run in the daemon
+              --watch <profile>                      print progress of a running profile until it ends
+              --stop <profile>                       stop a running profile
+              --status                               print running, queued and finished profiles
+              --restore <profile> <target>           restore the last backup of a profile into <target>""";
+
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> new LoadingScreen(StoredIcons.class, SeparatorStyleFiles.class));
+        // Without arguments the graphical interface is started:
+        if (args.length == 0) {
+            SwingUtilities.invokeLater(() -> new LoadingScreen(CachedIcons.class, StructuredProfileFiles.class));
+            return;
+        }
+        try {
+            switch (args[0]) {
+                case "--daemon" -> runDaemon(args);
+                case "--run", "--watch", "--stop" -> {
+                    if (args.length != 2) { exitWithUsage(); }
+                    // Daemon may have another working directory, so profiles are sent as absolute paths:
+                    System.exit(BackupDaemon.sendCommand(args[0].substring(2) + " " + Path.of(args[1])
+                            .toAbsolutePath().normalize(), System.out));
+                }
+                case "--status" -> System.exit(BackupDaemon.sendCommand("status", System.out));
+                case "--restore" -> {
+                    if (args.length != 3) { exitWithUsage(); }
+                    System.exit(BackupDaemon.restore(Path.of(args[1]), Path.of(args[2]), System.out));
+                }
+                default -> exitWithUsage();
+            }
+        } catch (NumberFormatException exc) {
+            exitWithUsage();
+        } catch (IOException exc) {
+            System.err.println("Cannot connect to the daemon: " + exc.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void runDaemon(String[] args) throws IOException {
+        BackupDaemon daemon = new BackupDaemon();
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::shutdown));
+        // Options of metrics precede the interval:
+        int i = 1;
+        for (; i + 1 < args.length && args[i].startsWith("--metrics-"); i += 2) {
+            switch (args[i]) {
+                case "--metrics-port" -> {
+                    int port = Integer.parseInt(args[i + 1]);
+                    try {
+                        daemon.serveMetrics(port);
+                    } catch (IOException exc) {
+                        // Port taken by another process isn't an error of connecting to the daemon:
+                        System.err.println("Cannot serve metrics on port %d: %s".formatted(port, exc.getMessage()));
+                        System.exit(1);
+                    }
+                }
+                case "--metrics-file" -> daemon.writeMetricsFile(Path.of(args[i + 1]));
+                default -> exitWithUsage();
+            }
+        }
+        if (args.length < i + 2) { exitWithUsage(); }
+        long intervalMinutes = Long.parseLong(args[i]);
+        for (int j = i + 1; j < args.length; ++j) { daemon.schedule(Path.of(args[j]), intervalMinutes); }
+        daemon.serve();
+    }
+
+    private static void exitWithUsage() {
+        System.err.println(usage);
+        System.exit(2);
     }
-}
\ No newline at end of file
+}
@@ -4,4 +4,7 @@ module TKZ {
     requires IconsStrategies;
     exports ApplicationExecution;
     requires java.desktop;
+    requires java.logging;
+    requires jdk.httpserver;
+    uses API.BackupStrategy;
 }
\ No newline at end of file